@@ -1,12 +1,14 @@
 package com.braintreepayments.api
 
 import android.content.Context
+import android.os.SystemClock
 import androidx.annotation.VisibleForTesting
 import androidx.work.*
 import com.braintreepayments.api.AnalyticsDatabase.Companion.getInstance
 import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
+import java.io.IOException
 import java.util.*
 import java.util.concurrent.TimeUnit
 
@@ -14,7 +16,9 @@ internal class AnalyticsClient @VisibleForTesting constructor(
     private val httpClient: BraintreeHttpClient,
     private val analyticsDatabase: AnalyticsDatabase,
     private val workManager: WorkManager,
-    private val deviceInspector: DeviceInspector
+    private val deviceMetadataCache: DeviceMetadataCache,
+    private val eventBuffer: AnalyticsEventBuffer,
+    private val uploadMetrics: AnalyticsUploadMetrics
 ) {
     private var lastKnownAnalyticsUrl: String? = null
 
@@ -22,7 +26,9 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         BraintreeHttpClient(),
         getInstance(context.applicationContext),
         WorkManager.getInstance(context.applicationContext),
-        DeviceInspector()
+        DeviceMetadataCache.getInstance(context.applicationContext),
+        AnalyticsEventBuffer.getInstance(context.applicationContext),
+        AnalyticsUploadMetrics.getInstance()
     )
 
     fun sendEvent(
@@ -46,27 +52,12 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         authorization: Authorization
     ): UUID {
         lastKnownAnalyticsUrl = configuration.analyticsUrl
-        scheduleAnalyticsWrite("android.$eventName", timestamp, authorization)
+        // buffer the event in memory; it is written to the database with others in a single batch
+        eventBuffer.add(AnalyticsEvent("android.$eventName", timestamp))
         return scheduleAnalyticsUpload(configuration, authorization, sessionId, integration)
     }
 
-    private fun scheduleAnalyticsWrite(
-        eventName: String, timestamp: Long, authorization: Authorization
-    ) {
-        val inputData = workDataOf(
-            WORK_INPUT_KEY_AUTHORIZATION to authorization.toString(),
-            WORK_INPUT_KEY_EVENT_NAME to eventName,
-            WORK_INPUT_KEY_TIMESTAMP to timestamp
-        )
-        val analyticsWorkRequest =
-            OneTimeWorkRequest.Builder(AnalyticsWriteToDbWorker::class.java)
-                .setInputData(inputData)
-                .build()
-        workManager.enqueueUniqueWork(
-            WORK_NAME_ANALYTICS_WRITE, ExistingWorkPolicy.APPEND_OR_REPLACE, analyticsWorkRequest
-        )
-    }
-
+    // writes events enqueued as AnalyticsWriteToDbWorker jobs by earlier versions of the SDK
     fun writeAnalytics(inputData: Data): ListenableWorker.Result {
         val eventName = inputData.getString(WORK_INPUT_KEY_EVENT_NAME)
         val timestamp = inputData.getLong(WORK_INPUT_KEY_TIMESTAMP, INVALID_TIMESTAMP)
@@ -87,14 +78,10 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         sessionId: String?,
         integration: String?
     ): UUID {
-        val inputData = workDataOf(
-            WORK_INPUT_KEY_AUTHORIZATION to authorization.toString(),
-            WORK_INPUT_KEY_CONFIGURATION to configuration.toJson(),
-            WORK_INPUT_KEY_SESSION_ID to sessionId,
-            WORK_INPUT_KEY_INTEGRATION to integration
-        )
+        val inputData = createUploadInputData(configuration, authorization, sessionId, integration)
         val analyticsWorkRequest = OneTimeWorkRequest.Builder(AnalyticsUploadWorker::class.java)
             .setInitialDelay(30, TimeUnit.SECONDS)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, UPLOAD_BACKOFF_DELAY_MS, TimeUnit.MILLISECONDS)
             .setInputData(inputData)
             .build()
         workManager.enqueueUniqueWork(
@@ -103,34 +90,92 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         return analyticsWorkRequest.id
     }
 
-    fun uploadAnalytics(context: Context?, inputData: Data): ListenableWorker.Result {
-        val configuration = getConfigurationFromData(inputData)
+    /**
+     * Send stored events to the analytics service in batches of [UPLOAD_BATCH_SIZE]. Each batch is
+     * deleted once the service acknowledges it, so a failed upload resumes after the last
+     * acknowledged batch when it is retried.
+     *
+     * @param runAttemptCount the number of times this upload has been attempted before
+     * @return [ListenableWorker.Result.retry] if a batch failed with an error that may be transient
+     * and the upload has not been attempted [MAX_UPLOAD_ATTEMPTS] times
+     */
+    fun uploadAnalytics(
+        context: Context?, inputData: Data, runAttemptCount: Int = 0
+    ): ListenableWorker.Result {
+        val analyticsUrl = getAnalyticsUrlFromData(inputData)
         val authorization = getAuthorizationFromData(inputData)
         val sessionId = inputData.getString(WORK_INPUT_KEY_SESSION_ID)
         val integration = inputData.getString(WORK_INPUT_KEY_INTEGRATION)
-        val isMissingInputData =
-            listOf(configuration, authorization, sessionId, integration).contains(null)
-        return if (isMissingInputData) {
+        val isMissingInputData = listOf(authorization, sessionId, integration).contains(null)
+        return if (analyticsUrl == null || isMissingInputData) {
             ListenableWorker.Result.failure()
         } else try {
-            val analyticsEventDao = analyticsDatabase.analyticsEventDao()
-            val events = analyticsEventDao.getAllEvents()
-            if (events.isNotEmpty()) {
-                val metadata = deviceInspector.getDeviceMetadata(context, sessionId, integration)
-                val analyticsRequest = serializeEvents(authorization, events, metadata)
-                configuration?.analyticsUrl?.let { analyticsUrl ->
-                    httpClient.post(
-                        analyticsUrl, analyticsRequest.toString(), configuration, authorization
-                    )
-                    analyticsEventDao.deleteEvents(events)
-                }
-            }
+            // include events that are still waiting in memory
+            eventBuffer.flush()
+            uploadStoredEvents(context, analyticsUrl, authorization, sessionId, integration)
             ListenableWorker.Result.success()
         } catch (e: Exception) {
-            ListenableWorker.Result.failure()
+            if (isRetryable(e) && runAttemptCount + 1 < MAX_UPLOAD_ATTEMPTS) {
+                ListenableWorker.Result.retry()
+            } else {
+                ListenableWorker.Result.failure()
+            }
         }
     }
 
+    @Throws(Exception::class)
+    private fun uploadStoredEvents(
+        context: Context?,
+        analyticsUrl: String,
+        authorization: Authorization?,
+        sessionId: String?,
+        integration: String?
+    ) {
+        val analyticsEventDao = analyticsDatabase.analyticsEventDao()
+        val backlogSize = analyticsEventDao.getEventCount()
+        uploadMetrics.onUploadStarted(backlogSize)
+        if (backlogSize == 0) {
+            return
+        }
+
+        val metadata = deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
+        var lastAcknowledgedId = 0
+        while (true) {
+            // read and send the backlog in pages so memory use does not grow with its size
+            val events = analyticsEventDao.getEventsAfter(lastAcknowledgedId, UPLOAD_BATCH_SIZE)
+            if (events.isEmpty()) {
+                return
+            }
+            val analyticsRequest = serializeEvents(authorization, events, metadata)
+            val startTime = SystemClock.elapsedRealtime()
+            try {
+                // the analytics url is absolute, so no configuration is needed to resolve it
+                httpClient.post(
+                    analyticsUrl,
+                    analyticsRequest,
+                    null,
+                    authorization,
+                    CancellationToken(ANALYTICS_REQUEST_TIMEOUT_MS)
+                )
+            } catch (e: Exception) {
+                uploadMetrics.onBatchFailed()
+                throw e
+            }
+            uploadMetrics.onBatchUploaded(events.size, SystemClock.elapsedRealtime() - startTime)
+
+            // deleting the batch acknowledges it; a retry starts after the last deleted event
+            lastAcknowledgedId = events.last().id
+            analyticsEventDao.deleteEventsInRange(events.first().id, lastAcknowledgedId)
+            if (events.size < UPLOAD_BATCH_SIZE) {
+                return
+            }
+        }
+    }
+
+    private fun isRetryable(error: Exception): Boolean =
+        error is IOException || error is HttpClientException || error is ServerException ||
+            error is ServiceUnavailableException || error is RateLimitException
+
     fun reportCrash(
         context: Context?, sessionId: String?, integration: String?, authorization: Authorization?
     ) {
@@ -148,7 +193,7 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         if (authorization == null) {
             return
         }
-        val metadata = deviceInspector.getDeviceMetadata(context, sessionId, integration)
+        val metadata = deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         val event = AnalyticsEvent("android.crash", timestamp)
         val events = listOf(event)
         try {
@@ -156,9 +201,11 @@ internal class AnalyticsClient @VisibleForTesting constructor(
             lastKnownAnalyticsUrl?.let { analyticsUrl ->
                 httpClient.post(
                     analyticsUrl,
-                    analyticsRequest.toString(),
+                    analyticsRequest,
                     null,
                     authorization,
+                    Scheduler.PRIORITY_LOW,
+                    CancellationToken(ANALYTICS_REQUEST_TIMEOUT_MS),
                     HttpNoResponse()
                 )
             }
@@ -169,7 +216,7 @@ internal class AnalyticsClient @VisibleForTesting constructor(
     @Throws(JSONException::class)
     private fun serializeEvents(
         authorization: Authorization?, events: List<AnalyticsEvent>, metadata: DeviceMetadata
-    ): JSONObject {
+    ): String {
         val requestObject = JSONObject()
         authorization?.let {
             if (it is ClientToken) {
@@ -179,7 +226,6 @@ internal class AnalyticsClient @VisibleForTesting constructor(
             }
         }
 
-        requestObject.put(META_KEY, metadata.toJSON())
         val eventObjects = JSONArray()
         var eventObject: JSONObject
         for (analyticsEvent in events) {
@@ -189,7 +235,10 @@ internal class AnalyticsClient @VisibleForTesting constructor(
             eventObjects.put(eventObject)
         }
         requestObject.put(ANALYTICS_KEY, eventObjects)
-        return requestObject
+
+        // splice in the metadata JSON, which is serialized once per metadata instead of per request
+        val body = requestObject.toString()
+        return "{\"$META_KEY\":${metadata.toJSONString()}," + body.substring(1)
     }
 
     companion object {
@@ -200,15 +249,51 @@ internal class AnalyticsClient @VisibleForTesting constructor(
         private const val TOKENIZATION_KEY = "tokenization_key"
         private const val AUTHORIZATION_FINGERPRINT_KEY = "authorization_fingerprint"
         private const val INVALID_TIMESTAMP: Long = -1
+
+        // analytics requests give up early so they do not hold connections needed by payment flows
+        private const val ANALYTICS_REQUEST_TIMEOUT_MS: Long = 10000
+
+        // number of events read from the database and sent in a single analytics request
+        const val UPLOAD_BATCH_SIZE = 100
+
+        // uploads that fail with a transient error are retried with exponential backoff until
+        // they have been attempted this many times; stored events are picked up by the next job
+        const val MAX_UPLOAD_ATTEMPTS = 5
+        private const val UPLOAD_BACKOFF_DELAY_MS: Long = 30000
         const val WORK_NAME_ANALYTICS_UPLOAD = "uploadAnalytics"
         const val WORK_NAME_ANALYTICS_WRITE = "writeAnalyticsToDb"
+        const val WORK_INPUT_KEY_ANALYTICS_URL = "analyticsUrl"
         const val WORK_INPUT_KEY_AUTHORIZATION = "authorization"
+
+        // full configuration JSON carried by upload jobs enqueued by earlier versions of the SDK
         const val WORK_INPUT_KEY_CONFIGURATION = "configuration"
         const val WORK_INPUT_KEY_EVENT_NAME = "eventName"
         const val WORK_INPUT_KEY_INTEGRATION = "integration"
         const val WORK_INPUT_KEY_SESSION_ID = "sessionId"
         const val WORK_INPUT_KEY_TIMESTAMP = "timestamp"
 
+        /**
+         * Create the input of an upload job. Only the analytics url is taken from the
+         * configuration, which keeps the job small and avoids parsing the configuration again when
+         * the job runs.
+         */
+        @JvmStatic
+        fun createUploadInputData(
+            configuration: Configuration,
+            authorization: Authorization,
+            sessionId: String?,
+            integration: String?
+        ): Data = workDataOf(
+            WORK_INPUT_KEY_ANALYTICS_URL to configuration.analyticsUrl,
+            WORK_INPUT_KEY_AUTHORIZATION to authorization.toString(),
+            WORK_INPUT_KEY_SESSION_ID to sessionId,
+            WORK_INPUT_KEY_INTEGRATION to integration
+        )
+
+        private fun getAnalyticsUrlFromData(inputData: Data): String? =
+            inputData.getString(WORK_INPUT_KEY_ANALYTICS_URL)
+                ?: getConfigurationFromData(inputData)?.analyticsUrl
+
         private fun getAuthorizationFromData(inputData: Data?): Authorization? =
             inputData?.getString(WORK_INPUT_KEY_AUTHORIZATION)?.let {
                 Authorization.fromString(it)
@@ -0,0 +1,211 @@
+package com.braintreepayments.api
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Bounded in-memory buffer of analytics events that are written to [AnalyticsDatabase] in batches.
+ *
+ * Events can be added from any thread without locking. They are flushed on a background thread in
+ * a single database transaction once [flushThreshold] events are buffered, [flushDelayMillis]
+ * after an event is added, or when the app moves to the background. If the buffer is full, new
+ * events are dropped and counted instead of blocking the caller.
+ *
+ * The database keeps at most [maxStoredEvents] events; the oldest are evicted when a batch would
+ * exceed it, e.g. when the device has been offline for a long time.
+ */
+internal class AnalyticsEventBuffer @VisibleForTesting constructor(
+    private val analyticsDatabase: AnalyticsDatabase,
+    private val scheduler: Scheduler,
+    private val capacity: Int = DEFAULT_CAPACITY,
+    private val flushThreshold: Int = DEFAULT_FLUSH_THRESHOLD,
+    private val flushDelayMillis: Long = DEFAULT_FLUSH_DELAY_MS,
+    private val maxStoredEvents: Int = DEFAULT_MAX_STORED_EVENTS
+) {
+    // ring of buffered events; a claimed slot stays null until its producer has written it
+    private val slots = AtomicReferenceArray<AnalyticsEvent?>(capacity)
+
+    // position of the next slot to write, claimed by producers with compare-and-set
+    private val tail = AtomicLong()
+
+    // position of the next slot to read, only advanced while holding flushLock
+    private val head = AtomicLong()
+    private val flushLock = Any()
+
+    private val immediateFlushScheduled = AtomicBoolean()
+    private val delayedFlushScheduled = AtomicBoolean()
+
+    private val droppedEventCount = AtomicLong()
+    private val evictedEventCount = AtomicLong()
+    private val flushedEventCount = AtomicLong()
+    private val flushCount = AtomicLong()
+
+    private val immediateFlush = Runnable {
+        immediateFlushScheduled.set(false)
+        flush()
+    }
+
+    private val delayedFlush = Runnable {
+        delayedFlushScheduled.set(false)
+        flush()
+    }
+
+    /**
+     * Buffer an event to be written to the database.
+     *
+     * @return `false` if the buffer is full and the event was dropped
+     */
+    fun add(event: AnalyticsEvent): Boolean {
+        while (true) {
+            val position = tail.get()
+            if (position - head.get() >= capacity) {
+                droppedEventCount.incrementAndGet()
+                return false
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.set(slotIndex(position), event)
+                val bufferedCount = position + 1 - head.get()
+                scheduleFlush(immediately = bufferedCount >= flushThreshold)
+                return true
+            }
+        }
+    }
+
+    /**
+     * Write all buffered events to the database in a single transaction.
+     *
+     * @return the number of events written
+     */
+    @WorkerThread
+    fun flush(): Int {
+        val flushedCount = synchronized(flushLock) {
+            val events = drain()
+            if (events.isEmpty()) {
+                0
+            } else {
+                writeEvents(events)
+            }
+        }
+        if (getBufferedEventCount() > 0) {
+            // events were added during the flush, or their producers had not finished writing them
+            scheduleFlush(immediately = false)
+        }
+        return flushedCount
+    }
+
+    /**
+     * Flush buffered events when the app's UI is no longer visible, since the process may be
+     * killed before the next scheduled flush.
+     */
+    fun flushOnAppBackgrounded(context: Context) {
+        context.applicationContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                    scheduleFlush(immediately = true)
+                }
+            }
+
+            override fun onConfigurationChanged(newConfig: android.content.res.Configuration) {}
+
+            override fun onLowMemory() {}
+        })
+    }
+
+    /**
+     * @return the number of events waiting to be written to the database.
+     */
+    fun getBufferedEventCount(): Int = (tail.get() - head.get()).toInt()
+
+    /**
+     * @return the number of events that were dropped because the buffer was full or the database
+     * rejected them.
+     */
+    fun getDroppedEventCount(): Long = droppedEventCount.get()
+
+    /**
+     * @return the number of stored events deleted to keep the database within its size limit.
+     */
+    fun getEvictedEventCount(): Long = evictedEventCount.get()
+
+    /**
+     * @return the number of events written to the database.
+     */
+    fun getFlushedEventCount(): Long = flushedEventCount.get()
+
+    /**
+     * @return the number of batches written to the database.
+     */
+    fun getFlushCount(): Long = flushCount.get()
+
+    private fun drain(): List<AnalyticsEvent> {
+        val events = mutableListOf<AnalyticsEvent>()
+        var position = head.get()
+        while (position < tail.get()) {
+            val index = slotIndex(position)
+            // stop at a slot that has been claimed but not yet written
+            val event = slots.get(index) ?: break
+            slots.set(index, null)
+            position++
+            head.set(position)
+            events.add(event)
+        }
+        return events
+    }
+
+    private fun writeEvents(events: List<AnalyticsEvent>): Int = try {
+        analyticsDatabase.runInTransaction(Runnable {
+            val analyticsEventDao = analyticsDatabase.analyticsEventDao()
+            analyticsEventDao.insertEvents(events)
+            val evictedCount = analyticsEventDao.trimToSize(maxStoredEvents)
+            evictedEventCount.addAndGet(evictedCount.toLong())
+        })
+        flushedEventCount.addAndGet(events.size.toLong())
+        flushCount.incrementAndGet()
+        events.size
+    } catch (e: Exception) {
+        // events are best effort; do not retry a batch the database rejected
+        droppedEventCount.addAndGet(events.size.toLong())
+        0
+    }
+
+    private fun scheduleFlush(immediately: Boolean) {
+        if (immediately) {
+            if (immediateFlushScheduled.compareAndSet(false, true)) {
+                scheduler.runOnBackground(immediateFlush, Scheduler.PRIORITY_LOW)
+            }
+        } else if (delayedFlushScheduled.compareAndSet(false, true)) {
+            scheduler.runOnBackground(delayedFlush, Scheduler.PRIORITY_LOW, flushDelayMillis)
+        }
+    }
+
+    private fun slotIndex(position: Long): Int = (position % capacity).toInt()
+
+    companion object {
+        const val DEFAULT_CAPACITY = 256
+        const val DEFAULT_FLUSH_THRESHOLD = 20
+        val DEFAULT_FLUSH_DELAY_MS = TimeUnit.SECONDS.toMillis(5)
+        const val DEFAULT_MAX_STORED_EVENTS = 1000
+
+        @Volatile
+        private var INSTANCE: AnalyticsEventBuffer? = null
+
+        @JvmStatic
+        fun getInstance(context: Context): AnalyticsEventBuffer =
+            INSTANCE ?: synchronized(this) {
+                // double check that instance was not created in another thread
+                INSTANCE ?: AnalyticsEventBuffer(
+                    AnalyticsDatabase.getInstance(context.applicationContext),
+                    BoundedThreadScheduler.getInstance()
+                ).also {
+                    it.flushOnAppBackgrounded(context)
+                    INSTANCE = it
+                }
+            }
+    }
+}
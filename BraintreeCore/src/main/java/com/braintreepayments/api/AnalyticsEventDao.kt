@@ -1,7 +1,6 @@
 package com.braintreepayments.api
 
 import androidx.room.Dao
-import androidx.room.Delete
 import androidx.room.Insert
 import androidx.room.Query
 
@@ -11,9 +10,33 @@ internal interface AnalyticsEventDao {
     @Insert
     fun insertEvent(event: AnalyticsEvent)
 
-    @Query("SELECT * FROM analytics_event")
-    fun getAllEvents(): List<AnalyticsEvent>
+    @Insert
+    fun insertEvents(events: List<AnalyticsEvent>)
+
+    /**
+     * Read the next page of events in insertion order, starting after [afterId]. Pages are keyed
+     * by id rather than offset so rows deleted between reads do not shift the next page.
+     */
+    @Query("SELECT * FROM analytics_event WHERE _id > :afterId ORDER BY _id LIMIT :limit")
+    fun getEventsAfter(afterId: Int, limit: Int): List<AnalyticsEvent>
+
+    @Query("SELECT COUNT(*) FROM analytics_event")
+    fun getEventCount(): Int
+
+    /**
+     * @return the number of events deleted
+     */
+    @Query("DELETE FROM analytics_event WHERE _id BETWEEN :firstId AND :lastId")
+    fun deleteEventsInRange(firstId: Int, lastId: Int): Int
 
-    @Delete
-    fun deleteEvents(events: List<AnalyticsEvent>)
-}
\ No newline at end of file
+    /**
+     * Delete the oldest events so that at most [maxEvents] remain.
+     *
+     * @return the number of events deleted
+     */
+    @Query(
+        "DELETE FROM analytics_event WHERE _id NOT IN " +
+            "(SELECT _id FROM analytics_event ORDER BY _id DESC LIMIT :maxEvents)"
+    )
+    fun trimToSize(maxEvents: Int): Int
+}
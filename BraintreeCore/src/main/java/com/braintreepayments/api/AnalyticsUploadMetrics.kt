@@ -0,0 +1,97 @@
+package com.braintreepayments.api
+
+/**
+ * Process-wide counters describing analytics uploads. A new [AnalyticsClient] is created for each
+ * upload job, so the counters are kept here rather than on the client.
+ *
+ * This class is thread-safe.
+ */
+internal class AnalyticsUploadMetrics {
+
+    private val lock = Any()
+
+    // guarded by lock
+    private var uploadCount = 0L
+    private var lastBacklogSize = 0
+    private var maxBacklogSize = 0
+    private var batchCount = 0L
+    private var failedBatchCount = 0L
+    private var uploadedEventCount = 0L
+    private var totalBatchLatency = 0L
+    private var maxBatchLatency = 0L
+
+    /**
+     * Record the start of an upload with [backlogSize] events stored in the database.
+     */
+    fun onUploadStarted(backlogSize: Int) = synchronized(lock) {
+        uploadCount++
+        lastBacklogSize = backlogSize
+        maxBacklogSize = maxOf(maxBacklogSize, backlogSize)
+    }
+
+    fun onBatchUploaded(eventCount: Int, latencyMillis: Long) = synchronized(lock) {
+        batchCount++
+        uploadedEventCount += eventCount
+        totalBatchLatency += latencyMillis
+        maxBatchLatency = maxOf(maxBatchLatency, latencyMillis)
+    }
+
+    fun onBatchFailed() = synchronized(lock) {
+        failedBatchCount++
+    }
+
+    /**
+     * @return the number of upload jobs that have run.
+     */
+    fun getUploadCount(): Long = synchronized(lock) { uploadCount }
+
+    /**
+     * @return the number of stored events when the most recent upload started.
+     */
+    fun getLastBacklogSize(): Int = synchronized(lock) { lastBacklogSize }
+
+    /**
+     * @return the largest number of stored events seen when an upload started.
+     */
+    fun getMaxBacklogSize(): Int = synchronized(lock) { maxBacklogSize }
+
+    /**
+     * @return the number of batches acknowledged by the analytics service.
+     */
+    fun getBatchCount(): Long = synchronized(lock) { batchCount }
+
+    /**
+     * @return the number of batches whose request failed.
+     */
+    fun getFailedBatchCount(): Long = synchronized(lock) { failedBatchCount }
+
+    /**
+     * @return the number of events acknowledged by the analytics service.
+     */
+    fun getUploadedEventCount(): Long = synchronized(lock) { uploadedEventCount }
+
+    /**
+     * @return the average time taken to send an acknowledged batch, in milliseconds.
+     */
+    fun getAverageBatchLatencyMillis(): Long = synchronized(lock) {
+        if (batchCount > 0) totalBatchLatency / batchCount else 0
+    }
+
+    /**
+     * @return the longest time taken to send an acknowledged batch, in milliseconds.
+     */
+    fun getMaxBatchLatencyMillis(): Long = synchronized(lock) { maxBatchLatency }
+
+    companion object {
+
+        @Volatile
+        private var INSTANCE: AnalyticsUploadMetrics? = null
+
+        @JvmStatic
+        fun getInstance(): AnalyticsUploadMetrics =
+            INSTANCE ?: synchronized(this) {
+                // double check that instance was not created in another thread
+                INSTANCE ?: AnalyticsUploadMetrics().also { INSTANCE = it }
+            }
+    }
+}
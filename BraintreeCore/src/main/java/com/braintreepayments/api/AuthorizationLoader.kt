@@ -1,29 +1,58 @@
 package com.braintreepayments.api
 
 import androidx.annotation.VisibleForTesting
+import java.util.concurrent.TimeUnit
 
-internal class AuthorizationLoader(
+/**
+ * Loads the [Authorization] used by a [BraintreeClient], fetching client tokens from a
+ * [ClientTokenProvider] when one is set.
+ *
+ * This class is thread-safe. At most one [ClientTokenProvider.getClientToken] call is in flight at a
+ * time; callers that arrive while it is outstanding are queued and notified with its result.
+ */
+internal class AuthorizationLoader @JvmOverloads constructor(
     initialAuthString: String?,
-    private val clientTokenProvider: ClientTokenProvider?
+    private val clientTokenProvider: ClientTokenProvider?,
+    private val currentTimeMillis: () -> Long = { System.currentTimeMillis() }
 ) {
+    private val lock = Any()
+
     // cache initial auth if available
+    @Volatile
     @VisibleForTesting
     var authorizationFromCache = initialAuthString?.let { Authorization.fromString(it) }
 
+    /**
+     * When `true`, client tokens that carry an expiry are refetched from the
+     * [ClientTokenProvider] once they are within [REFRESH_WINDOW] of expiring.
+     */
+    @Volatile
+    var refreshesClientTokenBeforeExpiry = false
+
+    // callbacks waiting on the client token fetch that is in flight, or null if there is none;
+    // guarded by lock along with the metrics below
+    private var pendingCallbacks: MutableList<AuthorizationCallback>? = null
+    private var fetchStartedAt = 0L
+
+    private var providerCallCount = 0L
+    private var completedProviderCallCount = 0L
+    private var totalProviderLatency = 0L
+    private var maxProviderLatency = 0L
+    private var queuedCallbackCount = 0L
+    private var maxFanOut = 0
+
     fun loadAuthorization(callback: AuthorizationCallback) {
-        if (authorizationFromCache != null) {
-            callback.onAuthorizationResult(authorizationFromCache, null)
+        val authorization = authorizationFromCache
+        if (authorization != null && !isExpired(authorization)) {
+            callback.onAuthorizationResult(authorization, null)
+            if (isNearExpiry(authorization)) {
+                // the cached token is still usable; fetch its replacement without holding up the caller
+                fetchClientToken(null)
+            }
         } else if (clientTokenProvider != null) {
-            clientTokenProvider.getClientToken(object : ClientTokenCallback {
-                override fun onSuccess(clientToken: String) {
-                    authorizationFromCache = Authorization.fromString(clientToken)
-                    callback.onAuthorizationResult(authorizationFromCache, null)
-                }
-
-                override fun onFailure(error: Exception) {
-                    callback.onAuthorizationResult(null, error)
-                }
-            })
+            fetchClientToken(callback)
+        } else if (authorization != null) {
+            callback.onAuthorizationResult(authorization, null)
         } else {
             val clientSDKSetupURL =
                 "https://developer.paypal.com/braintree/docs/guides/client-sdk/setup/android/v4#initialization"
@@ -32,10 +61,141 @@ internal class AuthorizationLoader(
         }
     }
 
+    /**
+     * Replace an authorization that was rejected by the gateway. If the cached authorization has
+     * already been replaced, it is returned without fetching another client token.
+     *
+     * @param rejectedAuthorization the authorization that failed with an [AuthenticationException]
+     */
+    fun refreshAuthorization(rejectedAuthorization: Authorization, callback: AuthorizationCallback) {
+        val refreshedAuthorization = synchronized(lock) {
+            val authorization = authorizationFromCache
+            if (authorization != null && authorization.toString() != rejectedAuthorization.toString()) {
+                authorization
+            } else {
+                invalidateClientToken()
+                null
+            }
+        }
+        if (refreshedAuthorization != null) {
+            callback.onAuthorizationResult(refreshedAuthorization, null)
+        } else {
+            loadAuthorization(callback)
+        }
+    }
+
+    /**
+     * @return `true` if a rejected authorization can be replaced by fetching a new client token.
+     */
+    fun hasClientTokenProvider(): Boolean = clientTokenProvider != null
+
     fun invalidateClientToken() {
         // only invalidate client token cache if we can fetch a new one with a client token provider
         if (clientTokenProvider != null) {
             authorizationFromCache = null
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the number of times the [ClientTokenProvider] was asked for a client token.
+     */
+    fun getProviderCallCount(): Long = synchronized(lock) { providerCallCount }
+
+    /**
+     * @return the average time in milliseconds the [ClientTokenProvider] took to respond.
+     */
+    fun getAverageProviderLatencyMillis(): Long = synchronized(lock) {
+        if (completedProviderCallCount > 0) totalProviderLatency / completedProviderCallCount else 0
+    }
+
+    /**
+     * @return the longest time in milliseconds the [ClientTokenProvider] took to respond.
+     */
+    fun getMaxProviderLatencyMillis(): Long = synchronized(lock) { maxProviderLatency }
+
+    /**
+     * @return the number of callers that waited on a client token fetch started by another caller
+     * instead of calling the [ClientTokenProvider] themselves.
+     */
+    fun getQueuedCallbackCount(): Long = synchronized(lock) { queuedCallbackCount }
+
+    /**
+     * @return the largest number of callers notified by a single client token fetch.
+     */
+    fun getMaxFanOut(): Int = synchronized(lock) { maxFanOut }
+
+    private fun fetchClientToken(callback: AuthorizationCallback?) {
+        val cachedAuthorization = synchronized(lock) {
+            // another caller's fetch may have completed since the cache was checked
+            val authorization = authorizationFromCache
+            if (callback != null && authorization != null && !isExpired(authorization)) {
+                return@synchronized authorization
+            }
+
+            val inFlight = pendingCallbacks
+            if (inFlight != null) {
+                // share the result of the fetch that is already in flight
+                callback?.let {
+                    inFlight.add(it)
+                    queuedCallbackCount++
+                }
+                return
+            }
+            pendingCallbacks = mutableListOf<AuthorizationCallback>().apply { callback?.let { add(it) } }
+            fetchStartedAt = currentTimeMillis()
+            providerCallCount++
+            null
+        }
+        if (cachedAuthorization != null) {
+            callback?.onAuthorizationResult(cachedAuthorization, null)
+            return
+        }
+
+        clientTokenProvider?.getClientToken(object : ClientTokenCallback {
+            override fun onSuccess(clientToken: String) {
+                notifyPendingCallbacks(Authorization.fromString(clientToken), null)
+            }
+
+            override fun onFailure(error: Exception) {
+                notifyPendingCallbacks(null, error)
+            }
+        })
+    }
+
+    private fun notifyPendingCallbacks(authorization: Authorization?, error: Exception?) {
+        val callbacks = synchronized(lock) {
+            val callbacks = pendingCallbacks ?: return
+            pendingCallbacks = null
+            if (authorization != null) {
+                authorizationFromCache = authorization
+            }
+
+            val latency = currentTimeMillis() - fetchStartedAt
+            completedProviderCallCount++
+            totalProviderLatency += latency
+            maxProviderLatency = maxOf(maxProviderLatency, latency)
+            maxFanOut = maxOf(maxFanOut, callbacks.size)
+            callbacks
+        }
+
+        // notify outside of the lock so callbacks can load authorization again
+        for (callback in callbacks) {
+            callback.onAuthorizationResult(authorization, error)
+        }
+    }
+
+    private fun expiresAt(authorization: Authorization): Long? =
+        if (refreshesClientTokenBeforeExpiry) (authorization as? ClientToken)?.expiresAt else null
+
+    private fun isExpired(authorization: Authorization): Boolean =
+        expiresAt(authorization)?.let { currentTimeMillis() >= it } ?: false
+
+    private fun isNearExpiry(authorization: Authorization): Boolean =
+        clientTokenProvider != null &&
+            (expiresAt(authorization)?.let { currentTimeMillis() >= it - REFRESH_WINDOW } ?: false)
+
+    companion object {
+        @VisibleForTesting
+        val REFRESH_WINDOW = TimeUnit.MINUTES.toMillis(5)
+    }
+}
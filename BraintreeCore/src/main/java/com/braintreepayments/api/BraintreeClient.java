@@ -7,8 +7,11 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.fragment.app.FragmentActivity;
 
+import java.net.SocketTimeoutException;
+
 /**
  * Core Braintree class that handles network requests.
  */
@@ -23,6 +26,7 @@ public class BraintreeClient {
     private final Context applicationContext;
     private final CrashReporter crashReporter;
     private final ManifestValidator manifestValidator;
+    private final Scheduler scheduler;
     private final String sessionId;
     private final String integrationType;
     private final String returnUrlScheme;
@@ -65,7 +69,8 @@ public class BraintreeClient {
         AuthorizationLoader authorizationLoader =
                 new AuthorizationLoader(initialAuthString, clientTokenProvider);
 
-        BraintreeHttpClient httpClient = new BraintreeHttpClient();
+        Scheduler scheduler = BoundedThreadScheduler.getInstance();
+        BraintreeHttpClient httpClient = new BraintreeHttpClient(scheduler);
         return new BraintreeClientParams()
                 .authorizationLoader(authorizationLoader)
                 .context(context)
@@ -74,12 +79,13 @@ public class BraintreeClient {
                 .httpClient(httpClient)
                 .returnUrlScheme(returnUrlScheme)
                 .braintreeDeepLinkReturnUrlScheme(braintreeReturnURLScheme)
-                .graphQLClient(new BraintreeGraphQLClient())
+                .scheduler(scheduler)
+                .graphQLClient(new BraintreeGraphQLClient(scheduler))
                 .analyticsClient(new AnalyticsClient(context))
                 .browserSwitchClient(new BrowserSwitchClient())
                 .manifestValidator(new ManifestValidator())
                 .UUIDHelper(new UUIDHelper())
-                .configurationLoader(new ConfigurationLoader(context, httpClient));
+                .configurationLoader(new ConfigurationLoader(context, httpClient, scheduler));
     }
 
     /**
@@ -150,6 +156,8 @@ public class BraintreeClient {
         this.graphQLClient = params.getGraphQLClient();
         this.httpClient = params.getHttpClient();
         this.manifestValidator = params.getManifestValidator();
+        Scheduler scheduler = params.getScheduler();
+        this.scheduler = (scheduler != null) ? scheduler : BoundedThreadScheduler.getInstance();
 
         String sessionId = params.getSessionId();
         if (sessionId == null) {
@@ -191,10 +199,53 @@ public class BraintreeClient {
         });
     }
 
+    /**
+     * Retrieve Braintree configuration. Authorization and configuration are loaded on background
+     * threads and only the final result is delivered to the main thread.
+     *
+     * @return a {@link BraintreeFuture} that completes with the {@link Configuration}
+     */
+    @NonNull
+    public BraintreeFuture<Configuration> getConfigurationAsync() {
+        return getAuthorizationAsync().thenCompose(
+                new BraintreeFuture.Transformation<Authorization, BraintreeFuture<Configuration>>() {
+                    @Override
+                    public BraintreeFuture<Configuration> apply(Authorization authorization) {
+                        return getConfigurationAsync(authorization);
+                    }
+                });
+    }
+
     void getAuthorization(@NonNull final AuthorizationCallback callback) {
         authorizationLoader.loadAuthorization(callback);
     }
 
+    BraintreeFuture<Authorization> getAuthorizationAsync() {
+        final BraintreeFuture<Authorization> future = new BraintreeFuture<>(scheduler);
+        getAuthorization(new AuthorizationCallback() {
+            @Override
+            public void onAuthorizationResult(@Nullable Authorization authorization, @Nullable Exception error) {
+                future.setResult(authorization, error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Load configuration for an {@link Authorization} that was already retrieved, e.g. with
+     * {@link #getAuthorizationAsync()}. Configuration is loaded on a background thread.
+     */
+    BraintreeFuture<Configuration> getConfigurationAsync(Authorization authorization) {
+        final BraintreeFuture<Configuration> future = new BraintreeFuture<>(scheduler);
+        configurationLoader.loadConfiguration(authorization, new WorkerThreadConfigurationLoaderCallback() {
+            @Override
+            public void onResult(@Nullable Configuration configuration, @Nullable Exception error) {
+                future.setResult(configuration, error);
+            }
+        });
+        return future;
+    }
+
     void sendAnalyticsEvent(final String eventName) {
         getAuthorization(new AuthorizationCallback() {
             @Override
@@ -218,47 +269,21 @@ public class BraintreeClient {
     }
 
     void sendGET(final String url, final HttpResponseCallback responseCallback) {
-        getAuthorization(new AuthorizationCallback() {
+        sendAuthenticatedRequest(new AuthenticatedRequest() {
             @Override
-            public void onAuthorizationResult(@Nullable final Authorization authorization, @Nullable Exception authError) {
-                if (authorization != null) {
-                    getConfiguration(new ConfigurationCallback() {
-                        @Override
-                        public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
-                            if (configuration != null) {
-                                httpClient.get(url, configuration, authorization, responseCallback);
-                            } else {
-                                responseCallback.onResult(null, configError);
-                            }
-                        }
-                    });
-                } else {
-                    responseCallback.onResult(null, authError);
-                }
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                httpClient.get(url, configuration, authorization, callback);
             }
-        });
+        }, responseCallback);
     }
 
     void sendPOST(final String url, final String data, final HttpResponseCallback responseCallback) {
-        getAuthorization(new AuthorizationCallback() {
+        sendAuthenticatedRequest(new AuthenticatedRequest() {
             @Override
-            public void onAuthorizationResult(@Nullable final Authorization authorization, @Nullable Exception authError) {
-                if (authorization != null) {
-                    getConfiguration(new ConfigurationCallback() {
-                        @Override
-                        public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
-                            if (configuration != null) {
-                                httpClient.post(url, data, configuration, authorization, responseCallback);
-                            } else {
-                                responseCallback.onResult(null, configError);
-                            }
-                        }
-                    });
-                } else {
-                    responseCallback.onResult(null, authError);
-                }
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                httpClient.post(url, data, configuration, authorization, callback);
             }
-        });
+        }, responseCallback);
     }
 
     String getSessionId() {
@@ -270,20 +295,168 @@ public class BraintreeClient {
     }
 
     void sendGraphQLPOST(final String payload, final HttpResponseCallback responseCallback) {
+        sendAuthenticatedRequest(new AuthenticatedRequest() {
+            @Override
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                graphQLClient.post(payload, configuration, authorization, callback);
+            }
+        }, responseCallback);
+    }
+
+    /**
+     * Send a GraphQL request that fails once {@code timeoutMillis} have passed. The deadline
+     * includes the time spent loading authorization and configuration.
+     *
+     * @return a token that can be used to cancel the request
+     */
+    CancellationToken sendGraphQLPOST(final String payload, long timeoutMillis, final HttpResponseCallback responseCallback) {
+        final CancellationToken cancellationToken = new CancellationToken(timeoutMillis);
+        sendAuthenticatedRequest(new AuthenticatedRequest() {
+            @Override
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                graphQLClient.post(payload, configuration, authorization, cancellationToken, callback);
+            }
+        }, cancellationToken, responseCallback);
+        return cancellationToken;
+    }
+
+    /**
+     * Send a GET request. Authorization, configuration and the request itself are handled on
+     * background threads.
+     *
+     * @return a future that completes with the response body
+     */
+    BraintreeFuture<String> sendGETAsync(final String url) {
+        return sendAuthenticatedRequestAsync(new AuthenticatedRequest() {
+            @Override
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                httpClient.get(url, configuration, authorization, callback);
+            }
+        });
+    }
+
+    /**
+     * Send a POST request. Authorization, configuration and the request itself are handled on
+     * background threads.
+     *
+     * @return a future that completes with the response body
+     */
+    BraintreeFuture<String> sendPOSTAsync(final String url, final String data) {
+        return sendAuthenticatedRequestAsync(new AuthenticatedRequest() {
+            @Override
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                httpClient.post(url, data, configuration, authorization, callback);
+            }
+        });
+    }
+
+    /**
+     * Send a GraphQL request. Authorization, configuration and the request itself are handled on
+     * background threads.
+     *
+     * @return a future that completes with the response body
+     */
+    BraintreeFuture<String> sendGraphQLPOSTAsync(final String payload) {
+        return sendAuthenticatedRequestAsync(new AuthenticatedRequest() {
+            @Override
+            public void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback) {
+                graphQLClient.post(payload, configuration, authorization, callback);
+            }
+        });
+    }
+
+    /**
+     * A request that needs the current {@link Authorization} and {@link Configuration}.
+     */
+    private interface AuthenticatedRequest {
+        void send(Configuration configuration, Authorization authorization, HttpResponseCallback callback);
+    }
+
+    private BraintreeFuture<String> sendAuthenticatedRequestAsync(AuthenticatedRequest request) {
+        final BraintreeFuture<String> future = new BraintreeFuture<>(scheduler);
+        sendAuthenticatedRequest(request, new WorkerThreadHttpResponseCallback() {
+            @Override
+            public void onResult(String responseBody, Exception httpError) {
+                future.setResult(responseBody, httpError);
+            }
+        });
+        return future;
+    }
+
+    private void sendAuthenticatedRequest(final AuthenticatedRequest request, final HttpResponseCallback responseCallback) {
+        sendAuthenticatedRequest(request, null, responseCallback);
+    }
+
+    /**
+     * @param cancellationToken checked before each stage, so a request whose deadline passes while
+     *                          authorization or configuration is loading fails without being sent.
+     */
+    private void sendAuthenticatedRequest(final AuthenticatedRequest request, @Nullable final CancellationToken cancellationToken,
+                                          final HttpResponseCallback responseCallback) {
         getAuthorization(new AuthorizationCallback() {
             @Override
-            public void onAuthorizationResult(@Nullable final Authorization authorization, @Nullable Exception authError) {
+            public void onAuthorizationResult(@Nullable Authorization authorization, @Nullable Exception authError) {
                 if (authorization != null) {
-                    getConfiguration(new ConfigurationCallback() {
+                    sendAuthenticatedRequest(request, authorization, cancellationToken, true, responseCallback);
+                } else {
+                    responseCallback.onResult(null, authError);
+                }
+            }
+        });
+    }
+
+    private void sendAuthenticatedRequest(final AuthenticatedRequest request, final Authorization authorization,
+                                          @Nullable final CancellationToken cancellationToken,
+                                          boolean replayOnAuthenticationError, final HttpResponseCallback responseCallback) {
+        if (notifyIfDone(cancellationToken, responseCallback)) {
+            return;
+        }
+        final boolean replay = replayOnAuthenticationError && authorizationLoader.hasClientTokenProvider();
+        configurationLoader.loadConfiguration(authorization, onThreadOf(responseCallback, new ConfigurationLoaderCallback() {
+            @Override
+            public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
+                if (notifyIfDone(cancellationToken, responseCallback)) {
+                    return;
+                }
+                if (configuration == null) {
+                    if (replay && isAuthenticationError(configError)) {
+                        replayWithRefreshedAuthorization(request, authorization, cancellationToken, responseCallback);
+                    } else {
+                        responseCallback.onResult(null, configError);
+                    }
+                } else if (replay) {
+                    request.send(configuration, authorization, onThreadOf(responseCallback, new HttpResponseCallback() {
                         @Override
-                        public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
-                            if (configuration != null) {
-                                graphQLClient.post(payload, configuration, authorization, responseCallback);
+                        public void onResult(String responseBody, Exception httpError) {
+                            if (isAuthenticationError(httpError)) {
+                                replayWithRefreshedAuthorization(request, authorization, cancellationToken, responseCallback);
                             } else {
-                                responseCallback.onResult(null, configError);
+                                responseCallback.onResult(responseBody, httpError);
                             }
                         }
-                    });
+                    }));
+                } else {
+                    request.send(configuration, authorization, responseCallback);
+                }
+            }
+        }));
+    }
+
+    /**
+     * The gateway rejected {@code authorization}, most likely because the client token expired.
+     * Fetch a new client token once and send the request again with it.
+     */
+    private void replayWithRefreshedAuthorization(final AuthenticatedRequest request, Authorization authorization,
+                                                  @Nullable final CancellationToken cancellationToken,
+                                                  final HttpResponseCallback responseCallback) {
+        if (notifyIfDone(cancellationToken, responseCallback)) {
+            return;
+        }
+        authorizationLoader.refreshAuthorization(authorization, new AuthorizationCallback() {
+            @Override
+            public void onAuthorizationResult(@Nullable Authorization refreshedAuthorization, @Nullable Exception authError) {
+                if (refreshedAuthorization != null) {
+                    sendAuthenticatedRequest(request, refreshedAuthorization, cancellationToken, false, responseCallback);
                 } else {
                     responseCallback.onResult(null, authError);
                 }
@@ -291,6 +464,67 @@ public class BraintreeClient {
         });
     }
 
+    /**
+     * Keep an intermediate stage on the worker thread if the final callback is notified there.
+     */
+    private static ConfigurationLoaderCallback onThreadOf(HttpResponseCallback responseCallback,
+                                                          final ConfigurationLoaderCallback callback) {
+        if (!(responseCallback instanceof WorkerThreadCallback)) {
+            return callback;
+        }
+        return new WorkerThreadConfigurationLoaderCallback() {
+            @Override
+            public void onResult(@Nullable Configuration configuration, @Nullable Exception error) {
+                callback.onResult(configuration, error);
+            }
+        };
+    }
+
+    /**
+     * Keep an intermediate stage on the worker thread if the final callback is notified there.
+     */
+    private static HttpResponseCallback onThreadOf(HttpResponseCallback responseCallback,
+                                                   final HttpResponseCallback callback) {
+        if (!(responseCallback instanceof WorkerThreadCallback)) {
+            return callback;
+        }
+        return new WorkerThreadHttpResponseCallback() {
+            @Override
+            public void onResult(String responseBody, Exception httpError) {
+                callback.onResult(responseBody, httpError);
+            }
+        };
+    }
+
+    private interface WorkerThreadConfigurationLoaderCallback extends ConfigurationLoaderCallback, WorkerThreadCallback {
+    }
+
+    private interface WorkerThreadHttpResponseCallback extends HttpResponseCallback, WorkerThreadCallback {
+    }
+
+    /**
+     * @return {@code true} if {@code cancellationToken} was cancelled or its deadline has passed,
+     * in which case {@code responseCallback} has been notified with the error.
+     */
+    private static boolean notifyIfDone(@Nullable CancellationToken cancellationToken,
+                                        HttpResponseCallback responseCallback) {
+        if (cancellationToken == null) {
+            return false;
+        }
+        try {
+            cancellationToken.throwIfDone();
+            return false;
+        } catch (RequestCancelledException | SocketTimeoutException error) {
+            responseCallback.onResult(null, error);
+            return true;
+        }
+    }
+
+    private static boolean isAuthenticationError(Exception error) {
+        return error instanceof AuthenticationException
+                || (error != null && error.getCause() instanceof AuthenticationException);
+    }
+
     void startBrowserSwitch(FragmentActivity activity, BrowserSwitchOptions browserSwitchOptions) throws BrowserSwitchException {
         if (browserSwitchClient != null) {
             browserSwitchClient.start(activity, browserSwitchOptions);
@@ -377,6 +611,55 @@ public class BraintreeClient {
         authorizationLoader.invalidateClientToken();
     }
 
+    /**
+     * For clients using a {@link ClientTokenProvider}, set this property to true to fetch a new
+     * client token in the background shortly before the cached one expires, instead of waiting
+     * for a request to be rejected.
+     *
+     * Requests rejected with an {@link AuthenticationException} are sent once more with a new
+     * client token regardless of this setting.
+     *
+     * @param refreshesClientTokenBeforeExpiry set to true to refresh client tokens ahead of expiry.
+     *                                         This value is false by default.
+     */
+    public void refreshesClientTokenBeforeExpiry(boolean refreshesClientTokenBeforeExpiry) {
+        authorizationLoader.setRefreshesClientTokenBeforeExpiry(refreshesClientTokenBeforeExpiry);
+    }
+
+    /**
+     * Prepare the TLS configuration shared by all {@link BraintreeClient} instances, so that the
+     * first request does not pay for parsing the pinned certificates.
+     *
+     * This method blocks while the certificates are parsed. Call it from a background thread,
+     * e.g. during application startup. Calling it more than once has no additional cost.
+     */
+    @WorkerThread
+    public static void warmUp() {
+        TLSCertificatePinning.INSTANCE.warmUp();
+    }
+
+    /**
+     * Start loading authorization and configuration and preparing the pinned TLS configuration in
+     * the background, so that the first payment flow does not wait on them. Call this when a checkout screen is about to be shown.
+     */
+    public void prefetch() {
+        createPrefetcher().prefetch(null);
+    }
+
+    /**
+     * Same as {@link #prefetch()}, and notify the callback on the main thread with the time each
+     * stage took once all of them have finished.
+     *
+     * @param callback {@link PrefetchCallback}
+     */
+    public void prefetch(@NonNull PrefetchCallback callback) {
+        createPrefetcher().prefetch(callback);
+    }
+
+    private Prefetcher createPrefetcher() {
+        return new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+    }
+
     boolean launchesBrowserSwitchAsNewTask() {
         return launchesBrowserSwitchAsNewTask;
     }
@@ -19,6 +19,7 @@ class BraintreeClientParams {
     private ManifestValidator manifestValidator;
     private UUIDHelper uuidHelper;
     private String braintreeDeepLinkReturnUrlScheme;
+    private Scheduler scheduler;
 
     AuthorizationLoader getAuthorizationLoader() {
         return authorizationLoader;
@@ -138,4 +139,13 @@ class BraintreeClientParams {
         this.braintreeDeepLinkReturnUrlScheme = braintreeDeepLinkReturnUrlScheme;
         return this;
     }
+
+    Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    BraintreeClientParams scheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
 }
@@ -0,0 +1,279 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an asynchronous Braintree operation.
+ *
+ * Stages of an operation, e.g. loading authorization, configuration and sending a request, are
+ * chained on background threads. Callbacks added with {@link #addCallback(BraintreeFutureCallback)}
+ * are notified on the main thread once the final result is available. On a background thread,
+ * the result can also be waited for with {@link #get()}.
+ *
+ * @param <T> the type of the result
+ */
+public class BraintreeFuture<T> implements Future<T> {
+
+    /**
+     * A stage that transforms the result of a future.
+     *
+     * @param <T> the type of the result of the previous stage
+     * @param <R> the type of the result of this stage
+     */
+    public interface Transformation<T, R> {
+
+        /**
+         * @param value the result of the previous stage
+         * @return the result of this stage
+         * @throws Exception to fail the stage and every stage chained after it
+         */
+        R apply(T value) throws Exception;
+    }
+
+    private final Object lock = new Object();
+    private final Scheduler scheduler;
+
+    // guarded by lock
+    private boolean done;
+    private boolean cancelled;
+    private T result;
+    private Exception error;
+    private List<Listener<T>> listeners = new ArrayList<>();
+
+    BraintreeFuture(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Notify {@code callback} on the main thread with the result of this future. If the future is
+     * already done, the callback is still posted to the main thread.
+     *
+     * @param callback {@link BraintreeFutureCallback}
+     */
+    public void addCallback(@NonNull final BraintreeFutureCallback<T> callback) {
+        addListener(new Listener<T>() {
+            @Override
+            public void onComplete(final T result, final Exception error) {
+                scheduler.runOnMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(result, error);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Wait for the result of this future. This must not be called on the main thread.
+     *
+     * @return the result
+     * @throws ExecutionException if the operation failed; its cause is the original error
+     * @throws CancellationException if the future was cancelled
+     */
+    @Override
+    @WorkerThread
+    public T get() throws InterruptedException, ExecutionException {
+        synchronized (lock) {
+            while (!done) {
+                lock.wait();
+            }
+            return getResult();
+        }
+    }
+
+    /**
+     * Wait at most {@code timeout} for the result of this future. This must not be called on the
+     * main thread.
+     *
+     * @return the result
+     * @throws ExecutionException if the operation failed; its cause is the original error
+     * @throws TimeoutException if the result is not available in time
+     * @throws CancellationException if the future was cancelled
+     */
+    @Override
+    @WorkerThread
+    public T get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!done) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+            }
+            return getResult();
+        }
+    }
+
+    /**
+     * Stop waiting for the result. Callbacks are notified with a {@link CancellationException};
+     * work that has already started is not interrupted.
+     *
+     * @return {@code true} if the future was cancelled, {@code false} if it was already done
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        CancellationException cancellation = new CancellationException("Operation was cancelled.");
+        synchronized (lock) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+        }
+        return setResult(null, cancellation);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        synchronized (lock) {
+            return cancelled;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        synchronized (lock) {
+            return done;
+        }
+    }
+
+    /**
+     * @return {@code true} if this call completed the future.
+     */
+    boolean complete(@Nullable T value) {
+        return setResult(value, null);
+    }
+
+    /**
+     * @return {@code true} if this call completed the future.
+     */
+    boolean fail(@NonNull Exception exception) {
+        return setResult(null, exception);
+    }
+
+    /**
+     * @return a future that completes with {@code transformation} applied to the result of this
+     * future. The transformation runs on the thread that completes this future, which is a
+     * background thread for futures returned by {@link BraintreeClient}.
+     */
+    @NonNull
+    public <R> BraintreeFuture<R> thenApply(@NonNull final Transformation<T, R> transformation) {
+        final BraintreeFuture<R> next = new BraintreeFuture<>(scheduler);
+        addListener(new Listener<T>() {
+            @Override
+            public void onComplete(T result, Exception error) {
+                if (error != null) {
+                    next.fail(error);
+                    return;
+                }
+                try {
+                    next.complete(transformation.apply(result));
+                } catch (Exception e) {
+                    next.fail(e);
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @return a future that completes with the result of the future returned by
+     * {@code transformation}, which is started with the result of this future on the thread that
+     * completes it.
+     */
+    @NonNull
+    public <R> BraintreeFuture<R> thenCompose(@NonNull final Transformation<T, BraintreeFuture<R>> transformation) {
+        final BraintreeFuture<R> next = new BraintreeFuture<>(scheduler);
+        addListener(new Listener<T>() {
+            @Override
+            public void onComplete(T result, Exception error) {
+                if (error != null) {
+                    next.fail(error);
+                    return;
+                }
+                try {
+                    transformation.apply(result).addListener(new Listener<R>() {
+                        @Override
+                        public void onComplete(R result, Exception error) {
+                            next.setResult(result, error);
+                        }
+                    });
+                } catch (Exception e) {
+                    next.fail(e);
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Notify {@code listener} on the thread that completes this future, or immediately if it is
+     * already done.
+     */
+    void addListener(Listener<T> listener) {
+        T result;
+        Exception error;
+        synchronized (lock) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+            result = this.result;
+            error = this.error;
+        }
+        listener.onComplete(result, error);
+    }
+
+    /**
+     * Complete the future with {@code exception} if it is not {@code null}, or with {@code value}
+     * otherwise.
+     *
+     * @return {@code true} if this call completed the future.
+     */
+    boolean setResult(@Nullable T value, @Nullable Exception exception) {
+        List<Listener<T>> listenersToNotify;
+        synchronized (lock) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            result = (exception == null) ? value : null;
+            error = exception;
+            listenersToNotify = listeners;
+            listeners = null;
+            lock.notifyAll();
+        }
+
+        // notify outside of the lock so listeners can chain further stages
+        for (Listener<T> listener : listenersToNotify) {
+            listener.onComplete(result, exception);
+        }
+        return true;
+    }
+
+    private T getResult() throws ExecutionException {
+        if (error instanceof CancellationException) {
+            throw (CancellationException) error;
+        } else if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+
+    interface Listener<T> {
+        void onComplete(@Nullable T result, @Nullable Exception error);
+    }
+}
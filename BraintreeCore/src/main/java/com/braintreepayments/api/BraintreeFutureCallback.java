@@ -0,0 +1,17 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Callback for receiving the result of a {@link BraintreeFuture}.
+ *
+ * @param <T> the type of the result
+ */
+public interface BraintreeFutureCallback<T> {
+
+    /**
+     * @param result the result of the operation
+     * @param error an exception that occurred while completing the operation
+     */
+    void onResult(@Nullable T result, @Nullable Exception error);
+}
@@ -0,0 +1,36 @@
+@file:JvmName("BraintreeFutureExtensions")
+
+package com.braintreepayments.api
+
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+import kotlin.coroutines.suspendCoroutine
+
+/**
+ * Suspend until this future completes, without blocking a thread. The coroutine resumes on its
+ * own dispatcher, so no main thread hop is made unless the coroutine runs on the main thread.
+ *
+ * Cancelling the coroutine does not cancel the future; call [BraintreeFuture.cancel] for that.
+ *
+ * @return the result of the future
+ * @throws Exception the error the operation failed with
+ */
+suspend fun <T> BraintreeFuture<T>.await(): T = suspendCoroutine { continuation ->
+    addListener { result, error ->
+        if (error != null) {
+            continuation.resumeWithException(error)
+        } else {
+            // a future without an error completed with its value, which may itself be null
+            @Suppress("UNCHECKED_CAST")
+            continuation.resume(result as T)
+        }
+    }
+}
+
+/**
+ * Retrieve Braintree configuration from a coroutine.
+ *
+ * @return the [Configuration]
+ * @throws Exception the error loading authorization or configuration failed with
+ */
+suspend fun BraintreeClient.awaitConfiguration(): Configuration = getConfigurationAsync().await()
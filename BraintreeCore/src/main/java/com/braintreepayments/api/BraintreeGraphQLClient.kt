@@ -4,6 +4,8 @@ internal class BraintreeGraphQLClient(
     private val httpClient: HttpClient = createDefaultHttpClient()
 ) {
 
+    constructor(scheduler: Scheduler) : this(createDefaultHttpClient(scheduler))
+
     fun post(
         path: String?,
         data: String?,
@@ -24,6 +26,7 @@ internal class BraintreeGraphQLClient(
             .addHeader("User-Agent", "braintree/android/" + BuildConfig.VERSION_NAME)
             .addHeader("Authorization", String.format("Bearer %s", authorization.bearer))
             .addHeader("Braintree-Version", GraphQLConstants.Headers.API_VERSION)
+            .priority(Scheduler.PRIORITY_HIGH)
         httpClient.sendRequest(request, callback)
     }
 
@@ -32,6 +35,14 @@ internal class BraintreeGraphQLClient(
         configuration: Configuration,
         authorization: Authorization,
         callback: HttpResponseCallback
+    ) = post(data, configuration, authorization, null, callback)
+
+    fun post(
+        data: String?,
+        configuration: Configuration,
+        authorization: Authorization,
+        cancellationToken: CancellationToken?,
+        callback: HttpResponseCallback
     ) {
         if (authorization is InvalidAuthorization) {
             val message = authorization.errorMessage
@@ -46,6 +57,8 @@ internal class BraintreeGraphQLClient(
             .addHeader("User-Agent", "braintree/android/" + BuildConfig.VERSION_NAME)
             .addHeader("Authorization", String.format("Bearer %s", authorization.bearer))
             .addHeader("Braintree-Version", GraphQLConstants.Headers.API_VERSION)
+            .priority(Scheduler.PRIORITY_HIGH)
+            .cancellationToken(cancellationToken)
         httpClient.sendRequest(request, callback)
     }
 
@@ -73,9 +86,10 @@ internal class BraintreeGraphQLClient(
 
     companion object {
 
-        private fun createDefaultHttpClient(): HttpClient {
-            val socketFactory = TLSSocketFactory(TLSCertificatePinning.certInputStream)
-            return HttpClient(socketFactory, BraintreeGraphQLResponseParser())
+        private fun createDefaultHttpClient(
+            scheduler: Scheduler = BoundedThreadScheduler.getInstance()
+        ): HttpClient {
+            return HttpClient(TLSCertificatePinning.socketFactory, BraintreeGraphQLResponseParser(), scheduler)
         }
     }
 }
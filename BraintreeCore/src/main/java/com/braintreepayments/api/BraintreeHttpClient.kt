@@ -12,6 +12,8 @@ internal class BraintreeHttpClient(
     private val httpClient: HttpClient = createDefaultHttpClient()
 ) {
 
+    constructor(scheduler: Scheduler) : this(createDefaultHttpClient(scheduler))
+
     /**
      * Make a HTTP GET request to Braintree using the base url, path and authorization provided.
      * If the path is a full url, it will be used instead of the previously provided url.
@@ -42,19 +44,100 @@ internal class BraintreeHttpClient(
         authorization: Authorization?,
         @RetryStrategy retryStrategy: Int,
         callback: HttpResponseCallback
+    ) = get(path, configuration, authorization, retryStrategy, null, callback)
+
+    /**
+     * Make a HTTP GET request to Braintree using the base url, path and authorization provided.
+     * If the path is a full url, it will be used instead of the previously provided url.
+     * @param path The path or url to request from the server via GET
+     * @param configuration configuration for the Braintree Android SDK.
+     * @param authorization
+     * @param retryStrategy retry strategy
+     * @param cancellationToken token used to cancel the request or bound it with a deadline
+     * @param callback [HttpResponseCallback]
+     */
+    operator fun get(
+        path: String,
+        configuration: Configuration?,
+        authorization: Authorization?,
+        @RetryStrategy retryStrategy: Int,
+        cancellationToken: CancellationToken?,
+        callback: HttpResponseCallback
     ) {
-        if (authorization is InvalidAuthorization) {
-            val message = authorization.errorMessage
-            callback.onResult(null, BraintreeException(message))
+        val request = try {
+            createGetRequest(path, configuration, authorization)
+        } catch (e: BraintreeException) {
+            callback.onResult(null, e)
             return
         }
+        request.cancellationToken(cancellationToken)
+        httpClient.sendRequest(request, retryStrategy, callback)
+    }
+
+    /**
+     * Make a conditional HTTP GET request to Braintree for a full url. The request is sent with
+     * `If-None-Match` and `If-Modified-Since` headers from the given validators, and the
+     * validators of the response are passed to the callback with its body.
+     * If the resource has not changed, the callback receives a [NotModifiedException].
+     * Callbacks that implement [WorkerThreadCallback] are notified on the worker thread.
+     * @param url The url to request from the server via GET
+     * @param authorization
+     * @param retryStrategy retry strategy
+     * @param validators validators of the cached response, or null to make an unconditional request
+     * @param callback [ConditionalHttpResponseCallback]
+     */
+    fun getConditional(
+        url: String,
+        authorization: Authorization?,
+        @RetryStrategy retryStrategy: Int,
+        validators: CacheValidators?,
+        callback: ConditionalHttpResponseCallback
+    ) {
+        val request = try {
+            createGetRequest(url, null, authorization)
+        } catch (e: BraintreeException) {
+            callback.onResult(null, null, e)
+            return
+        }
+        validators?.eTag?.let { request.addHeader(IF_NONE_MATCH_HEADER, it) }
+        validators?.lastModified?.let { request.addHeader(IF_MODIFIED_SINCE_HEADER, it) }
+        request.captureResponseHeaders(ETAG_HEADER, LAST_MODIFIED_HEADER)
+
+        val onResponse = { responseBody: String?, httpError: Exception? ->
+            val eTag = request.getResponseHeader(ETAG_HEADER)
+            val lastModified = request.getResponseHeader(LAST_MODIFIED_HEADER)
+            val responseValidators = if (eTag != null || lastModified != null) {
+                CacheValidators(eTag, lastModified)
+            } else {
+                null
+            }
+            callback.onResult(responseBody, responseValidators, httpError)
+        }
+        val responseCallback = if (callback is WorkerThreadCallback) {
+            object : HttpResponseCallback, WorkerThreadCallback {
+                override fun onResult(responseBody: String?, httpError: Exception?) =
+                    onResponse(responseBody, httpError)
+            }
+        } else {
+            HttpResponseCallback { responseBody, httpError -> onResponse(responseBody, httpError) }
+        }
+        httpClient.sendRequest(request, retryStrategy, responseCallback)
+    }
+
+    @Throws(BraintreeException::class)
+    private fun createGetRequest(
+        path: String,
+        configuration: Configuration?,
+        authorization: Authorization?
+    ): HttpRequest {
+        if (authorization is InvalidAuthorization) {
+            throw BraintreeException(authorization.errorMessage)
+        }
         val isRelativeURL = !path.startsWith("http")
         if (configuration == null && isRelativeURL) {
             val message =
                 "Braintree HTTP GET request without configuration cannot have a relative path."
-            val relativeURLNotAllowedError = BraintreeException(message)
-            callback.onResult(null, relativeURLNotAllowedError)
-            return
+            throw BraintreeException(message)
         }
         val targetPath = if (authorization is ClientToken) {
             Uri.parse(path).buildUpon()
@@ -71,7 +154,7 @@ internal class BraintreeHttpClient(
         if (authorization is TokenizationKey) {
             request.addHeader(CLIENT_KEY_HEADER, authorization.bearer)
         }
-        httpClient.sendRequest(request, retryStrategy, callback)
+        return request
     }
 
     /**
@@ -89,6 +172,46 @@ internal class BraintreeHttpClient(
         configuration: Configuration?,
         authorization: Authorization?,
         callback: HttpResponseCallback
+    ) = post(path, data, configuration, authorization, Scheduler.PRIORITY_HIGH, callback)
+
+    /**
+     * Make a HTTP POST request to Braintree.
+     * If the path is a full url, it will be used instead of the previously provided url.
+     * @param path The path or url to request from the server via HTTP POST
+     * @param data The body of the POST request
+     * @param configuration configuration for the Braintree Android SDK.
+     * @param authorization
+     * @param priority scheduling priority of the request relative to other queued requests
+     * @param callback [HttpResponseCallback]
+     */
+    fun post(
+        path: String,
+        data: String,
+        configuration: Configuration?,
+        authorization: Authorization?,
+        @Scheduler.Priority priority: Int,
+        callback: HttpResponseCallback
+    ) = post(path, data, configuration, authorization, priority, null, callback)
+
+    /**
+     * Make a HTTP POST request to Braintree.
+     * If the path is a full url, it will be used instead of the previously provided url.
+     * @param path The path or url to request from the server via HTTP POST
+     * @param data The body of the POST request
+     * @param configuration configuration for the Braintree Android SDK.
+     * @param authorization
+     * @param priority scheduling priority of the request relative to other queued requests
+     * @param cancellationToken token used to cancel the request or bound it with a deadline
+     * @param callback [HttpResponseCallback]
+     */
+    fun post(
+        path: String,
+        data: String,
+        configuration: Configuration?,
+        authorization: Authorization?,
+        @Scheduler.Priority priority: Int,
+        cancellationToken: CancellationToken?,
+        callback: HttpResponseCallback
     ) {
         if (authorization is InvalidAuthorization) {
             val message = authorization.errorMessage
@@ -117,6 +240,8 @@ internal class BraintreeHttpClient(
             data
         }
         val request = HttpRequest().method("POST").path(path).data(requestData)
+            .priority(priority)
+            .cancellationToken(cancellationToken)
             .addHeader(USER_AGENT_HEADER, "braintree/android/" + BuildConfig.VERSION_NAME)
         if (isRelativeURL && configuration != null) {
             request.baseUrl(configuration.clientApiUrl)
@@ -139,6 +264,33 @@ internal class BraintreeHttpClient(
     @Throws(Exception::class)
     fun post(
         path: String, data: String, configuration: Configuration?, authorization: Authorization?
+    ): String = sendSynchronousPost(path, data, configuration, authorization, null)
+
+    /**
+     * Makes a synchronous HTTP POST request to Braintree.
+     *
+     * @param path the path or url to request from the server via HTTP POST
+     * @param data the body of the post request
+     * @param configuration configuration for the Braintree Android SDK.
+     * @param authorization
+     * @param cancellationToken token used to cancel the request or bound it with a deadline
+     * @return the HTTP response body
+     */
+    @Throws(Exception::class)
+    fun post(
+        path: String,
+        data: String,
+        configuration: Configuration?,
+        authorization: Authorization?,
+        cancellationToken: CancellationToken
+    ): String = sendSynchronousPost(path, data, configuration, authorization, cancellationToken)
+
+    private fun sendSynchronousPost(
+        path: String,
+        data: String,
+        configuration: Configuration?,
+        authorization: Authorization?,
+        cancellationToken: CancellationToken?
     ): String {
         if (authorization is InvalidAuthorization) {
             val message = authorization.errorMessage
@@ -159,6 +311,7 @@ internal class BraintreeHttpClient(
             data
         }
         val request = HttpRequest().method("POST").path(path).data(requestData)
+            .cancellationToken(cancellationToken)
             .addHeader(USER_AGENT_HEADER, "braintree/android/" + BuildConfig.VERSION_NAME)
         if (isRelativeURL && configuration != null) {
             request.baseUrl(configuration.clientApiUrl)
@@ -173,10 +326,15 @@ internal class BraintreeHttpClient(
         private const val AUTHORIZATION_FINGERPRINT_KEY = "authorizationFingerprint"
         private const val USER_AGENT_HEADER = "User-Agent"
         private const val CLIENT_KEY_HEADER = "Client-Key"
+        private const val ETAG_HEADER = "ETag"
+        private const val LAST_MODIFIED_HEADER = "Last-Modified"
+        private const val IF_NONE_MATCH_HEADER = "If-None-Match"
+        private const val IF_MODIFIED_SINCE_HEADER = "If-Modified-Since"
 
-        private fun createDefaultHttpClient(): HttpClient {
-            val socketFactory = TLSSocketFactory(TLSCertificatePinning.certInputStream)
-            return HttpClient(socketFactory, BraintreeHttpResponseParser())
+        private fun createDefaultHttpClient(
+            scheduler: Scheduler = BoundedThreadScheduler.getInstance()
+        ): HttpClient {
+            return HttpClient(TLSCertificatePinning.socketFactory, BraintreeHttpResponseParser(), scheduler)
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.braintreepayments.api
+
+/**
+ * Validators returned by the server for a response, used to ask whether it has changed.
+ * @property eTag the value of the `ETag` response header, if any
+ * @property lastModified the value of the `Last-Modified` response header, if any
+ */
+internal data class CacheValidators(
+    val eTag: String?,
+    val lastModified: String?
+)
@@ -5,6 +5,7 @@ import androidx.annotation.RestrictTo
 import org.json.JSONException
 import org.json.JSONObject
 import java.lang.NullPointerException
+import java.util.concurrent.TimeUnit
 import kotlin.jvm.Throws
 
 // NEXT MAJOR VERSION: remove authorizationFingerprint. Keep bearer
@@ -14,6 +15,8 @@ import kotlin.jvm.Throws
  * @param clientTokenString A client token from the Braintree Gateway
  * @property authorizationFingerprint The authorizationFingerprint for the current session
  * @property customerId The customer ID in the authorizationFingerprint if it is present
+ * @property expiresAt The time the authorizationFingerprint expires in milliseconds since the
+ * epoch, if the fingerprint is a JWT with an `exp` claim
  * @constructor Create a new [ClientToken] instance from a client token
  * @throws InvalidArgumentException when client token is invalid
  * @suppress
@@ -28,6 +31,7 @@ class ClientToken @Throws(InvalidArgumentException::class) constructor(
 
     val authorizationFingerprint: String
     val customerId: String?
+    val expiresAt: Long?
 
     init {
         try {
@@ -37,6 +41,7 @@ class ClientToken @Throws(InvalidArgumentException::class) constructor(
             authorizationFingerprint = jsonObject.getString(AUTHORIZATION_FINGERPRINT_KEY)
             bearer = authorizationFingerprint
             customerId = parseCustomerId(authorizationFingerprint)
+            expiresAt = parseExpiresAt(authorizationFingerprint)
         } catch (e: NullPointerException) {
             throw InvalidArgumentException("Client token was invalid")
         } catch (e: JSONException) {
@@ -49,6 +54,7 @@ class ClientToken @Throws(InvalidArgumentException::class) constructor(
             "([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)"
         private const val CONFIG_URL_KEY = "configUrl"
         private const val AUTHORIZATION_FINGERPRINT_KEY = "authorizationFingerprint"
+        private const val EXPIRES_AT_CLAIM = "exp"
 
         private fun parseCustomerId(authorizationFingerprint: String?): String? {
             val result = authorizationFingerprint?.let { fingerPrint ->
@@ -65,5 +71,25 @@ class ClientToken @Throws(InvalidArgumentException::class) constructor(
             }
             return result
         }
+
+        private fun parseExpiresAt(authorizationFingerprint: String): Long? {
+            val segments = authorizationFingerprint.split(".")
+            if (segments.size != 3) {
+                return null
+            }
+            return try {
+                val flags = Base64.URL_SAFE or Base64.NO_PADDING or Base64.NO_WRAP
+                val claims = JSONObject(String(Base64.decode(segments[1], flags)))
+                if (claims.has(EXPIRES_AT_CLAIM)) {
+                    TimeUnit.SECONDS.toMillis(claims.getLong(EXPIRES_AT_CLAIM))
+                } else {
+                    null
+                }
+            } catch (e: IllegalArgumentException) {
+                null
+            } catch (e: JSONException) {
+                null
+            }
+        }
     }
 }
\ No newline at end of file
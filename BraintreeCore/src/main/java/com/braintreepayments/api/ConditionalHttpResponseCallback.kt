@@ -0,0 +1,17 @@
+package com.braintreepayments.api
+
+import androidx.annotation.MainThread
+
+/**
+ * Callback used to communicate the result of a conditional HTTP request.
+ */
+internal fun interface ConditionalHttpResponseCallback {
+    /**
+     * @param responseBody the body of the response, or null if the request failed or the resource
+     * has not changed
+     * @param validators the validators of the response, or null if it had none
+     * @param error the error, a [NotModifiedException] if the resource has not changed
+     */
+    @MainThread
+    fun onResult(responseBody: String?, validators: CacheValidators?, error: Exception?)
+}
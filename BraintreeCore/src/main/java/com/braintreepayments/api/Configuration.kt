@@ -72,21 +72,33 @@ open class Configuration internal constructor(configurationString: String?) {
     open val clientApiUrl: String
     open val environment: String
     open val isCvvChallengePresent: Boolean
+        get() = challenges.contains("cvv")
     open val isGooglePayEnabled: Boolean
+        get() = googlePayConfiguration.isEnabled
     open val isLocalPaymentEnabled: Boolean
+        get() = isPayPalEnabled
     open val isPayPalEnabled: Boolean
     open val isPostalCodeChallengePresent: Boolean
+        get() = challenges.contains("postal_code")
     open val isSamsungPayEnabled: Boolean
+        get() = samsungPayConfiguration.isEnabled
     open val isThreeDSecureEnabled: Boolean
     open val isUnionPayEnabled: Boolean
+        get() = unionPayConfiguration.isEnabled
     open val isVenmoEnabled: Boolean
+        get() = venmoConfiguration.isAccessTokenValid
     open val isVisaCheckoutEnabled: Boolean
+        get() = visaCheckoutConfiguration.isEnabled
     open val merchantAccountId: String?
     open val merchantId: String
     open val payPalDirectBaseUrl: String?
+        get() = payPalConfiguration.directBaseUrl
     open val payPalPrivacyUrl: String?
+        get() = payPalConfiguration.privacyUrl
     open val payPalUserAgreementUrl: String?
+        get() = payPalConfiguration.userAgreementUrl
     open val supportedCardTypes: List<String>
+        get() = cardConfiguration.supportedCardTypes
     // endregion
 
     // region Internal Properties
@@ -96,200 +108,257 @@ open class Configuration internal constructor(configurationString: String?) {
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val analyticsUrl: String?
+        get() = analyticsConfiguration.url
 
     /**
      * @return The Access Token for Braintree API.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val braintreeApiAccessToken: String
+        get() = braintreeApiConfiguration.accessToken
 
     /**
      * @return the base url for accessing Braintree API.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val braintreeApiUrl: String
+        get() = braintreeApiConfiguration.url
 
     /**
      * @return the authorization fingerprint to use for Google Payment, only allows tokenizing Google Payment cards.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val googlePayAuthorizationFingerprint: String?
+        get() = googlePayConfiguration.googleAuthorizationFingerprint
 
     /**
      * @return the Google Pay display name to show to the user.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val googlePayDisplayName: String
+        get() = googlePayConfiguration.displayName
 
     /**
      * @return the current Google Pay environment.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val googlePayEnvironment: String?
+        get() = googlePayConfiguration.environment
 
     /**
      * @return the PayPal Client ID used by Google Pay.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val googlePayPayPalClientId: String
+        get() = googlePayConfiguration.paypalClientId
 
     /**
      * @return a list of supported card networks for Google Pay.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val googlePaySupportedNetworks: List<String>
+        get() = googlePayConfiguration.supportedNetworks
 
     /**
      * @return the GraphQL url.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val graphQLUrl: String
+        get() = graphQLConfiguration.url
 
     /**
      * @return `true` if analytics are enabled, `false` otherwise.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isAnalyticsEnabled: Boolean
+        get() = analyticsConfiguration.isEnabled
 
     /**
      * @return a boolean indicating whether Braintree API is enabled for this merchant.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isBraintreeApiEnabled: Boolean
+        get() = braintreeApiConfiguration.isEnabled
 
     /**
      * @return `true` if fraud device data collection should occur; `false` otherwise.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isFraudDataCollectionEnabled: Boolean
+        get() = cardConfiguration.isFraudDataCollectionEnabled
 
     /**
      * @return `true` if GraphQL is enabled for the merchant account; `false` otherwise.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isGraphQLEnabled: Boolean
+        get() = graphQLConfiguration.isEnabled
 
     /**
      * @return `true` if Kount is enabled for the merchant account; `false` otherwise.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isKountEnabled: Boolean
+        get() = kountConfiguration.isEnabled
 
     /**
      * @return `true` if PayPal touch is currently disabled, `false` otherwise.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val isPayPalTouchDisabled: Boolean
+        get() = payPalConfiguration.isTouchDisabled
 
     /**
      * @return the Kount merchant id set in the Gateway.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val kountMerchantId: String
+        get() = kountConfiguration.kountMerchantId
 
     /**
      * @return the PayPal app client id.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val payPalClientId: String?
+        get() = payPalConfiguration.clientId
 
     /**
      * @return the PayPal currency code.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val payPalCurrencyIsoCode: String?
+        get() = payPalConfiguration.currencyIsoCode
 
     /**
      * @return the PayPal app display name.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val payPalDisplayName: String?
+        get() = payPalConfiguration.displayName
 
     /**
      * @return the current environment for PayPal.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val payPalEnvironment: String?
+        get() = payPalConfiguration.environment
 
     /**
      * @return the authorization to use with Samsung Pay.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPayAuthorization: String
+        get() = samsungPayConfiguration.samsungAuthorization
 
     /**
      * @return the Braintree environment Samsung Pay should interact with.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPayEnvironment: String
+        get() = samsungPayConfiguration.environment
 
     /**
      * @return the merchant display name for Samsung Pay.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPayMerchantDisplayName: String
+        get() = samsungPayConfiguration.merchantDisplayName
 
     /**
      * @return the Samsung Pay service id associated with the merchant.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPayServiceId: String
+        get() = samsungPayConfiguration.serviceId
 
     /**
      * @return a list of card brands supported by Samsung Pay.
      * @suppress
      */
-    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPaySupportedCardBrands: List<String>
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val samsungPaySupportedCardBrands: List<String> by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        samsungPayConfiguration.supportedCardBrands.toList()
+    }
 
     /**
      * @return the Access Token used by the Venmo app to tokenize on behalf of the merchant.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val venmoAccessToken: String
+        get() = venmoConfiguration.accessToken
 
     /**
      * @return the Venmo environment used to handle this payment.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val venmoEnvironment: String
+        get() = venmoConfiguration.environment
 
     /**
      * @return the Venmo merchant id used by the Venmo app to authorize payment.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val venmoMerchantId: String
+        get() = venmoConfiguration.merchantId
 
     /**
      * @return the Visa Checkout API key configured in the Braintree Control Panel.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val visaCheckoutApiKey: String
+        get() = visaCheckoutConfiguration.apiKey
 
     /**
      * @return the Visa Checkout External Client ID configured in the Braintree Control Panel.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val visaCheckoutExternalClientId: String
+        get() = visaCheckoutConfiguration.externalClientId
 
     /**
      * @return the Visa Checkout supported networks enabled for the merchant account.
      * @suppress
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP) val visaCheckoutSupportedNetworks: List<String>
+        get() = visaCheckoutConfiguration.acceptedCardBrands
 
-    private val analyticsConfiguration: AnalyticsConfiguration
-    private val braintreeApiConfiguration: BraintreeApiConfiguration
-    private val cardConfiguration: CardConfiguration
+    // sub-configurations are parsed from the retained json the first time they are used, so a
+    // configuration that is only used for cards never builds the PayPal, Venmo, etc. objects
+    private val analyticsConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        AnalyticsConfiguration(json.optJSONObject(ANALYTICS_KEY))
+    }
+    private val braintreeApiConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        BraintreeApiConfiguration(json.optJSONObject(BRAINTREE_API_KEY))
+    }
+    private val cardConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        CardConfiguration(json.optJSONObject(CARD_KEY))
+    }
     private val challenges: MutableSet<String>
     private val configurationString: String
-    private val googlePayConfiguration: GooglePayConfiguration
-    private val graphQLConfiguration: GraphQLConfiguration
-    private val kountConfiguration: KountConfiguration
-    private val payPalConfiguration: PayPalConfiguration
-    private val samsungPayConfiguration: SamsungPayConfiguration
-    private val unionPayConfiguration: UnionPayConfiguration
-    private val venmoConfiguration: VenmoConfiguration
-    private val visaCheckoutConfiguration: VisaCheckoutConfiguration
+    private val json: JSONObject
+    private val googlePayConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        GooglePayConfiguration(json.optJSONObject(GOOGLE_PAY_KEY))
+    }
+    private val graphQLConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        GraphQLConfiguration(json.optJSONObject(GRAPHQL_KEY))
+    }
+    private val kountConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        KountConfiguration(json.optJSONObject(KOUNT_KEY))
+    }
+    private val payPalConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        PayPalConfiguration(json.optJSONObject(PAYPAL_KEY))
+    }
+    private val samsungPayConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        SamsungPayConfiguration(json.optJSONObject(SAMSUNG_PAY_KEY))
+    }
+    private val unionPayConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        UnionPayConfiguration(json.optJSONObject(UNIONPAY_KEY))
+    }
+    private val venmoConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        VenmoConfiguration(json.optJSONObject(PAY_WITH_VENMO_KEY))
+    }
+    private val visaCheckoutConfiguration by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        VisaCheckoutConfiguration(json.optJSONObject(VISA_CHECKOUT_KEY))
+    }
     // endregion
 
     init {
@@ -299,7 +368,7 @@ open class Configuration internal constructor(configurationString: String?) {
         }
 
         this.configurationString = configurationString
-        val json = JSONObject(configurationString)
+        json = JSONObject(configurationString)
         assetsUrl = Json.optString(json, ASSETS_URL_KEY, "")
         clientApiUrl = json.getString(CLIENT_API_URL_KEY)
 
@@ -311,68 +380,12 @@ open class Configuration internal constructor(configurationString: String?) {
             }
         }
 
-        analyticsConfiguration = AnalyticsConfiguration(json.optJSONObject(ANALYTICS_KEY))
-        braintreeApiConfiguration = BraintreeApiConfiguration(json.optJSONObject(BRAINTREE_API_KEY))
-        cardConfiguration = CardConfiguration(json.optJSONObject(CARD_KEY))
         cardinalAuthenticationJwt = Json.optString(json, CARDINAL_AUTHENTICATION_JWT, null)
         environment = json.getString(ENVIRONMENT_KEY)
-        googlePayConfiguration = GooglePayConfiguration(json.optJSONObject(GOOGLE_PAY_KEY))
-        graphQLConfiguration = GraphQLConfiguration(json.optJSONObject(GRAPHQL_KEY))
         isPayPalEnabled = json.optBoolean(PAYPAL_ENABLED_KEY, false)
         isThreeDSecureEnabled = json.optBoolean(THREE_D_SECURE_ENABLED_KEY, false)
-        kountConfiguration = KountConfiguration(json.optJSONObject(KOUNT_KEY))
         merchantAccountId = Json.optString(json, MERCHANT_ACCOUNT_ID_KEY, null)
         merchantId = json.getString(MERCHANT_ID_KEY)
-        payPalConfiguration = PayPalConfiguration(json.optJSONObject(PAYPAL_KEY))
-        samsungPayConfiguration = SamsungPayConfiguration(json.optJSONObject(SAMSUNG_PAY_KEY))
-        unionPayConfiguration = UnionPayConfiguration(json.optJSONObject(UNIONPAY_KEY))
-        venmoConfiguration = VenmoConfiguration(json.optJSONObject(PAY_WITH_VENMO_KEY))
-        visaCheckoutConfiguration = VisaCheckoutConfiguration(json.optJSONObject(VISA_CHECKOUT_KEY))
-
-        isCvvChallengePresent = challenges.contains("cvv")
-        isGooglePayEnabled = googlePayConfiguration.isEnabled
-        isLocalPaymentEnabled = isPayPalEnabled // Local Payments are enabled when PayPal is enabled
-        isPostalCodeChallengePresent = challenges.contains("postal_code")
-        isSamsungPayEnabled = samsungPayConfiguration.isEnabled
-        isUnionPayEnabled = unionPayConfiguration.isEnabled
-        isVenmoEnabled = venmoConfiguration.isAccessTokenValid
-        isVisaCheckoutEnabled = visaCheckoutConfiguration.isEnabled
-        payPalDirectBaseUrl = payPalConfiguration.directBaseUrl
-        payPalPrivacyUrl = payPalConfiguration.privacyUrl
-        payPalUserAgreementUrl = payPalConfiguration.userAgreementUrl
-
-        analyticsUrl = analyticsConfiguration.url
-        braintreeApiAccessToken = braintreeApiConfiguration.accessToken
-        braintreeApiUrl = braintreeApiConfiguration.url
-        googlePayAuthorizationFingerprint = googlePayConfiguration.googleAuthorizationFingerprint
-        googlePayDisplayName = googlePayConfiguration.displayName
-        googlePayEnvironment = googlePayConfiguration.environment
-        googlePayPayPalClientId = googlePayConfiguration.paypalClientId
-        googlePaySupportedNetworks = googlePayConfiguration.supportedNetworks
-        graphQLUrl = graphQLConfiguration.url
-        isAnalyticsEnabled = analyticsConfiguration.isEnabled
-        isBraintreeApiEnabled = braintreeApiConfiguration.isEnabled
-        isFraudDataCollectionEnabled = cardConfiguration.isFraudDataCollectionEnabled
-        isGraphQLEnabled = graphQLConfiguration.isEnabled
-        isKountEnabled = kountConfiguration.isEnabled
-        isPayPalTouchDisabled = payPalConfiguration.isTouchDisabled
-        kountMerchantId = kountConfiguration.kountMerchantId
-        payPalClientId = payPalConfiguration.clientId
-        payPalCurrencyIsoCode = payPalConfiguration.currencyIsoCode
-        payPalDisplayName = payPalConfiguration.displayName
-        payPalEnvironment = payPalConfiguration.environment
-        samsungPayAuthorization = samsungPayConfiguration.samsungAuthorization
-        samsungPayEnvironment = samsungPayConfiguration.environment
-        samsungPayMerchantDisplayName = samsungPayConfiguration.merchantDisplayName
-        samsungPayServiceId = samsungPayConfiguration.serviceId
-        samsungPaySupportedCardBrands = samsungPayConfiguration.supportedCardBrands.toList()
-        supportedCardTypes = cardConfiguration.supportedCardTypes
-        venmoAccessToken = venmoConfiguration.accessToken
-        venmoEnvironment = venmoConfiguration.environment
-        venmoMerchantId = venmoConfiguration.merchantId
-        visaCheckoutApiKey = visaCheckoutConfiguration.apiKey
-        visaCheckoutExternalClientId = visaCheckoutConfiguration.externalClientId
-        visaCheckoutSupportedNetworks = visaCheckoutConfiguration.acceptedCardBrands
     }
 
     // region Public Methods
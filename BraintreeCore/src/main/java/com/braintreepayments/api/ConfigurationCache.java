@@ -4,22 +4,61 @@ import android.content.Context;
 
 import androidx.annotation.VisibleForTesting;
 
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Two-tier cache for {@link Configuration}s.
+ *
+ * Parsed configurations are kept in memory in front of the snapshots persisted by
+ * {@link ConfigurationSnapshotStore}, so repeated lookups do not re-parse the JSON. Entries
+ * written to {@link BraintreeSharedPreferences} by earlier versions of the SDK are still read.
+ * {@link #getMemoryCachedConfiguration(String, boolean)} never touches the disk and can be called
+ * on the main thread; the other lookups read persisted entries on the calling thread, outside of
+ * the lock that guards the memory tier.
+ *
+ * Entries are fresh for {@link #TIME_TO_LIVE}. After that they can still be served as stale for
+ * up to {@link #MAX_STALENESS} while a fresh configuration is fetched in the background.
+ *
+ * Both tiers are least recently used caches of at most {@link #MAX_ENTRIES} configurations, with
+ * at most {@link #MAX_ENTRIES_PER_MERCHANT} per merchant id, since every new client token for the
+ * same merchant creates a new cache key. Entries older than {@link #MAX_STALENESS} are evicted.
+ *
+ * Entries keep the {@link CacheValidators} their configuration was served with, so an expired
+ * entry can be revalidated with a conditional request and {@link #refreshConfiguration(String)
+ * refreshed} when the gateway reports it has not changed.
+ */
 class ConfigurationCache {
 
     private static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+    static final long MAX_STALENESS = TimeUnit.HOURS.toMillis(24);
+    static final int MAX_ENTRIES = 10;
+    static final int MAX_ENTRIES_PER_MERCHANT = 2;
 
     private static volatile ConfigurationCache INSTANCE;
 
     private final BraintreeSharedPreferences sharedPreferences;
+    private final ConfigurationSnapshotStore snapshotStore;
+    private final LinkedHashMap<String, CachedConfiguration> memoryCache;
+
+    private long memoryHitCount;
+    private long persistentHitCount;
+    private long staleHitCount;
+    private long missCount;
+    private long memoryEvictionCount;
 
     static ConfigurationCache getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (ConfigurationCache.class) {
                 // double check that instance was not created in another thread
                 if (INSTANCE == null) {
-                    INSTANCE = new ConfigurationCache(BraintreeSharedPreferences.getInstance(context));
+                    INSTANCE = new ConfigurationCache(BraintreeSharedPreferences.getInstance(context),
+                            ConfigurationSnapshotStore.getInstance(context));
                 }
             }
         }
@@ -27,33 +66,354 @@ class ConfigurationCache {
     }
 
     @VisibleForTesting
-    ConfigurationCache(BraintreeSharedPreferences sharedPreferences) {
+    ConfigurationCache(BraintreeSharedPreferences sharedPreferences, ConfigurationSnapshotStore snapshotStore) {
         this.sharedPreferences = sharedPreferences;
+        this.snapshotStore = snapshotStore;
+        // access order, so iteration starts at the least recently used entry
+        this.memoryCache = new LinkedHashMap<String, CachedConfiguration>(MAX_ENTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedConfiguration> eldest) {
+                if (size() > MAX_ENTRIES) {
+                    memoryEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up a configuration in memory only. A {@code null} result is not counted as a miss,
+     * since the entry may still be persisted.
+     *
+     * @param cacheKey the key the configuration was saved with.
+     * @param allowStale {@code true} to return an expired entry that is at most
+     *                   {@link #MAX_STALENESS} old.
+     * @return the cached configuration, or {@code null} if there is no usable entry in memory.
+     */
+    CachedConfiguration getMemoryCachedConfiguration(String cacheKey, boolean allowStale) {
+        return getMemoryCachedConfiguration(cacheKey, allowStale, System.currentTimeMillis());
     }
 
-    String getConfiguration(String cacheKey) {
-        return getConfiguration(cacheKey, System.currentTimeMillis());
+    @VisibleForTesting
+    synchronized CachedConfiguration getMemoryCachedConfiguration(String cacheKey, boolean allowStale,
+                                                                  long currentTimeMillis) {
+        CachedConfiguration entry = memoryCache.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        return getUsableEntry(cacheKey, entry, true, allowStale, currentTimeMillis);
+    }
+
+    /**
+     * Look up a configuration in memory, then in persistent storage. Persisted entries are read on
+     * the calling thread, so this should not be called on the main thread.
+     *
+     * @param cacheKey the key the configuration was saved with.
+     * @param allowStale {@code true} to return an expired entry that is at most
+     *                   {@link #MAX_STALENESS} old.
+     * @return the cached configuration, or {@code null} if there is no usable entry.
+     */
+    CachedConfiguration getCachedConfiguration(String cacheKey, boolean allowStale) {
+        return getCachedConfiguration(cacheKey, allowStale, System.currentTimeMillis());
     }
 
     @VisibleForTesting
-    String getConfiguration(String cacheKey, long currentTimeMillis) {
-        String timestampKey = cacheKey + "_timestamp";
-        if (sharedPreferences.containsKey(timestampKey)) {
-            long timeInCache = (currentTimeMillis - sharedPreferences.getLong(timestampKey));
-            if (timeInCache < TIME_TO_LIVE) {
-                return sharedPreferences.getString(cacheKey, "");
+    CachedConfiguration getCachedConfiguration(String cacheKey, boolean allowStale, long currentTimeMillis) {
+        CachedConfiguration entry;
+        synchronized (this) {
+            entry = memoryCache.get(cacheKey);
+        }
+        boolean fromMemory = (entry != null);
+        if (entry == null) {
+            entry = readPersistedConfiguration(cacheKey);
+        }
+
+        synchronized (this) {
+            if (!fromMemory && entry != null) {
+                // prefer an entry saved while the snapshot was being read
+                CachedConfiguration savedEntry = memoryCache.get(cacheKey);
+                if (savedEntry != null) {
+                    entry = savedEntry;
+                    fromMemory = true;
+                } else {
+                    memoryCache.put(cacheKey, entry);
+                }
+            }
+
+            CachedConfiguration usableEntry = (entry == null)
+                    ? null : getUsableEntry(cacheKey, entry, fromMemory, allowStale, currentTimeMillis);
+            if (usableEntry == null) {
+                missCount++;
             }
+            return usableEntry;
+        }
+    }
+
+    /**
+     * @return {@code entry} marked fresh or stale, or {@code null} if it is too old to be used.
+     */
+    private CachedConfiguration getUsableEntry(String cacheKey, CachedConfiguration entry,
+                                               boolean fromMemory, boolean allowStale,
+                                               long currentTimeMillis) {
+        long age = currentTimeMillis - entry.timestamp;
+        if (age < TIME_TO_LIVE) {
+            if (fromMemory) {
+                memoryHitCount++;
+            } else {
+                persistentHitCount++;
+            }
+            return entry.asFresh();
+        }
+        if (age < MAX_STALENESS) {
+            if (allowStale) {
+                staleHitCount++;
+                return entry.asStale();
+            }
+        } else if (memoryCache.remove(cacheKey) != null) {
+            memoryEvictionCount++;
         }
         return null;
     }
 
     void saveConfiguration(Configuration configuration, String cacheKey) {
-        saveConfiguration(configuration, cacheKey, System.currentTimeMillis());
+        saveConfiguration(configuration, cacheKey, null);
+    }
+
+    /**
+     * @param validators the validators the configuration was served with, or {@code null} if it
+     *                   had none.
+     */
+    void saveConfiguration(Configuration configuration, String cacheKey, CacheValidators validators) {
+        saveConfiguration(configuration, cacheKey, validators, System.currentTimeMillis());
     }
 
     @VisibleForTesting
     void saveConfiguration(Configuration configuration, String cacheKey, long currentTimeMillis) {
-        String timestampKey = String.format("%s_timestamp", cacheKey);
-        sharedPreferences.putStringAndLong(cacheKey, configuration.toJson(), timestampKey, currentTimeMillis);
+        saveConfiguration(configuration, cacheKey, null, currentTimeMillis);
+    }
+
+    @VisibleForTesting
+    void saveConfiguration(Configuration configuration, String cacheKey, CacheValidators validators,
+                           long currentTimeMillis) {
+        String merchantId = configuration.getMerchantId();
+        synchronized (this) {
+            evictOtherEntriesForMerchant(merchantId, cacheKey);
+            memoryCache.put(cacheKey,
+                    new CachedConfiguration(configuration, currentTimeMillis, validators, false));
+        }
+        snapshotStore.write(cacheKey, merchantId, validators, configuration.toJson(), currentTimeMillis);
+        snapshotStore.trim(MAX_ENTRIES, MAX_ENTRIES_PER_MERCHANT, MAX_STALENESS);
+    }
+
+    /**
+     * Mark a cached configuration as fresh again after the gateway reported it has not changed.
+     * Like {@link #getCachedConfiguration(String, boolean)}, this may read from persistent storage.
+     *
+     * @param cacheKey the key the configuration was saved with.
+     * @return the refreshed configuration, or {@code null} if the entry is no longer cached.
+     */
+    CachedConfiguration refreshConfiguration(String cacheKey) {
+        return refreshConfiguration(cacheKey, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    CachedConfiguration refreshConfiguration(String cacheKey, long currentTimeMillis) {
+        CachedConfiguration entry;
+        synchronized (this) {
+            entry = memoryCache.get(cacheKey);
+        }
+        if (entry == null) {
+            entry = readPersistedConfiguration(cacheKey);
+        }
+
+        CachedConfiguration refreshed;
+        synchronized (this) {
+            CachedConfiguration savedEntry = memoryCache.get(cacheKey);
+            if (savedEntry != null) {
+                entry = savedEntry;
+            }
+            if (entry == null) {
+                return null;
+            }
+            refreshed = new CachedConfiguration(
+                    entry.configuration, currentTimeMillis, entry.validators, false);
+            memoryCache.put(cacheKey, refreshed);
+        }
+        snapshotStore.write(cacheKey, refreshed.configuration.getMerchantId(), refreshed.validators,
+                refreshed.configuration.toJson(), currentTimeMillis);
+        return refreshed;
+    }
+
+    /**
+     * Make room for a new entry for {@code merchantId} by dropping its least recently used entries.
+     * Entries without a merchant id are not grouped, since they cannot be told apart on disk.
+     */
+    private void evictOtherEntriesForMerchant(String merchantId, String cacheKey) {
+        if (merchantId == null || merchantId.isEmpty()) {
+            return;
+        }
+        List<String> merchantKeys = new ArrayList<>();
+        for (Map.Entry<String, CachedConfiguration> entry : memoryCache.entrySet()) {
+            if (!entry.getKey().equals(cacheKey)
+                    && merchantId.equals(entry.getValue().configuration.getMerchantId())) {
+                merchantKeys.add(entry.getKey());
+            }
+        }
+        int excess = merchantKeys.size() - (MAX_ENTRIES_PER_MERCHANT - 1);
+        for (int i = 0; i < excess; i++) {
+            memoryCache.remove(merchantKeys.get(i));
+            memoryEvictionCount++;
+        }
+    }
+
+    /**
+     * Drop all cached configurations, in memory and persisted.
+     */
+    void clear() {
+        clearMemoryCache();
+        snapshotStore.clear();
+    }
+
+    /**
+     * Drop parsed configurations so the next lookup reads from persistent storage.
+     */
+    synchronized void clearMemoryCache() {
+        memoryCache.clear();
+    }
+
+    /**
+     * @return the number of fresh configurations returned from memory.
+     */
+    synchronized long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    /**
+     * @return the number of fresh configurations that had to be read from persistent storage.
+     */
+    synchronized long getPersistentHitCount() {
+        return persistentHitCount;
+    }
+
+    /**
+     * @return the number of expired configurations returned while being revalidated.
+     */
+    synchronized long getStaleHitCount() {
+        return staleHitCount;
+    }
+
+    /**
+     * @return the number of lookups that found no usable configuration.
+     */
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of configurations evicted from memory and from persistent storage.
+     */
+    long getEvictionCount() {
+        synchronized (this) {
+            return memoryEvictionCount + snapshotStore.getEvictionCount();
+        }
+    }
+
+    /**
+     * @return the number of parsed configurations held in memory.
+     */
+    synchronized int getMemoryEntryCount() {
+        return memoryCache.size();
+    }
+
+    /**
+     * @return the number of configurations persisted on disk.
+     */
+    int getPersistedEntryCount() {
+        return snapshotStore.getEntryCount();
+    }
+
+    /**
+     * @return the size of the persisted configurations on disk in bytes.
+     */
+    long getPersistedSizeInBytes() {
+        return snapshotStore.getSizeInBytes();
+    }
+
+    private CachedConfiguration readPersistedConfiguration(String cacheKey) {
+        String configurationJson;
+        long timestamp;
+        CacheValidators validators = null;
+
+        ConfigurationSnapshotStore.Snapshot snapshot = snapshotStore.read(cacheKey);
+        if (snapshot != null) {
+            configurationJson = snapshot.getConfigurationJson();
+            timestamp = snapshot.getTimestamp();
+            validators = snapshot.getValidators();
+        } else {
+            // fall back to entries saved to shared preferences before snapshots were introduced
+            String timestampKey = cacheKey + "_timestamp";
+            if (!sharedPreferences.containsKey(timestampKey)) {
+                return null;
+            }
+            configurationJson = sharedPreferences.getString(cacheKey, "");
+            timestamp = sharedPreferences.getLong(timestampKey);
+            sharedPreferences.remove(cacheKey, timestampKey);
+        }
+
+        Configuration configuration;
+        try {
+            configuration = Configuration.fromJson(configurationJson);
+        } catch (JSONException e) {
+            return null;
+        }
+        if (snapshot == null) {
+            // move the legacy entry to a snapshot so it is bounded like the others
+            snapshotStore.write(cacheKey, configuration.getMerchantId(), null, configurationJson, timestamp);
+        }
+        return new CachedConfiguration(configuration, timestamp, validators, false);
+    }
+
+    static class CachedConfiguration {
+
+        private final Configuration configuration;
+        private final long timestamp;
+        private final CacheValidators validators;
+        private final boolean stale;
+
+        CachedConfiguration(Configuration configuration, long timestamp, CacheValidators validators,
+                            boolean stale) {
+            this.configuration = configuration;
+            this.timestamp = timestamp;
+            this.validators = validators;
+            this.stale = stale;
+        }
+
+        Configuration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * @return the validators to revalidate the configuration with, or {@code null} if it has
+         * none.
+         */
+        CacheValidators getValidators() {
+            return validators;
+        }
+
+        /**
+         * @return {@code true} if the configuration has expired and should be refreshed.
+         */
+        boolean isStale() {
+            return stale;
+        }
+
+        private CachedConfiguration asFresh() {
+            return stale ? new CachedConfiguration(configuration, timestamp, validators, false) : this;
+        }
+
+        private CachedConfiguration asStale() {
+            return stale ? this : new CachedConfiguration(configuration, timestamp, validators, true);
+        }
     }
 }
@@ -12,17 +12,25 @@ class ConfigurationLoader {
 
     private final BraintreeHttpClient httpClient;
     private final ConfigurationCache configurationCache;
+    private final Scheduler scheduler;
 
-    ConfigurationLoader(Context context, BraintreeHttpClient httpClient) {
-        this(httpClient, ConfigurationCache.getInstance(context));
+    ConfigurationLoader(Context context, BraintreeHttpClient httpClient, Scheduler scheduler) {
+        this(httpClient, ConfigurationCache.getInstance(context), scheduler);
     }
 
     @VisibleForTesting
-    ConfigurationLoader(BraintreeHttpClient httpClient, ConfigurationCache configurationCache) {
+    ConfigurationLoader(BraintreeHttpClient httpClient, ConfigurationCache configurationCache,
+                        Scheduler scheduler) {
         this.httpClient = httpClient;
         this.configurationCache = configurationCache;
+        this.scheduler = scheduler;
     }
 
+    /**
+     * Load the configuration for {@code authorization}. A configuration cached in memory is
+     * returned right away; otherwise persisted configurations are read on a background thread
+     * before fetching from the gateway.
+     */
     void loadConfiguration(final Authorization authorization, final ConfigurationLoaderCallback callback) {
         if (authorization instanceof InvalidAuthorization) {
             String message = ((InvalidAuthorization) authorization).getErrorMessage();
@@ -37,47 +45,121 @@ class ConfigurationLoader {
                 .toString();
 
 
-        Configuration cachedConfig = getCachedConfiguration(authorization, configUrl);
+        final String cacheKey = createCacheKey(authorization, configUrl);
+        ConfigurationCache.CachedConfiguration cachedConfig =
+                configurationCache.getMemoryCachedConfiguration(cacheKey, true);
         if (cachedConfig != null) {
-            callback.onResult(cachedConfig, null);
-        } else {
+            callback.onResult(cachedConfig.getConfiguration(), null);
+            revalidateIfStale(authorization, configUrl, cacheKey, cachedConfig);
+            return;
+        }
+
+        // persisted configurations are read from disk, which must not block the calling thread
+        scheduler.runOnBackground(new Runnable() {
+            @Override
+            public void run() {
+                ConfigurationCache.CachedConfiguration persistedConfig =
+                        configurationCache.getCachedConfiguration(cacheKey, true);
+                if (persistedConfig != null) {
+                    notifyCallback(callback, persistedConfig.getConfiguration());
+                    revalidateIfStale(authorization, configUrl, cacheKey, persistedConfig);
+                } else {
+                    fetchConfiguration(authorization, configUrl, cacheKey, null, callback);
+                }
+            }
+        }, Scheduler.PRIORITY_HIGH);
+    }
 
-            httpClient.get(configUrl, null, authorization, HttpClient.RETRY_MAX_3_TIMES, new HttpResponseCallback() {
+    private void revalidateIfStale(Authorization authorization, String configUrl, String cacheKey,
+                                   ConfigurationCache.CachedConfiguration cachedConfig) {
+        if (cachedConfig.isStale()) {
+            // serve the stale configuration now and revalidate the cache for the next caller
+            fetchConfiguration(authorization, configUrl, cacheKey, cachedConfig.getValidators(), null);
+        }
+    }
 
+    private void notifyCallback(final ConfigurationLoaderCallback callback, final Configuration configuration) {
+        if (callback instanceof WorkerThreadCallback) {
+            callback.onResult(configuration, null);
+        } else {
+            scheduler.runOnMain(new Runnable() {
                 @Override
-                public void onResult(String responseBody, Exception httpError) {
-                    if (responseBody != null) {
-                        try {
-                            Configuration configuration = Configuration.fromJson(responseBody);
-                            saveConfigurationToCache(configuration, authorization, configUrl);
-                            callback.onResult(configuration, null);
-                        } catch (JSONException jsonException) {
-                            callback.onResult(null, jsonException);
-                        }
-                    } else {
-                        String errorMessageFormat = "Request for configuration has failed: %s";
-                        String errorMessage = String.format(errorMessageFormat, httpError.getMessage());
-
-                        ConfigurationException configurationException = new ConfigurationException(errorMessage, httpError);
-                        callback.onResult(null, configurationException);
-                    }
+                public void run() {
+                    callback.onResult(configuration, null);
                 }
             });
         }
     }
 
-    private void saveConfigurationToCache(Configuration configuration, Authorization authorization, String configUrl) {
-        String cacheKey = createCacheKey(authorization, configUrl);
-        configurationCache.saveConfiguration(configuration, cacheKey);
+    private void fetchConfiguration(Authorization authorization, String configUrl, String cacheKey,
+                                    CacheValidators validators, ConfigurationLoaderCallback callback) {
+        // background revalidation has no caller waiting on the main thread, so it is cached right
+        // away on the worker thread too
+        FetchCallback fetchCallback = (callback == null || callback instanceof WorkerThreadCallback)
+                ? new WorkerThreadFetchCallback(cacheKey, callback)
+                : new FetchCallback(cacheKey, callback);
+        httpClient.getConditional(configUrl, authorization, HttpClient.RETRY_MAX_3_TIMES, validators, fetchCallback);
+    }
+
+    /**
+     * Caches the fetched configuration and forwards it to the loader callback, if there is one.
+     */
+    private class FetchCallback implements ConditionalHttpResponseCallback {
+
+        private final String cacheKey;
+        private final ConfigurationLoaderCallback callback;
+
+        FetchCallback(String cacheKey, ConfigurationLoaderCallback callback) {
+            this.cacheKey = cacheKey;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResult(String responseBody, CacheValidators responseValidators, Exception httpError) {
+            if (responseBody != null) {
+                try {
+                    Configuration configuration = Configuration.fromJson(responseBody);
+                    configurationCache.saveConfiguration(configuration, cacheKey, responseValidators);
+                    if (callback != null) {
+                        callback.onResult(configuration, null);
+                    }
+                } catch (JSONException jsonException) {
+                    if (callback != null) {
+                        callback.onResult(null, jsonException);
+                    }
+                }
+            } else if (httpError instanceof NotModifiedException) {
+                // the cached configuration is still current; keep it without re-parsing
+                ConfigurationCache.CachedConfiguration refreshed =
+                        configurationCache.refreshConfiguration(cacheKey);
+                if (callback == null) {
+                    return;
+                }
+                if (refreshed != null) {
+                    callback.onResult(refreshed.getConfiguration(), null);
+                } else {
+                    String errorMessage = "Request for configuration has failed: "
+                            + "configuration was not modified but is no longer cached";
+                    callback.onResult(null, new ConfigurationException(errorMessage, httpError));
+                }
+            } else if (callback != null) {
+                String errorMessageFormat = "Request for configuration has failed: %s";
+                String errorMessage = String.format(errorMessageFormat, httpError.getMessage());
+
+                ConfigurationException configurationException = new ConfigurationException(errorMessage, httpError);
+                callback.onResult(null, configurationException);
+            }
+        }
     }
 
-     private Configuration getCachedConfiguration(Authorization authorization, String configUrl) {
-        String cacheKey = createCacheKey(authorization, configUrl);
-        String cachedConfigResponse = configurationCache.getConfiguration(cacheKey);
-        try {
-            return Configuration.fromJson(cachedConfigResponse);
-        } catch (JSONException e) {
-            return null;
+    /**
+     * Handles the fetched configuration on the worker thread for loader callbacks that are
+     * notified there.
+     */
+    private class WorkerThreadFetchCallback extends FetchCallback implements WorkerThreadCallback {
+
+        WorkerThreadFetchCallback(String cacheKey, ConfigurationLoaderCallback callback) {
+            super(cacheKey, callback);
         }
     }
 
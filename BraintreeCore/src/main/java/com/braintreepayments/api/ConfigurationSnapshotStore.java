@@ -0,0 +1,475 @@
+package com.braintreepayments.api;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Stores configuration snapshots in their own files, one per cache key, instead of as escaped
+ * strings in the shared preferences XML.
+ *
+ * A snapshot is a header followed by a body:
+ * <pre>
+ * header: magic (int) | schema version (int) | CRC32 of body (long) | body length (int)
+ * body:   timestamp (long) | cache key (modified UTF-8) | merchant id (modified UTF-8) |
+ *         ETag (modified UTF-8) | Last-Modified (modified UTF-8) |
+ *         configuration length (int) | configuration (UTF-8)
+ * </pre>
+ * Snapshots are named by the SHA-256 hash of their cache key. Snapshots with an unknown magic or
+ * schema version, a wrong length or checksum, or a different cache key are ignored. Writes happen
+ * in order on a single background thread and replace the previous snapshot atomically.
+ *
+ * {@link #read(String)} reads from disk on the calling thread and should not be called on the
+ * main thread.
+ *
+ * The store is bounded by {@link #trim(int, int, long)}, which drops expired snapshots and then
+ * the least recently used ones, so entries for old client tokens do not accumulate. A missing
+ * merchant id is saved as an empty string, and such snapshots only count towards the overall limit.
+ */
+class ConfigurationSnapshotStore {
+
+    static final int SCHEMA_VERSION = 1;
+
+    // "BTCF"
+    private static final int MAGIC = 0x42544346;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final String DIRECTORY_NAME = "braintree-configuration";
+    private static final String FILE_EXTENSION = ".snapshot";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile ConfigurationSnapshotStore INSTANCE;
+
+    static ConfigurationSnapshotStore getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ConfigurationSnapshotStore.class) {
+                // double check that instance was not created in another thread
+                if (INSTANCE == null) {
+                    File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+                    INSTANCE = new ConfigurationSnapshotStore(directory, createWriteExecutor());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private static ExecutorService createWriteExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "braintree-configuration-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private final File directory;
+    private final Executor writeExecutor;
+
+    private long evictionCount;
+
+    @VisibleForTesting
+    ConfigurationSnapshotStore(File directory, Executor writeExecutor) {
+        this.directory = directory;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * @return the snapshot saved for the cache key, or {@code null} if there is no valid snapshot.
+     */
+    Snapshot read(String cacheKey) {
+        File file = getFile(cacheKey);
+        long fileLength = file.length();
+        if (fileLength < HEADER_SIZE || fileLength > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        byte[] bytes = new byte[(int) fileLength];
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            in.readFully(bytes);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+
+        Snapshot snapshot = decode(bytes, cacheKey);
+        if (snapshot != null) {
+            // the modification time orders snapshots from least to most recently used
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Save a snapshot on the background writer thread.
+     */
+    void write(final String cacheKey, final String merchantId, final CacheValidators validators,
+               final String configurationJson, final long timestamp) {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeNow(cacheKey, merchantId, validators, configurationJson, timestamp);
+            }
+        });
+    }
+
+    @VisibleForTesting
+    boolean writeNow(String cacheKey, String merchantId, CacheValidators validators,
+                     String configurationJson, long timestamp) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return false;
+        }
+
+        File file = getFile(cacheKey);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tempFile);
+            out.write(encode(cacheKey, merchantId, validators, configurationJson, timestamp));
+            out.getFD().sync();
+        } catch (IOException e) {
+            closeQuietly(out);
+            tempFile.delete();
+            return false;
+        }
+        closeQuietly(out);
+        return tempFile.renameTo(file);
+    }
+
+    /**
+     * Evict snapshots on the background writer thread, after any pending writes.
+     *
+     * @param maxEntries the maximum number of snapshots to keep.
+     * @param maxEntriesPerMerchant the maximum number of snapshots to keep for one merchant id.
+     * @param maxAgeMillis snapshots saved longer ago than this are deleted.
+     */
+    void trim(final int maxEntries, final int maxEntriesPerMerchant, final long maxAgeMillis) {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                trimNow(maxEntries, maxEntriesPerMerchant, maxAgeMillis, System.currentTimeMillis());
+            }
+        });
+    }
+
+    @VisibleForTesting
+    int trimNow(int maxEntries, int maxEntriesPerMerchant, long maxAgeMillis, long currentTimeMillis) {
+        File[] files = listSnapshotFiles();
+        List<SnapshotFile> snapshotFiles = new ArrayList<>(files.length);
+        List<File> evictedFiles = new ArrayList<>();
+        for (File file : files) {
+            SnapshotFile snapshotFile = readSnapshotFile(file);
+            if (snapshotFile == null || currentTimeMillis - snapshotFile.timestamp > maxAgeMillis) {
+                evictedFiles.add(file);
+            } else {
+                snapshotFiles.add(snapshotFile);
+            }
+        }
+
+        // most recently used first
+        Collections.sort(snapshotFiles, new Comparator<SnapshotFile>() {
+            @Override
+            public int compare(SnapshotFile lhs, SnapshotFile rhs) {
+                return Long.compare(rhs.lastModified, lhs.lastModified);
+            }
+        });
+
+        Map<String, Integer> entriesPerMerchant = new HashMap<>();
+        int keptEntries = 0;
+        for (SnapshotFile snapshotFile : snapshotFiles) {
+            String merchantId = snapshotFile.merchantId;
+            // snapshots without a merchant id are not grouped, matching the in-memory tier
+            Integer merchantEntries = (merchantId == null) ? null : entriesPerMerchant.get(merchantId);
+            int count = (merchantEntries == null) ? 0 : merchantEntries;
+            if (keptEntries >= maxEntries || count >= maxEntriesPerMerchant) {
+                evictedFiles.add(snapshotFile.file);
+            } else {
+                if (merchantId != null) {
+                    entriesPerMerchant.put(merchantId, count + 1);
+                }
+                keptEntries++;
+            }
+        }
+
+        int evicted = 0;
+        for (File file : evictedFiles) {
+            if (file.delete()) {
+                evicted++;
+            }
+        }
+        synchronized (this) {
+            evictionCount += evicted;
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the number of snapshots on disk.
+     */
+    int getEntryCount() {
+        return listSnapshotFiles().length;
+    }
+
+    /**
+     * @return the total size of the snapshots on disk in bytes.
+     */
+    long getSizeInBytes() {
+        long size = 0;
+        for (File file : listSnapshotFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of snapshots deleted by {@link #trim(int, int, long)}.
+     */
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Delete all snapshots on the background writer thread, after any pending writes, so a write
+     * that is still in progress cannot leave a snapshot behind.
+     */
+    void clear() {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                clearNow();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    void clearNow() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    File getFile(String cacheKey) {
+        // cache keys are Base64 and may contain '/' or line breaks; the key itself is verified on read
+        return new File(directory, hash(cacheKey) + FILE_EXTENSION);
+    }
+
+    private static String hash(String cacheKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(cacheKey.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File[] listSnapshotFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> snapshotFiles = new ArrayList<>(Arrays.asList(files));
+        for (int i = snapshotFiles.size() - 1; i >= 0; i--) {
+            if (!snapshotFiles.get(i).getName().endsWith(FILE_EXTENSION)) {
+                snapshotFiles.remove(i);
+            }
+        }
+        return snapshotFiles.toArray(new File[0]);
+    }
+
+    /**
+     * Read only the header and the start of the body, enough to decide whether to evict a file.
+     *
+     * @return {@code null} if the file is not a snapshot of the current schema version.
+     */
+    private static SnapshotFile readSnapshotFile(File file) {
+        long lastModified = file.lastModified();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != MAGIC || in.readInt() != SCHEMA_VERSION) {
+                return null;
+            }
+            in.readLong();
+            in.readInt();
+            long timestamp = in.readLong();
+            in.readUTF();
+            return new SnapshotFile(file, nullIfEmpty(in.readUTF()), timestamp, lastModified);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    @VisibleForTesting
+    static byte[] encode(String cacheKey, String merchantId, CacheValidators validators,
+                         String configurationJson, long timestamp) throws IOException {
+        byte[] configurationBytes = configurationJson.getBytes(UTF_8);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(configurationBytes.length + 64);
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        bodyOut.writeLong(timestamp);
+        bodyOut.writeUTF(cacheKey);
+        bodyOut.writeUTF(emptyIfNull(merchantId));
+        bodyOut.writeUTF(emptyIfNull(validators == null ? null : validators.getETag()));
+        bodyOut.writeUTF(emptyIfNull(validators == null ? null : validators.getLastModified()));
+        bodyOut.writeInt(configurationBytes.length);
+        bodyOut.write(configurationBytes);
+        bodyOut.flush();
+        byte[] bodyBytes = body.toByteArray();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(bodyBytes, 0, bodyBytes.length);
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream(HEADER_SIZE + bodyBytes.length);
+        DataOutputStream snapshotOut = new DataOutputStream(snapshot);
+        snapshotOut.writeInt(MAGIC);
+        snapshotOut.writeInt(SCHEMA_VERSION);
+        snapshotOut.writeLong(checksum.getValue());
+        snapshotOut.writeInt(bodyBytes.length);
+        snapshotOut.write(bodyBytes);
+        snapshotOut.flush();
+        return snapshot.toByteArray();
+    }
+
+    @VisibleForTesting
+    static Snapshot decode(byte[] bytes, String cacheKey) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readInt() != SCHEMA_VERSION) {
+                return null;
+            }
+            long expectedChecksum = in.readLong();
+            int bodyLength = in.readInt();
+            if (bodyLength != bytes.length - HEADER_SIZE) {
+                return null;
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, HEADER_SIZE, bodyLength);
+            if (checksum.getValue() != expectedChecksum) {
+                return null;
+            }
+
+            long timestamp = in.readLong();
+            if (!cacheKey.equals(in.readUTF())) {
+                return null;
+            }
+            in.readUTF();
+            String eTag = nullIfEmpty(in.readUTF());
+            String lastModified = nullIfEmpty(in.readUTF());
+            CacheValidators validators = (eTag == null && lastModified == null)
+                    ? null : new CacheValidators(eTag, lastModified);
+
+            byte[] configurationBytes = new byte[in.readInt()];
+            in.readFully(configurationBytes);
+            return new Snapshot(new String(configurationBytes, UTF_8), timestamp, validators);
+        } catch (IOException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static String emptyIfNull(String value) {
+        return (value == null) ? "" : value;
+    }
+
+    private static String nullIfEmpty(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static class SnapshotFile {
+
+        private final File file;
+        private final String merchantId;
+        private final long timestamp;
+        private final long lastModified;
+
+        SnapshotFile(File file, String merchantId, long timestamp, long lastModified) {
+            this.file = file;
+            this.merchantId = merchantId;
+            this.timestamp = timestamp;
+            this.lastModified = lastModified;
+        }
+    }
+
+    static class Snapshot {
+
+        private final String configurationJson;
+        private final long timestamp;
+        private final CacheValidators validators;
+
+        Snapshot(String configurationJson, long timestamp) {
+            this(configurationJson, timestamp, null);
+        }
+
+        Snapshot(String configurationJson, long timestamp, CacheValidators validators) {
+            this.configurationJson = configurationJson;
+            this.timestamp = timestamp;
+            this.validators = validators;
+        }
+
+        String getConfigurationJson() {
+            return configurationJson;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the validators the configuration was served with, or {@code null} if it had none.
+         */
+        CacheValidators getValidators() {
+            return validators;
+        }
+    }
+}
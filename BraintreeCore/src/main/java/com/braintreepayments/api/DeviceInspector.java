@@ -62,6 +62,20 @@ class DeviceInspector {
 
     @VisibleForTesting
     DeviceMetadata getDeviceMetadata(Context context, String sessionId, String integration, String buildTags) {
+        return new DeviceMetadata.Builder(getProcessMetadata(context))
+                .sessionId(sessionId)
+                .integration(integration)
+                .networkType(getNetworkType(context))
+                .userOrientation(getUserOrientation(context))
+                .isPayPalInstalled(isPayPalInstalled(context))
+                .isVenmoInstalled(isVenmoInstalled(context))
+                .build();
+    }
+
+    /**
+     * @return metadata with only the values that cannot change while the process is running set.
+     */
+    DeviceMetadata getProcessMetadata(Context context) {
         return new DeviceMetadata.Builder()
                 .platform("Android")
                 .platformVersion(Integer.toString(Build.VERSION.SDK_INT))
@@ -72,14 +86,8 @@ class DeviceInspector {
                 .deviceModel(Build.MODEL)
                 .devicePersistentUUID(uuidHelper.getPersistentUUID(context))
                 .isSimulator(isDeviceEmulator())
-                .sessionId(sessionId)
-                .integration(integration)
-                .networkType(getNetworkType(context))
-                .userOrientation(getUserOrientation(context))
                 .appVersion(getAppVersion(context))
                 .dropInVersion(getDropInVersion())
-                .isPayPalInstalled(isPayPalInstalled(context))
-                .isVenmoInstalled(isVenmoInstalled(context))
                 .build();
     }
 
@@ -134,7 +142,7 @@ class DeviceInspector {
         return appName;
     }
 
-    private String getNetworkType(Context context) {
+    String getNetworkType(Context context) {
         String networkType = null;
         if (context != null) {
             ConnectivityManager connectivityManager =
@@ -164,7 +172,7 @@ class DeviceInspector {
         return result;
     }
 
-    private String getUserOrientation(Context context) {
+    String getUserOrientation(Context context) {
         int orientation = ORIENTATION_UNDEFINED;
         if (context != null) {
             orientation = context.getResources().getConfiguration().orientation;
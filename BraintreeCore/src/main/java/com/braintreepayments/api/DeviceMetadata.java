@@ -32,6 +32,30 @@ class DeviceMetadata {
             instance = new DeviceMetadata();
         }
 
+        /**
+         * Start from a copy of the values of {@code metadata}.
+         */
+        Builder(DeviceMetadata metadata) {
+            this();
+            instance.appVersion = metadata.appVersion;
+            instance.deviceManufacturer = metadata.deviceManufacturer;
+            instance.deviceModel = metadata.deviceModel;
+            instance.devicePersistentUUID = metadata.devicePersistentUUID;
+            instance.dropInVersion = metadata.dropInVersion;
+            instance.integration = metadata.integration;
+            instance.isPayPalInstalled = metadata.isPayPalInstalled;
+            instance.isSimulator = metadata.isSimulator;
+            instance.isVenmoInstalled = metadata.isVenmoInstalled;
+            instance.merchantAppId = metadata.merchantAppId;
+            instance.merchantAppName = metadata.merchantAppName;
+            instance.networkType = metadata.networkType;
+            instance.platform = metadata.platform;
+            instance.platformVersion = metadata.platformVersion;
+            instance.sdkVersion = metadata.sdkVersion;
+            instance.sessionId = metadata.sessionId;
+            instance.userOrientation = metadata.userOrientation;
+        }
+
         Builder appVersion(String appVersion) {
             instance.appVersion = appVersion;
             return this;
@@ -140,9 +164,25 @@ class DeviceMetadata {
     private String sessionId;
     private String userOrientation;
 
+    // serialized form of this metadata, created the first time it is needed
+    private volatile String json;
+
     private DeviceMetadata() {
     }
 
+    /**
+     * @return {@link #toJSON()} as a string. Metadata does not change once it is built, so the
+     * string is only created once and reused for every request the metadata is sent with.
+     */
+    String toJSONString() throws JSONException {
+        String result = json;
+        if (result == null) {
+            result = toJSON().toString();
+            json = result;
+        }
+        return result;
+    }
+
     JSONObject toJSON() throws JSONException {
         return new JSONObject()
                 .put(SESSION_ID_KEY, sessionId)
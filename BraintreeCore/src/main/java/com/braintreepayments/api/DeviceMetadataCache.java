@@ -0,0 +1,175 @@
+package com.braintreepayments.api;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.net.ConnectivityManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Caches the {@link DeviceMetadata} sent with analytics events and crash reports.
+ *
+ * Values that cannot change while the process is running, e.g. the app name and version and the
+ * device model, are read once. The network type, orientation and installed wallet apps are read
+ * again only after a system broadcast or configuration change reports that they may have changed.
+ * The same {@link DeviceMetadata} is returned while nothing has changed, so its JSON is only
+ * serialized once.
+ *
+ * The shared instance starts listening for those changes the first time metadata is requested,
+ * and never stops. This is deliberate: the instance lives as long as the process, its listeners
+ * are registered with the application context and reference nothing but this cache, so there is
+ * no shorter lifecycle to unregister them with and nothing they could leak.
+ */
+class DeviceMetadataCache {
+
+    private static volatile DeviceMetadataCache INSTANCE;
+
+    private final DeviceInspector deviceInspector;
+    private final boolean registerOnFirstUse;
+
+    // set from the main thread when a value may have changed, read on background threads
+    private volatile boolean networkTypeStale = true;
+    private volatile boolean userOrientationStale = true;
+    private volatile boolean installedWalletsStale = true;
+
+    // guarded by this
+    private boolean registeredForChanges;
+    private DeviceMetadata processMetadata;
+    private String networkType;
+    private String userOrientation;
+    private boolean isPayPalInstalled;
+    private boolean isVenmoInstalled;
+    private DeviceMetadata metadata;
+    private String metadataSessionId;
+    private String metadataIntegration;
+
+    static DeviceMetadataCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (DeviceMetadataCache.class) {
+                // double check that instance was not created in another thread
+                if (INSTANCE == null) {
+                    INSTANCE = new DeviceMetadataCache(new DeviceInspector(), true);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    @VisibleForTesting
+    DeviceMetadataCache(DeviceInspector deviceInspector) {
+        this(deviceInspector, false);
+    }
+
+    @VisibleForTesting
+    DeviceMetadataCache(DeviceInspector deviceInspector, boolean registerOnFirstUse) {
+        this.deviceInspector = deviceInspector;
+        this.registerOnFirstUse = registerOnFirstUse;
+    }
+
+    /**
+     * @return metadata for {@code sessionId} and {@code integration}. The same instance is
+     * returned until one of them or a cached device value changes.
+     */
+    synchronized DeviceMetadata getDeviceMetadata(Context context, String sessionId, String integration) {
+        if (registerOnFirstUse && !registeredForChanges) {
+            registerForChanges(context.getApplicationContext());
+            registeredForChanges = true;
+        }
+
+        boolean changed = false;
+        if (processMetadata == null) {
+            processMetadata = deviceInspector.getProcessMetadata(context);
+            changed = true;
+        }
+        // clear each flag before reading so a change reported during the read is not lost
+        if (networkTypeStale) {
+            networkTypeStale = false;
+            networkType = deviceInspector.getNetworkType(context);
+            changed = true;
+        }
+        if (userOrientationStale) {
+            userOrientationStale = false;
+            userOrientation = deviceInspector.getUserOrientation(context);
+            changed = true;
+        }
+        if (installedWalletsStale) {
+            installedWalletsStale = false;
+            isPayPalInstalled = deviceInspector.isPayPalInstalled(context);
+            isVenmoInstalled = deviceInspector.isVenmoInstalled(context);
+            changed = true;
+        }
+
+        if (changed || metadata == null || !equals(sessionId, metadataSessionId)
+                || !equals(integration, metadataIntegration)) {
+            metadata = new DeviceMetadata.Builder(processMetadata)
+                    .sessionId(sessionId)
+                    .integration(integration)
+                    .networkType(networkType)
+                    .userOrientation(userOrientation)
+                    .isPayPalInstalled(isPayPalInstalled)
+                    .isVenmoInstalled(isVenmoInstalled)
+                    .build();
+            metadataSessionId = sessionId;
+            metadataIntegration = integration;
+        }
+        return metadata;
+    }
+
+    void invalidateNetworkType() {
+        networkTypeStale = true;
+    }
+
+    void invalidateUserOrientation() {
+        userOrientationStale = true;
+    }
+
+    void invalidateInstalledWallets() {
+        installedWalletsStale = true;
+    }
+
+    /**
+     * Listen for the broadcasts and configuration changes that may change the cached values, for
+     * the rest of the process lifetime.
+     */
+    @VisibleForTesting
+    void registerForChanges(Context context) {
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidateNetworkType();
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidateInstalledWallets();
+            }
+        }, packageFilter);
+
+        context.registerComponentCallbacks(new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                invalidateUserOrientation();
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+    }
+
+    private static boolean equals(String a, String b) {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+}
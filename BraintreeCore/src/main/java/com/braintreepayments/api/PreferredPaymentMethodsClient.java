@@ -15,6 +15,9 @@ import androidx.annotation.VisibleForTesting;
  */
 public class PreferredPaymentMethodsClient {
 
+    // the result only orders payment methods in the UI, so fall back to the defaults quickly
+    static final long PREFERRED_PAYMENT_METHODS_TIMEOUT_MS = 10000;
+
     private final BraintreeClient braintreeClient;
     private final DeviceInspector deviceInspector;
 
@@ -66,7 +69,7 @@ public class PreferredPaymentMethodsClient {
 
                 final String query = "{ \"query\": \"query PreferredPaymentMethods { preferredPaymentMethods { paypalPreferred } }\" }";
 
-                braintreeClient.sendGraphQLPOST(query, new HttpResponseCallback() {
+                braintreeClient.sendGraphQLPOST(query, PREFERRED_PAYMENT_METHODS_TIMEOUT_MS, new HttpResponseCallback() {
 
                     @Override
                     public void onResult(String responseBody, Exception httpError) {
@@ -0,0 +1,16 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Callback for receiving result of {@link BraintreeClient#prefetch(PrefetchCallback)}.
+ */
+public interface PrefetchCallback {
+
+    /**
+     * @param result timings of each prefetch stage. Timings are reported even if a stage failed.
+     * @param error an exception that occurred while fetching authorization or configuration
+     */
+    void onResult(@NonNull PrefetchResult result, @Nullable Exception error);
+}
@@ -0,0 +1,62 @@
+package com.braintreepayments.api;
+
+/**
+ * Timings of the stages run by {@link BraintreeClient#prefetch(PrefetchCallback)}.
+ *
+ * The TLS stage runs in parallel with authorization and configuration, so
+ * {@link #getTotalTimeMillis()} is usually less than the sum of the individual stages.
+ */
+public class PrefetchResult {
+
+    private volatile long authorizationTimeMillis;
+    private volatile long configurationTimeMillis;
+    private volatile long tlsTimeMillis;
+    private volatile long totalTimeMillis;
+
+    PrefetchResult() {}
+
+    /**
+     * @return the time it took to load authorization, including fetching a client token from a
+     * {@link ClientTokenProvider}.
+     */
+    public long getAuthorizationTimeMillis() {
+        return authorizationTimeMillis;
+    }
+
+    /**
+     * @return the time it took to load configuration, from the cache or from the network.
+     */
+    public long getConfigurationTimeMillis() {
+        return configurationTimeMillis;
+    }
+
+    /**
+     * @return the time it took to prepare the pinned TLS configuration.
+     */
+    public long getTLSTimeMillis() {
+        return tlsTimeMillis;
+    }
+
+    /**
+     * @return the time from the start of the prefetch until all stages finished.
+     */
+    public long getTotalTimeMillis() {
+        return totalTimeMillis;
+    }
+
+    void setAuthorizationTimeMillis(long authorizationTimeMillis) {
+        this.authorizationTimeMillis = authorizationTimeMillis;
+    }
+
+    void setConfigurationTimeMillis(long configurationTimeMillis) {
+        this.configurationTimeMillis = configurationTimeMillis;
+    }
+
+    void setTLSTimeMillis(long tlsTimeMillis) {
+        this.tlsTimeMillis = tlsTimeMillis;
+    }
+
+    void setTotalTimeMillis(long totalTimeMillis) {
+        this.totalTimeMillis = totalTimeMillis;
+    }
+}
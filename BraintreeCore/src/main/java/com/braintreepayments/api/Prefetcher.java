@@ -0,0 +1,91 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the work that the first request would otherwise do serially: loading authorization and
+ * configuration and preparing the pinned TLS configuration. Authorization and configuration load
+ * one after the other, in parallel with the TLS stage.
+ */
+class Prefetcher {
+
+    private static final int STAGE_COUNT = 2;
+
+    private final AuthorizationLoader authorizationLoader;
+    private final ConfigurationLoader configurationLoader;
+    private final Scheduler scheduler;
+
+    Prefetcher(AuthorizationLoader authorizationLoader, ConfigurationLoader configurationLoader,
+               Scheduler scheduler) {
+        this.authorizationLoader = authorizationLoader;
+        this.configurationLoader = configurationLoader;
+        this.scheduler = scheduler;
+    }
+
+    void prefetch(@Nullable final PrefetchCallback callback) {
+        final long startNanos = System.nanoTime();
+        final PrefetchResult result = new PrefetchResult();
+        final AtomicInteger remainingStages = new AtomicInteger(STAGE_COUNT);
+        final AtomicReference<Exception> firstError = new AtomicReference<>();
+
+        scheduler.runOnBackground(new Runnable() {
+            @Override
+            public void run() {
+                long stageStartNanos = System.nanoTime();
+                TLSCertificatePinning.INSTANCE.warmUp();
+                result.setTLSTimeMillis(millisSince(stageStartNanos));
+                onStageComplete(remainingStages, startNanos, result, firstError, callback);
+            }
+        }, Scheduler.PRIORITY_LOW);
+
+        final long authorizationStartNanos = System.nanoTime();
+        authorizationLoader.loadAuthorization(new AuthorizationCallback() {
+            @Override
+            public void onAuthorizationResult(@Nullable Authorization authorization, @Nullable Exception authError) {
+                result.setAuthorizationTimeMillis(millisSince(authorizationStartNanos));
+                if (authorization == null) {
+                    firstError.compareAndSet(null, authError);
+                    onStageComplete(remainingStages, startNanos, result, firstError, callback);
+                    return;
+                }
+
+                final long configurationStartNanos = System.nanoTime();
+                configurationLoader.loadConfiguration(authorization, new ConfigurationLoaderCallback() {
+                    @Override
+                    public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
+                        result.setConfigurationTimeMillis(millisSince(configurationStartNanos));
+                        if (configuration == null) {
+                            firstError.compareAndSet(null, configError);
+                        }
+                        onStageComplete(remainingStages, startNanos, result, firstError, callback);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onStageComplete(AtomicInteger remainingStages, long startNanos, final PrefetchResult result,
+                                 final AtomicReference<Exception> firstError, final PrefetchCallback callback) {
+        if (remainingStages.decrementAndGet() != 0) {
+            return;
+        }
+
+        result.setTotalTimeMillis(millisSince(startNanos));
+        if (callback != null) {
+            scheduler.runOnMain(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onResult(result, firstError.get());
+                }
+            });
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
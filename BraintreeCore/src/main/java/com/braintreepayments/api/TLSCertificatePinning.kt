@@ -90,4 +90,31 @@ internal object TLSCertificatePinning {
     @get:Throws(SSLException::class)
     val certInputStream: InputStream
         get() = ByteArrayInputStream(CERTIFICATES.toByteArray(StandardCharsets.UTF_8))
+
+    @Volatile
+    private var pinnedSocketFactory: TLSSocketFactory? = null
+
+    /**
+     * Process-wide [TLSSocketFactory] trusting only the pinned certificates. It is built on first
+     * use, and shared so that the certificates are parsed once and TLS sessions can be resumed
+     * across clients. A failed build is retried on the next access.
+     */
+    @get:Throws(SSLException::class)
+    val socketFactory: TLSSocketFactory
+        get() = pinnedSocketFactory ?: synchronized(this) {
+            pinnedSocketFactory ?: TLSSocketFactory(certInputStream).also { pinnedSocketFactory = it }
+        }
+
+    /**
+     * Build the shared [socketFactory] ahead of the first request. This parses the pinned
+     * certificates and initializes the SSL context, so it should not be called on the main thread.
+     *
+     * @return true if the socket factory is ready
+     */
+    fun warmUp(): Boolean = try {
+        socketFactory
+        true
+    } catch (e: SSLException) {
+        false
+    }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import io.mockk.*
 import org.json.JSONException
 import org.json.JSONObject
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
@@ -24,13 +25,15 @@ class AnalyticsClientUnitTest {
     private lateinit var context: Context
     private lateinit var authorization: Authorization
     private lateinit var httpClient: BraintreeHttpClient
-    private lateinit var deviceInspector: DeviceInspector
+    private lateinit var deviceMetadataCache: DeviceMetadataCache
     private lateinit var eventName: String
     private lateinit var sessionId: String
     private lateinit var integration: String
     private lateinit var workManager: WorkManager
     private lateinit var analyticsDatabase: AnalyticsDatabase
     private lateinit var analyticsEventDao: AnalyticsEventDao
+    private lateinit var eventBuffer: AnalyticsEventBuffer
+    private lateinit var uploadMetrics: AnalyticsUploadMetrics
 
     private var timestamp: Long = 0
 
@@ -44,35 +47,32 @@ class AnalyticsClientUnitTest {
         authorization = fromString(Fixtures.TOKENIZATION_KEY)
         context = ApplicationProvider.getApplicationContext()
         httpClient = mockk(relaxed = true)
-        deviceInspector = mockk(relaxed = true)
+        deviceMetadataCache = mockk(relaxed = true)
         analyticsDatabase = mockk(relaxed = true)
         analyticsEventDao = mockk(relaxed = true)
         workManager = mockk(relaxed = true)
+        eventBuffer = mockk(relaxed = true)
+        uploadMetrics = AnalyticsUploadMetrics()
 
         every { analyticsDatabase.analyticsEventDao() } returns analyticsEventDao
     }
 
     @Test
     @Throws(JSONException::class)
-    fun sendEvent_enqueuesAnalyticsWriteToDbWorker() {
-        val workRequestSlot = slot<OneTimeWorkRequest>()
-        every {
-            workManager.enqueueUniqueWork(
-                "writeAnalyticsToDb",
-                ExistingWorkPolicy.APPEND_OR_REPLACE,
-                capture(workRequestSlot)
-            )
-        } returns mockk()
+    fun sendEvent_addsEventToBuffer() {
+        val eventSlot = slot<AnalyticsEvent>()
+        every { eventBuffer.add(capture(eventSlot)) } returns true
 
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.sendEvent(configuration, eventName, sessionId, integration, 123, authorization)
 
-        val workSpec = workRequestSlot.captured.workSpec
-        assertEquals(AnalyticsWriteToDbWorker::class.java.name, workSpec.workerClassName)
-        assertEquals(authorization.toString(), workSpec.input.getString("authorization"))
-        assertEquals("android.sample-event-name", workSpec.input.getString("eventName"))
-        assertEquals(123, workSpec.input.getLong("timestamp", 0))
+        val event = eventSlot.captured
+        assertEquals("android.sample-event-name", event.name)
+        assertEquals(123, event.timestamp)
+        verify(exactly = 0) {
+            workManager.enqueueUniqueWork("writeAnalyticsToDb", any(), any<OneTimeWorkRequest>())
+        }
     }
 
     @Test
@@ -88,25 +88,87 @@ class AnalyticsClientUnitTest {
         } returns mockk()
 
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.sendEvent(configuration, eventName, sessionId, integration, 123, authorization)
 
         val workSpec = workRequestSlot.captured.workSpec
         assertEquals(30000, workSpec.initialDelay)
+        assertEquals(BackoffPolicy.EXPONENTIAL, workSpec.backoffPolicy)
+        assertEquals(30000, workSpec.backoffDelayDuration)
         assertEquals(AnalyticsUploadWorker::class.java.name, workSpec.workerClassName)
-        assertEquals(configuration.toJson(), workSpec.input.getString("configuration"))
+        assertEquals("analytics_url", workSpec.input.getString("analyticsUrl"))
+        assertNull(workSpec.input.getString("configuration"))
         assertEquals(authorization.toString(), workSpec.input.getString("authorization"))
         assertEquals("sample-session-id", workSpec.input.getString("sessionId"))
         assertEquals("sample-integration", workSpec.input.getString("integration"))
     }
 
+    @Test
+    fun createUploadInputData_carriesOnlyAnalyticsUrlFromConfiguration() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+
+        val inputData =
+            AnalyticsClient.createUploadInputData(configuration, authorization, sessionId, integration)
+
+        assertEquals(
+            setOf(
+                AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL,
+                AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION,
+                AnalyticsClient.WORK_INPUT_KEY_SESSION_ID,
+                AnalyticsClient.WORK_INPUT_KEY_INTEGRATION
+            ),
+            inputData.keyValueMap.keys
+        )
+        assertEquals("analytics_url", inputData.getString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_withCreatedUploadInputData_rebuildsRequestFromAnalyticsUrl() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        // WorkManager persists job input as bytes and reads it back when the job runs
+        val inputData = Data.fromByteArray(
+            Data.toByteArrayInternal(
+                AnalyticsClient.createUploadInputData(configuration, authorization, sessionId, integration)
+            )
+        )
+        val metadata = createSampleDeviceMetadata()
+        every {
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
+        } returns metadata
+        every { analyticsEventDao.getEventCount() } returns 1
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns listOf(AnalyticsEvent("event0", 123))
+
+        val analyticsJSONSlot = slot<String>()
+        every {
+            httpClient.post(any(), capture(analyticsJSONSlot), any(), any(), any<CancellationToken>())
+        } returns "{}"
+
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        val result = sut.uploadAnalytics(context, inputData)
+
+        assertTrue(result is ListenableWorker.Result.Success)
+        verify {
+            httpClient.post(
+                "analytics_url",
+                any(),
+                isNull(),
+                match { it.toString() == authorization.toString() },
+                any<CancellationToken>()
+            )
+        }
+        val analyticsJson = JSONObject(analyticsJSONSlot.captured)
+        JSONAssert.assertEquals(metadata.toJSON(), analyticsJson.getJSONObject("_meta"), true)
+        assertEquals("event0", analyticsJson.getJSONArray("analytics").getJSONObject(0).getString("kind"))
+    }
+
     @Test
     fun writeAnalytics_whenEventNameAndTimestampArePresent_returnsSuccess() {
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_EVENT_NAME, eventName)
             .putLong(AnalyticsClient.WORK_INPUT_KEY_TIMESTAMP, timestamp)
             .build()
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.writeAnalytics(inputData)
         assertTrue(result is ListenableWorker.Result.Success)
     }
@@ -117,7 +179,7 @@ class AnalyticsClientUnitTest {
             .putLong(AnalyticsClient.WORK_INPUT_KEY_TIMESTAMP, timestamp)
             .build()
         val sut =
-            AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+            AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.writeAnalytics(inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
     }
@@ -128,7 +190,7 @@ class AnalyticsClientUnitTest {
             .putString(AnalyticsClient.WORK_INPUT_KEY_EVENT_NAME, eventName)
             .build()
         val sut =
-            AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+            AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.writeAnalytics(inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
     }
@@ -142,7 +204,7 @@ class AnalyticsClientUnitTest {
             .putString(AnalyticsClient.WORK_INPUT_KEY_EVENT_NAME, eventName)
             .putLong(AnalyticsClient.WORK_INPUT_KEY_TIMESTAMP, timestamp)
             .build()
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.writeAnalytics(inputData)
 
         val event = analyticsEventSlot.captured
@@ -156,11 +218,11 @@ class AnalyticsClientUnitTest {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.uploadAnalytics(context, inputData)
 
         // or confirmVerified(httpClient)
@@ -169,7 +231,26 @@ class AnalyticsClientUnitTest {
 
     @Test
     @Throws(Exception::class)
-    fun uploadAnalytics_whenEventsExist_sendsAllEvents() {
+    fun uploadAnalytics_flushesBufferBeforeReadingEvents() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        val inputData = Data.Builder()
+            .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
+            .build()
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        sut.uploadAnalytics(context, inputData)
+
+        verifyOrder {
+            eventBuffer.flush()
+            analyticsEventDao.getEventCount()
+        }
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_whenJobHasLegacyConfiguration_sendsEventsToItsAnalyticsUrl() {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
@@ -177,21 +258,45 @@ class AnalyticsClientUnitTest {
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
+        val events = listOf(createEvent(1, "event0", 123))
+        every { analyticsEventDao.getEventCount() } returns events.size
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns events
+
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        val result = sut.uploadAnalytics(context, inputData)
+
+        assertTrue(result is ListenableWorker.Result.Success)
+        verify {
+            httpClient.post("analytics_url", any(), isNull(), any(), any<CancellationToken>())
+        }
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_whenEventsExist_sendsAllEvents() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        val inputData = Data.Builder()
+            .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
+            .build()
         val metadata = createSampleDeviceMetadata()
 
         every {
-            deviceInspector.getDeviceMetadata(context, sessionId, integration)
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         } returns metadata
 
         val events: MutableList<AnalyticsEvent> = ArrayList()
         events.add(AnalyticsEvent("event0", 123))
         events.add(AnalyticsEvent("event1", 456))
-        every { analyticsEventDao.getAllEvents() } returns events
+        every { analyticsEventDao.getEventCount() } returns events.size
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns events
 
         val analyticsJSONSlot = slot<String>()
-        every { httpClient.post(any(), capture(analyticsJSONSlot), any(), any()) }
+        every { httpClient.post(any(), capture(analyticsJSONSlot), any(), any(), any<CancellationToken>()) }
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.uploadAnalytics(context, inputData)
 
         val analyticsJson = JSONObject(analyticsJSONSlot.captured)
@@ -218,7 +323,7 @@ class AnalyticsClientUnitTest {
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.uploadAnalytics(context, inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
 
@@ -231,12 +336,12 @@ class AnalyticsClientUnitTest {
     fun uploadAnalytics_whenAuthorizationIsNull_doesNothing() {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.uploadAnalytics(context, inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
 
@@ -250,11 +355,11 @@ class AnalyticsClientUnitTest {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.uploadAnalytics(context, inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
 
@@ -268,11 +373,11 @@ class AnalyticsClientUnitTest {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .build()
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.uploadAnalytics(context, inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
 
@@ -286,14 +391,14 @@ class AnalyticsClientUnitTest {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
 
         val metadata = createSampleDeviceMetadata()
         every {
-            deviceInspector.getDeviceMetadata(
+            deviceMetadataCache.getDeviceMetadata(
                 context,
                 sessionId,
                 integration
@@ -301,14 +406,123 @@ class AnalyticsClientUnitTest {
         } returns metadata
 
         val events: MutableList<AnalyticsEvent> = ArrayList()
-        events.add(AnalyticsEvent("event0", 123))
-        events.add(AnalyticsEvent("event1", 456))
-        every { analyticsEventDao.getAllEvents() } returns events
+        events.add(createEvent(1, "event0", 123))
+        events.add(createEvent(2, "event1", 456))
+        every { analyticsEventDao.getEventCount() } returns events.size
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns events
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.uploadAnalytics(context, inputData)
 
-        verify { analyticsEventDao.deleteEvents(events) }
+        verify { analyticsEventDao.deleteEventsInRange(1, 2) }
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_whenBacklogExceedsBatchSize_sendsEventsInPages() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        val inputData = Data.Builder()
+            .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
+            .build()
+        every {
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
+        } returns createSampleDeviceMetadata()
+
+        val batchSize = AnalyticsClient.UPLOAD_BATCH_SIZE
+        val firstPage = (1..batchSize).map { createEvent(it, "event$it", it.toLong()) }
+        val secondPage = listOf(createEvent(batchSize + 1, "last-event", 0))
+        every { analyticsEventDao.getEventCount() } returns batchSize + 1
+        every { analyticsEventDao.getEventsAfter(0, batchSize) } returns firstPage
+        every { analyticsEventDao.getEventsAfter(batchSize, batchSize) } returns secondPage
+
+        val analyticsJSONSlots = mutableListOf<String>()
+        every {
+            httpClient.post(any(), capture(analyticsJSONSlots), any(), any(), any<CancellationToken>())
+        } returns "{}"
+
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        val result = sut.uploadAnalytics(context, inputData)
+
+        assertTrue(result is ListenableWorker.Result.Success)
+        assertEquals(2, analyticsJSONSlots.size)
+        assertEquals(batchSize, JSONObject(analyticsJSONSlots[0]).getJSONArray("analytics").length())
+        assertEquals(1, JSONObject(analyticsJSONSlots[1]).getJSONArray("analytics").length())
+        verifyOrder {
+            analyticsEventDao.deleteEventsInRange(1, batchSize)
+            analyticsEventDao.deleteEventsInRange(batchSize + 1, batchSize + 1)
+        }
+        verify(exactly = 1) { deviceMetadataCache.getDeviceMetadata(context, sessionId, integration) }
+
+        assertEquals(batchSize + 1, uploadMetrics.getLastBacklogSize())
+        assertEquals(2, uploadMetrics.getBatchCount())
+        assertEquals(batchSize + 1L, uploadMetrics.getUploadedEventCount())
+        assertEquals(0, uploadMetrics.getFailedBatchCount())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_whenBatchFailsWithTransientError_keepsAcknowledgedBatchesAndReturnsRetry() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        val inputData = Data.Builder()
+            .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
+            .build()
+        every {
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
+        } returns createSampleDeviceMetadata()
+
+        val batchSize = AnalyticsClient.UPLOAD_BATCH_SIZE
+        val firstPage = (1..batchSize).map { createEvent(it, "event$it", it.toLong()) }
+        val secondPage = listOf(createEvent(batchSize + 1, "last-event", 0))
+        every { analyticsEventDao.getEventCount() } returns batchSize + 1
+        every { analyticsEventDao.getEventsAfter(0, batchSize) } returns firstPage
+        every { analyticsEventDao.getEventsAfter(batchSize, batchSize) } returns secondPage
+        every {
+            httpClient.post(any(), any(), any(), any(), any<CancellationToken>())
+        } returns "{}"
+        every {
+            httpClient.post(any(), match { it.contains("last-event") }, any(), any(), any<CancellationToken>())
+        } throws IOException("network error")
+
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        val result = sut.uploadAnalytics(context, inputData, 0)
+
+        assertTrue(result is ListenableWorker.Result.Retry)
+        verify { analyticsEventDao.deleteEventsInRange(1, batchSize) }
+        verify(exactly = 0) { analyticsEventDao.deleteEventsInRange(batchSize + 1, any()) }
+        assertEquals(1, uploadMetrics.getBatchCount())
+        assertEquals(1, uploadMetrics.getFailedBatchCount())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun uploadAnalytics_whenTransientErrorOnLastAttempt_returnsFailure() {
+        val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
+        val inputData = Data.Builder()
+            .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
+            .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
+            .build()
+        val events = listOf(createEvent(1, "event0", 123))
+        every { analyticsEventDao.getEventCount() } returns events.size
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns events
+        every {
+            httpClient.post(any(), any(), any(), any(), any<CancellationToken>())
+        } throws IOException("timeout")
+
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
+        val result = sut.uploadAnalytics(
+            context, inputData, AnalyticsClient.MAX_UPLOAD_ATTEMPTS - 1
+        )
+
+        assertTrue(result is ListenableWorker.Result.Failure)
+        verify(exactly = 0) { analyticsEventDao.deleteEventsInRange(any(), any()) }
     }
 
     @Test
@@ -317,25 +531,26 @@ class AnalyticsClientUnitTest {
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         val inputData = Data.Builder()
             .putString(AnalyticsClient.WORK_INPUT_KEY_AUTHORIZATION, authorization.toString())
-            .putString(AnalyticsClient.WORK_INPUT_KEY_CONFIGURATION, configuration.toJson())
+            .putString(AnalyticsClient.WORK_INPUT_KEY_ANALYTICS_URL, configuration.analyticsUrl)
             .putString(AnalyticsClient.WORK_INPUT_KEY_SESSION_ID, sessionId)
             .putString(AnalyticsClient.WORK_INPUT_KEY_INTEGRATION, integration)
             .build()
 
         val metadata = createSampleDeviceMetadata()
         every {
-            deviceInspector.getDeviceMetadata(context, sessionId, integration)
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         } returns metadata
 
         val events: MutableList<AnalyticsEvent> = ArrayList()
         events.add(AnalyticsEvent("event0", 123))
         events.add(AnalyticsEvent("event1", 456))
-        every { analyticsEventDao.getAllEvents() } returns events
+        every { analyticsEventDao.getEventCount() } returns events.size
+        every { analyticsEventDao.getEventsAfter(0, any()) } returns events
 
         val httpError = Exception("error")
-        every { httpClient.post(any(), any(), any(), any()) } throws httpError
+        every { httpClient.post(any(), any(), any(), any(), any<CancellationToken>()) } throws httpError
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val result = sut.uploadAnalytics(context, inputData)
         assertTrue(result is ListenableWorker.Result.Failure)
     }
@@ -345,7 +560,7 @@ class AnalyticsClientUnitTest {
     fun reportCrash_whenLastKnownAnalyticsUrlExists_sendsCrashAnalyticsEvent() {
         val metadata = createSampleDeviceMetadata()
         every {
-            deviceInspector.getDeviceMetadata(context, sessionId, integration)
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         } returns metadata
 
         val analyticsJSONSlot = slot<String>()
@@ -355,11 +570,13 @@ class AnalyticsClientUnitTest {
                 capture(analyticsJSONSlot),
                 isNull(),
                 authorization,
+                Scheduler.PRIORITY_LOW,
+                any(),
                 any()
             )
         } returns Unit
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         sut.sendEvent(configuration, eventName, sessionId, integration, authorization)
 
@@ -382,10 +599,10 @@ class AnalyticsClientUnitTest {
     fun reportCrash_whenLastKnownAnalyticsUrlMissing_doesNothing() {
         val metadata = createSampleDeviceMetadata()
         every {
-            deviceInspector.getDeviceMetadata(context, sessionId, integration)
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         } returns metadata
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         sut.reportCrash(context, sessionId, integration, 123, authorization)
 
         // or confirmVerified(httpClient)
@@ -397,10 +614,10 @@ class AnalyticsClientUnitTest {
     fun reportCrash_whenAuthorizationIsNull_doesNothing() {
         val metadata = createSampleDeviceMetadata()
         every {
-            deviceInspector.getDeviceMetadata(context, sessionId, integration)
+            deviceMetadataCache.getDeviceMetadata(context, sessionId, integration)
         } returns metadata
 
-        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceInspector)
+        val sut = AnalyticsClient(httpClient, analyticsDatabase, workManager, deviceMetadataCache, eventBuffer, uploadMetrics)
         val configuration = fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS)
         sut.sendEvent(configuration, eventName, sessionId, integration, authorization)
 
@@ -411,6 +628,9 @@ class AnalyticsClientUnitTest {
     }
 
     companion object {
+        private fun createEvent(id: Int, name: String, timestamp: Long): AnalyticsEvent =
+            AnalyticsEvent(name, timestamp).also { it.id = id }
+
         private fun createSampleDeviceMetadata(): DeviceMetadata {
             return DeviceMetadata.Builder()
                 .integration("sample-integration")
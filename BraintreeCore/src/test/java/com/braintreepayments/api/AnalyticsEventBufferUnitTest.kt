@@ -0,0 +1,168 @@
+package com.braintreepayments.api
+
+import io.mockk.*
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AnalyticsEventBufferUnitTest {
+
+    private lateinit var analyticsDatabase: AnalyticsDatabase
+    private lateinit var analyticsEventDao: AnalyticsEventDao
+    private lateinit var scheduler: Scheduler
+
+    @Before
+    fun beforeEach() {
+        analyticsDatabase = mockk(relaxed = true)
+        analyticsEventDao = mockk(relaxed = true)
+        scheduler = mockk(relaxed = true)
+
+        every { analyticsDatabase.analyticsEventDao() } returns analyticsEventDao
+        every { analyticsDatabase.runInTransaction(any<Runnable>()) } answers {
+            firstArg<Runnable>().run()
+        }
+    }
+
+    @Test
+    fun add_belowFlushThreshold_schedulesDelayedFlushOnce() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 4, 5000)
+
+        assertTrue(sut.add(AnalyticsEvent("event0", 0)))
+        assertTrue(sut.add(AnalyticsEvent("event1", 1)))
+
+        verify(exactly = 1) { scheduler.runOnBackground(any(), Scheduler.PRIORITY_LOW, 5000) }
+        verify(exactly = 0) { scheduler.runOnBackground(any(), any<Int>()) }
+        assertEquals(2, sut.getBufferedEventCount())
+    }
+
+    @Test
+    fun add_whenFlushThresholdReached_schedulesImmediateFlush() {
+        val runnableSlot = slot<Runnable>()
+        every { scheduler.runOnBackground(capture(runnableSlot), Scheduler.PRIORITY_LOW) } just runs
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 3, 5000)
+
+        sut.add(AnalyticsEvent("event0", 0))
+        sut.add(AnalyticsEvent("event1", 1))
+        sut.add(AnalyticsEvent("event2", 2))
+
+        verify(exactly = 1) { scheduler.runOnBackground(any(), Scheduler.PRIORITY_LOW) }
+        runnableSlot.captured.run()
+
+        verify { analyticsEventDao.insertEvents(match { it.size == 3 }) }
+        assertEquals(0, sut.getBufferedEventCount())
+    }
+
+    @Test
+    fun flush_writesBufferedEventsInOrderInSingleTransaction() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 4, 5000)
+        sut.add(AnalyticsEvent("event0", 0))
+        sut.add(AnalyticsEvent("event1", 1))
+
+        assertEquals(2, sut.flush())
+
+        verify(exactly = 1) { analyticsDatabase.runInTransaction(any<Runnable>()) }
+        verify(exactly = 1) {
+            analyticsEventDao.insertEvents(match { events ->
+                events.map { it.name } == listOf("event0", "event1")
+            })
+        }
+        assertEquals(2, sut.getFlushedEventCount())
+        assertEquals(1, sut.getFlushCount())
+    }
+
+    @Test
+    fun flush_trimsStoredEventsAndCountsEvictions() {
+        every { analyticsEventDao.trimToSize(10) } returns 3
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 4, 5000, 10)
+        sut.add(AnalyticsEvent("event0", 0))
+
+        sut.flush()
+
+        verifyOrder {
+            analyticsEventDao.insertEvents(any())
+            analyticsEventDao.trimToSize(10)
+        }
+        assertEquals(3, sut.getEvictedEventCount())
+        assertEquals(0, sut.getDroppedEventCount())
+    }
+
+    @Test
+    fun flush_whenBufferIsEmpty_doesNotOpenTransaction() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 4, 5000)
+
+        assertEquals(0, sut.flush())
+
+        verify(exactly = 0) { analyticsDatabase.runInTransaction(any<Runnable>()) }
+        assertEquals(0, sut.getFlushCount())
+    }
+
+    @Test
+    fun add_whenBufferIsFull_dropsEvent() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 2, 4, 5000)
+
+        assertTrue(sut.add(AnalyticsEvent("event0", 0)))
+        assertTrue(sut.add(AnalyticsEvent("event1", 1)))
+        assertFalse(sut.add(AnalyticsEvent("event2", 2)))
+
+        assertEquals(2, sut.getBufferedEventCount())
+        assertEquals(1, sut.getDroppedEventCount())
+    }
+
+    @Test
+    fun add_afterFlush_reusesFreedSlots() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 2, 4, 5000)
+        sut.add(AnalyticsEvent("event0", 0))
+        sut.add(AnalyticsEvent("event1", 1))
+        sut.flush()
+
+        assertTrue(sut.add(AnalyticsEvent("event2", 2)))
+        assertTrue(sut.add(AnalyticsEvent("event3", 3)))
+        assertEquals(2, sut.flush())
+
+        assertEquals(4, sut.getFlushedEventCount())
+        assertEquals(0, sut.getDroppedEventCount())
+    }
+
+    @Test
+    fun flush_whenDatabaseFails_countsEventsAsDropped() {
+        every { analyticsDatabase.runInTransaction(any<Runnable>()) } throws RuntimeException("error")
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 8, 4, 5000)
+        sut.add(AnalyticsEvent("event0", 0))
+        sut.add(AnalyticsEvent("event1", 1))
+
+        assertEquals(0, sut.flush())
+
+        assertEquals(2, sut.getDroppedEventCount())
+        assertEquals(0, sut.getFlushedEventCount())
+        assertEquals(0, sut.getBufferedEventCount())
+    }
+
+    @Test
+    fun add_fromConcurrentThreads_buffersEveryEvent() {
+        val sut = AnalyticsEventBuffer(analyticsDatabase, scheduler, 1000, 2000, 5000)
+        val threadCount = 4
+        val eventsPerThread = 200
+        val startLatch = CountDownLatch(1)
+        val doneLatch = CountDownLatch(threadCount)
+
+        repeat(threadCount) { thread ->
+            Thread {
+                startLatch.await()
+                repeat(eventsPerThread) { i ->
+                    sut.add(AnalyticsEvent("event-$thread-$i", i.toLong()))
+                }
+                doneLatch.countDown()
+            }.start()
+        }
+        startLatch.countDown()
+        assertTrue(doneLatch.await(5, TimeUnit.SECONDS))
+
+        assertEquals(threadCount * eventsPerThread, sut.flush())
+        verify { analyticsEventDao.insertEvents(match { it.size == threadCount * eventsPerThread }) }
+        assertEquals(0, sut.getDroppedEventCount())
+    }
+}
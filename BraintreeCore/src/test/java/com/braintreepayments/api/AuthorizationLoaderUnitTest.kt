@@ -1,14 +1,21 @@
 package com.braintreepayments.api
 
+import android.util.Base64
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.slot
 import io.mockk.verify
+import org.json.JSONObject
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 @RunWith(RobolectricTestRunner::class)
 class AuthorizationLoaderUnitTest {
@@ -178,4 +185,181 @@ class AuthorizationLoaderUnitTest {
         sut.loadAuthorization(callback)
         assertEquals(clientToken, sut.authorizationFromCache?.toString())
     }
-}
\ No newline at end of file
+
+    @Test
+    fun loadAuthorization_whileClientTokenFetchInFlight_sharesSingleProviderCall() {
+        val clientTokenProvider = mockk<ClientTokenProvider>()
+        val providerCallbackSlot = slot<ClientTokenCallback>()
+        every { clientTokenProvider.getClientToken(capture(providerCallbackSlot)) } returns Unit
+
+        val callback1 = mockk<AuthorizationCallback>(relaxed = true)
+        val callback2 = mockk<AuthorizationCallback>(relaxed = true)
+
+        sut = AuthorizationLoader(null, clientTokenProvider)
+        sut.loadAuthorization(callback1)
+        sut.loadAuthorization(callback2)
+        providerCallbackSlot.captured.onSuccess(Fixtures.BASE64_CLIENT_TOKEN)
+
+        verify(exactly = 1) { clientTokenProvider.getClientToken(any()) }
+        verify { callback1.onAuthorizationResult(sut.authorizationFromCache, null) }
+        verify { callback2.onAuthorizationResult(sut.authorizationFromCache, null) }
+    }
+
+    @Test
+    fun refreshAuthorization_whenRejectedAuthorizationIsCached_fetchesNewClientToken() {
+        val clientTokenProvider = MockkAuthorizationProviderBuilder()
+            .clientToken(Fixtures.BASE64_CLIENT_TOKEN, Fixtures.BASE64_CLIENT_TOKEN2)
+            .build()
+        sut = AuthorizationLoader(null, clientTokenProvider)
+        sut.loadAuthorization(mockk(relaxed = true))
+        val rejectedAuthorization = sut.authorizationFromCache!!
+
+        val callback = mockk<AuthorizationCallback>()
+        val authSlot = slot<Authorization>()
+        every { callback.onAuthorizationResult(capture(authSlot), null) } returns Unit
+        sut.refreshAuthorization(rejectedAuthorization, callback)
+
+        assertEquals(Fixtures.BASE64_CLIENT_TOKEN2, authSlot.captured.toString())
+        verify(exactly = 2) { clientTokenProvider.getClientToken(any()) }
+    }
+
+    @Test
+    fun refreshAuthorization_whenAuthorizationAlreadyRefreshed_returnsCachedAuthorization() {
+        val clientTokenProvider = MockkAuthorizationProviderBuilder()
+            .clientToken(Fixtures.BASE64_CLIENT_TOKEN2)
+            .build()
+        sut = AuthorizationLoader(null, clientTokenProvider)
+        sut.loadAuthorization(mockk(relaxed = true))
+
+        val callback = mockk<AuthorizationCallback>()
+        val authSlot = slot<Authorization>()
+        every { callback.onAuthorizationResult(capture(authSlot), null) } returns Unit
+        sut.refreshAuthorization(Authorization.fromString(Fixtures.BASE64_CLIENT_TOKEN), callback)
+
+        assertEquals(Fixtures.BASE64_CLIENT_TOKEN2, authSlot.captured.toString())
+        verify(exactly = 1) { clientTokenProvider.getClientToken(any()) }
+    }
+
+    @Test
+    fun loadAuthorization_whenClientTokenNearExpiry_returnsCachedTokenAndRefreshesIt() {
+        val now = 1_000_000_000L
+        val expiringToken = clientTokenExpiringAt(now + 60_000)
+        val clientTokenProvider = MockkAuthorizationProviderBuilder()
+            .clientToken(Fixtures.BASE64_CLIENT_TOKEN2)
+            .build()
+        sut = AuthorizationLoader(expiringToken, clientTokenProvider) { now }
+        sut.refreshesClientTokenBeforeExpiry = true
+
+        val callback = mockk<AuthorizationCallback>()
+        val authSlot = slot<Authorization>()
+        every { callback.onAuthorizationResult(capture(authSlot), null) } returns Unit
+        sut.loadAuthorization(callback)
+
+        assertEquals(expiringToken, authSlot.captured.toString())
+        verify(exactly = 1) { clientTokenProvider.getClientToken(any()) }
+        assertEquals(Fixtures.BASE64_CLIENT_TOKEN2, sut.authorizationFromCache?.toString())
+    }
+
+    @Test
+    fun loadAuthorization_whenClientTokenExpired_waitsForNewClientToken() {
+        val now = 1_000_000_000L
+        val clientTokenProvider = MockkAuthorizationProviderBuilder()
+            .clientToken(Fixtures.BASE64_CLIENT_TOKEN2)
+            .build()
+        sut = AuthorizationLoader(clientTokenExpiringAt(now - 1), clientTokenProvider) { now }
+        sut.refreshesClientTokenBeforeExpiry = true
+
+        val callback = mockk<AuthorizationCallback>()
+        val authSlot = slot<Authorization>()
+        every { callback.onAuthorizationResult(capture(authSlot), null) } returns Unit
+        sut.loadAuthorization(callback)
+
+        assertEquals(Fixtures.BASE64_CLIENT_TOKEN2, authSlot.captured.toString())
+    }
+
+    @Test
+    fun loadAuthorization_whenRefreshBeforeExpiryDisabled_doesNotRefreshExpiringClientToken() {
+        val now = 1_000_000_000L
+        val expiringToken = clientTokenExpiringAt(now + 60_000)
+        val clientTokenProvider = MockkAuthorizationProviderBuilder()
+            .clientToken(Fixtures.BASE64_CLIENT_TOKEN2)
+            .build()
+        sut = AuthorizationLoader(expiringToken, clientTokenProvider) { now }
+
+        sut.loadAuthorization(mockk(relaxed = true))
+
+        verify(exactly = 0) { clientTokenProvider.getClientToken(any()) }
+        assertEquals(expiringToken, sut.authorizationFromCache?.toString())
+    }
+
+    @Test
+    fun loadAuthorization_fromManyThreads_callsClientTokenProviderOnce() {
+        val clientTokenProvider = mockk<ClientTokenProvider>()
+        val providerCallbacks = CopyOnWriteArrayList<ClientTokenCallback>()
+        every { clientTokenProvider.getClientToken(any()) } answers {
+            providerCallbacks.add(firstArg())
+        }
+        sut = AuthorizationLoader(null, clientTokenProvider)
+
+        val threadCount = 8
+        val startSignal = CountDownLatch(1)
+        val resultLatch = CountDownLatch(threadCount)
+        val results = CopyOnWriteArrayList<Authorization>()
+        val threads = (1..threadCount).map {
+            thread {
+                startSignal.await()
+                sut.loadAuthorization { authorization, _ ->
+                    authorization?.let { results.add(it) }
+                    resultLatch.countDown()
+                }
+            }
+        }
+        startSignal.countDown()
+        threads.forEach { it.join() }
+
+        assertEquals(1, providerCallbacks.size)
+        providerCallbacks[0].onSuccess(Fixtures.BASE64_CLIENT_TOKEN)
+
+        assertTrue(resultLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(threadCount, results.size)
+        assertTrue(results.all { it === sut.authorizationFromCache })
+        assertEquals(1L, sut.getProviderCallCount())
+        assertEquals((threadCount - 1).toLong(), sut.getQueuedCallbackCount())
+        assertEquals(threadCount, sut.getMaxFanOut())
+    }
+
+    @Test
+    fun loadAuthorization_recordsClientTokenProviderLatency() {
+        var now = 1_000L
+        val clientTokenProvider = mockk<ClientTokenProvider>()
+        val providerCallbackSlot = slot<ClientTokenCallback>()
+        every { clientTokenProvider.getClientToken(capture(providerCallbackSlot)) } returns Unit
+        sut = AuthorizationLoader(null, clientTokenProvider) { now }
+
+        sut.loadAuthorization(mockk(relaxed = true))
+        now += 250
+        providerCallbackSlot.captured.onSuccess(Fixtures.BASE64_CLIENT_TOKEN)
+
+        sut.invalidateClientToken()
+        sut.loadAuthorization(mockk(relaxed = true))
+        now += 50
+        providerCallbackSlot.captured.onFailure(Exception("error"))
+
+        assertEquals(2L, sut.getProviderCallCount())
+        assertEquals(150L, sut.getAverageProviderLatencyMillis())
+        assertEquals(250L, sut.getMaxProviderLatencyMillis())
+        assertEquals(0L, sut.getQueuedCallbackCount())
+        assertEquals(1, sut.getMaxFanOut())
+    }
+
+    private fun clientTokenExpiringAt(expiresAtMillis: Long): String {
+        val flags = Base64.URL_SAFE or Base64.NO_PADDING or Base64.NO_WRAP
+        val claims = JSONObject().put("exp", expiresAtMillis / 1000).toString()
+        val fingerprint = "header." + Base64.encodeToString(claims.toByteArray(), flags) + ".signature"
+        val clientToken = JSONObject()
+            .put("configUrl", "client_api_configuration_url")
+            .put("authorizationFingerprint", fingerprint)
+            .toString()
+        return Base64.encodeToString(clientToken.toByteArray(), Base64.NO_WRAP)
+    }
+}
@@ -9,16 +9,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.net.Uri;
+import android.os.Looper;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.test.core.app.ApplicationProvider;
@@ -30,8 +35,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+
 @RunWith(RobolectricTestRunner.class)
 public class BraintreeClientUnitTest {
 
@@ -109,6 +119,25 @@ public class BraintreeClientUnitTest {
         verify(callback).onResult(configuration, null);
     }
 
+    @Test
+    public void prefetch_loadsConfigurationAndRunsStagesOnParamsScheduler() throws JSONException {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS))
+                .build();
+        Scheduler scheduler = mock(Scheduler.class);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader)
+                .scheduler(scheduler);
+        BraintreeClient sut = new BraintreeClient(params);
+        sut.prefetch();
+
+        verify(configurationLoader).loadConfiguration(same(authorization), any(ConfigurationLoaderCallback.class));
+        verify(scheduler).runOnBackground(any(Runnable.class), eq(Scheduler.PRIORITY_LOW));
+    }
+
     @Test
     public void getConfiguration_forwardsAuthorizationLoaderError() {
         Exception authFetchError = new Exception("auth fetch error");
@@ -241,6 +270,64 @@ public class BraintreeClientUnitTest {
         verify(braintreeHttpClient).post(eq("sample-url"), eq("{}"), same(configuration), same(authorization), same(httpResponseCallback));
     }
 
+    @Test
+    public void sendGraphQLPOST_withTimeout_forwardsCancellationTokenToGraphQLClient() {
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        CancellationToken cancellationToken = sut.sendGraphQLPOST("{}", 5000, httpResponseCallback);
+
+        verify(braintreeGraphQLClient).post(eq("{}"), same(configuration), same(authorization),
+                same(cancellationToken), same(httpResponseCallback));
+    }
+
+    @Test
+    public void sendGraphQLPOST_withTimeout_whenDeadlineHasPassed_failsWithoutLoadingConfiguration() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        sut.sendGraphQLPOST("{}", 0, httpResponseCallback);
+
+        verify(httpResponseCallback).onResult((String) isNull(), any(SocketTimeoutException.class));
+        verify(configurationLoader, never()).loadConfiguration(any(Authorization.class), any(ConfigurationLoaderCallback.class));
+        verifyZeroInteractions(braintreeGraphQLClient);
+    }
+
+    @Test
+    public void sendGraphQLPOST_withTimeout_whenCancelledWhileLoadingConfiguration_failsWithoutSending() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        CancellationToken cancellationToken = sut.sendGraphQLPOST("{}", 5000, httpResponseCallback);
+
+        ArgumentCaptor<ConfigurationLoaderCallback> captor = ArgumentCaptor.forClass(ConfigurationLoaderCallback.class);
+        verify(configurationLoader).loadConfiguration(same(authorization), captor.capture());
+        cancellationToken.cancel();
+        captor.getValue().onResult(mock(Configuration.class), null);
+
+        verify(httpResponseCallback).onResult((String) isNull(), any(RequestCancelledException.class));
+        verifyZeroInteractions(braintreeGraphQLClient);
+    }
+
     @Test
     public void sendPOST_onAuthorizationFailure_forwardsErrorToCallback() {
         Exception authError = new Exception("authorization error");
@@ -277,6 +364,79 @@ public class BraintreeClientUnitTest {
         verify(httpResponseCallback).onResult(null, exception);
     }
 
+    @Test
+    public void sendPOST_onAuthenticationError_refreshesAuthorizationAndReplaysRequest() {
+        final Authorization refreshedAuthorization = mock(Authorization.class);
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        when(authorizationLoader.hasClientTokenProvider()).thenReturn(true);
+        stubRefreshAuthorization(authorizationLoader, refreshedAuthorization);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+        stubHttpPost(authorization, null, new AuthenticationException("expired"));
+        stubHttpPost(refreshedAuthorization, "response", null);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        sut.sendPOST("sample-url", "{}", httpResponseCallback);
+
+        verify(authorizationLoader).refreshAuthorization(same(authorization), any(AuthorizationCallback.class));
+        verify(httpResponseCallback).onResult("response", null);
+    }
+
+    @Test
+    public void sendPOST_onRepeatedAuthenticationError_replaysOnlyOnce() {
+        final Authorization refreshedAuthorization = mock(Authorization.class);
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        when(authorizationLoader.hasClientTokenProvider()).thenReturn(true);
+        stubRefreshAuthorization(authorizationLoader, refreshedAuthorization);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+        AuthenticationException authError = new AuthenticationException("expired");
+        stubHttpPost(null, null, authError);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        sut.sendPOST("sample-url", "{}", httpResponseCallback);
+
+        verify(authorizationLoader, times(1)).refreshAuthorization(any(Authorization.class), any(AuthorizationCallback.class));
+        verify(braintreeHttpClient, times(2)).post(eq("sample-url"), eq("{}"), same(configuration), any(Authorization.class), any(HttpResponseCallback.class));
+        verify(httpResponseCallback).onResult(null, authError);
+    }
+
+    @Test
+    public void sendPOST_onAuthenticationErrorWithoutClientTokenProvider_forwardsError() {
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+        AuthenticationException authError = new AuthenticationException("expired");
+        stubHttpPost(null, null, authError);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        HttpResponseCallback httpResponseCallback = mock(HttpResponseCallback.class);
+        sut.sendPOST("sample-url", "{}", httpResponseCallback);
+
+        verify(authorizationLoader, never()).refreshAuthorization(any(Authorization.class), any(AuthorizationCallback.class));
+        verify(httpResponseCallback).onResult(null, authError);
+    }
+
     @Test
     public void sendGraphQLPOST_onGetConfigurationSuccess_forwardsRequestToHttpClient() {
         Configuration configuration = mock(Configuration.class);
@@ -332,6 +492,171 @@ public class BraintreeClientUnitTest {
         verify(httpResponseCallback).onResult(null, exception);
     }
 
+    @Test
+    public void getConfigurationAsync_completesWithConfiguration() throws Exception {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        BraintreeFuture<Configuration> future = sut.getConfigurationAsync();
+
+        assertSame(configuration, future.get());
+        ArgumentCaptor<ConfigurationLoaderCallback> captor = ArgumentCaptor.forClass(ConfigurationLoaderCallback.class);
+        verify(configurationLoader).loadConfiguration(same(authorization), captor.capture());
+        assertTrue(captor.getValue() instanceof WorkerThreadCallback);
+    }
+
+    @Test
+    public void getConfigurationAsync_forwardsAuthorizationLoaderError() throws InterruptedException {
+        Exception authFetchError = new Exception("auth fetch error");
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorizationError(authFetchError)
+                .build();
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        try {
+            sut.getConfigurationAsync().get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(authFetchError, e.getCause());
+        }
+        verifyZeroInteractions(configurationLoader);
+    }
+
+    @Test
+    public void getConfigurationAsync_notifiesCallbackOnMainThread() throws JSONException {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+        Scheduler scheduler = mock(Scheduler.class);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader)
+                .scheduler(scheduler);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        final ConfigurationCallback callback = mock(ConfigurationCallback.class);
+        sut.getConfigurationAsync().addCallback(new BraintreeFutureCallback<Configuration>() {
+            @Override
+            public void onResult(Configuration result, Exception error) {
+                callback.onResult(result, error);
+            }
+        });
+        verifyZeroInteractions(callback);
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).runOnMain(captor.capture());
+        captor.getValue().run();
+        verify(callback).onResult(configuration, null);
+    }
+
+    @Test
+    public void getConfigurationAsync_withoutParamsScheduler_notifiesCallbackOnMainLooper() throws JSONException {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        final ConfigurationCallback callback = mock(ConfigurationCallback.class);
+        sut.getConfigurationAsync().addCallback(new BraintreeFutureCallback<Configuration>() {
+            @Override
+            public void onResult(Configuration result, Exception error) {
+                callback.onResult(result, error);
+            }
+        });
+
+        shadowOf(Looper.getMainLooper()).idle();
+        verify(callback).onResult(configuration, null);
+    }
+
+    @Test
+    public void sendGETAsync_sendsRequestWithWorkerThreadCallback() throws Exception {
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        BraintreeFuture<String> future = sut.sendGETAsync("sample-url");
+
+        ArgumentCaptor<HttpResponseCallback> captor = ArgumentCaptor.forClass(HttpResponseCallback.class);
+        verify(braintreeHttpClient).get(eq("sample-url"), same(configuration), same(authorization), captor.capture());
+        assertTrue(captor.getValue() instanceof WorkerThreadCallback);
+
+        captor.getValue().onResult("response", null);
+        assertEquals("response", future.get());
+    }
+
+    @Test
+    public void sendGraphQLPOSTAsync_forwardsConfigurationError() throws InterruptedException {
+        Exception configError = new Exception("configuration error");
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configurationError(configError)
+                .build();
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        try {
+            sut.sendGraphQLPOSTAsync("{}").get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(configError, e.getCause());
+        }
+        verifyZeroInteractions(braintreeGraphQLClient);
+    }
+
+    @Test
+    public void sendPOSTAsync_onAuthenticationError_replaysRequestOnWorkerThread() throws Exception {
+        final Authorization refreshedAuthorization = mock(Authorization.class);
+        Configuration configuration = mock(Configuration.class);
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        when(authorizationLoader.hasClientTokenProvider()).thenReturn(true);
+        stubRefreshAuthorization(authorizationLoader, refreshedAuthorization);
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+        stubHttpPost(authorization, null, new AuthenticationException("expired"));
+        stubHttpPost(refreshedAuthorization, "response", null);
+
+        BraintreeClientParams params = createDefaultParams(configurationLoader, authorizationLoader);
+        BraintreeClient sut = new BraintreeClient(params);
+
+        BraintreeFuture<String> future = sut.sendPOSTAsync("sample-url", "{}");
+
+        assertEquals("response", future.get());
+        ArgumentCaptor<HttpResponseCallback> captor = ArgumentCaptor.forClass(HttpResponseCallback.class);
+        verify(braintreeHttpClient).post(eq("sample-url"), eq("{}"), same(configuration), same(authorization), captor.capture());
+        assertTrue(captor.getValue() instanceof WorkerThreadCallback);
+    }
+
     @Test
     public void sendAnalyticsEvent_sendsEventToAnalyticsClient() throws JSONException {
         Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ANALYTICS);
@@ -608,6 +933,32 @@ public class BraintreeClientUnitTest {
         verify(analyticsClient).reportCrash(applicationContext, "session-id", IntegrationType.CUSTOM, authorization);
     }
 
+    private static void stubRefreshAuthorization(AuthorizationLoader authorizationLoader, final Authorization refreshedAuthorization) {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                AuthorizationCallback callback = (AuthorizationCallback) invocation.getArguments()[1];
+                callback.onAuthorizationResult(refreshedAuthorization, null);
+                return null;
+            }
+        }).when(authorizationLoader).refreshAuthorization(any(Authorization.class), any(AuthorizationCallback.class));
+    }
+
+    /**
+     * Stub POSTs sent with {@code authorization}, or with any authorization if it is null.
+     */
+    private void stubHttpPost(Authorization authorization, final String responseBody, final Exception error) {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                HttpResponseCallback callback = (HttpResponseCallback) invocation.getArguments()[4];
+                callback.onResult(responseBody, error);
+                return null;
+            }
+        }).when(braintreeHttpClient).post(eq("sample-url"), eq("{}"), any(Configuration.class),
+                authorization == null ? any(Authorization.class) : same(authorization), any(HttpResponseCallback.class));
+    }
+
     private BraintreeClientParams createDefaultParams(ConfigurationLoader configurationLoader, AuthorizationLoader authorizationLoader) {
         return new BraintreeClientParams()
                 .authorizationLoader(authorizationLoader)
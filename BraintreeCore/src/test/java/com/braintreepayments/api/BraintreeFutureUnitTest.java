@@ -0,0 +1,272 @@
+package com.braintreepayments.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class BraintreeFutureUnitTest {
+
+    private List<Runnable> mainThreadRunnables;
+    private Scheduler scheduler;
+
+    @Before
+    public void beforeEach() {
+        mainThreadRunnables = new ArrayList<>();
+        scheduler = new Scheduler() {
+            @Override
+            public void runOnMain(Runnable runnable) {
+                mainThreadRunnables.add(runnable);
+            }
+
+            @Override
+            public void runOnBackground(Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            public void runOnBackground(Runnable runnable, int priority) {
+                runnable.run();
+            }
+
+            @Override
+            public void runOnBackground(Runnable runnable, int priority, long delayMillis) {
+                runnable.run();
+            }
+        };
+    }
+
+    @Test
+    public void complete_notifiesCallbackOnMainThread() {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        sut.addCallback(callback);
+
+        assertTrue(sut.complete("result"));
+        assertEquals(0, callback.callCount);
+
+        flushMainThread();
+        assertEquals(1, callback.callCount);
+        assertEquals("result", callback.result);
+        assertNull(callback.error);
+    }
+
+    @Test
+    public void addCallback_whenAlreadyDone_postsResultToMainThread() {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        sut.complete("result");
+
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        sut.addCallback(callback);
+        assertEquals(0, callback.callCount);
+
+        flushMainThread();
+        assertEquals("result", callback.result);
+    }
+
+    @Test
+    public void fail_notifiesCallbackWithError() {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        sut.addCallback(callback);
+
+        Exception error = new Exception("error");
+        sut.fail(error);
+        flushMainThread();
+
+        assertNull(callback.result);
+        assertSame(error, callback.error);
+    }
+
+    @Test
+    public void complete_whenAlreadyDone_keepsFirstResult() throws Exception {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+
+        assertTrue(sut.complete("first"));
+        assertFalse(sut.complete("second"));
+        assertFalse(sut.fail(new Exception("error")));
+
+        assertEquals("first", sut.get());
+    }
+
+    @Test
+    public void get_whenFailed_throwsExecutionExceptionWithCause() throws InterruptedException {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        Exception error = new Exception("error");
+        sut.fail(error);
+
+        try {
+            sut.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void get_waitsForResultFromAnotherThread() throws Exception {
+        final BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sut.complete("result");
+            }
+        });
+        thread.start();
+
+        assertEquals("result", sut.get(5, TimeUnit.SECONDS));
+        thread.join();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void get_withTimeout_whenNotDone_throwsTimeoutException() throws Exception {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        sut.get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void cancel_notifiesCallbackWithCancellationException() {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        sut.addCallback(callback);
+
+        assertTrue(sut.cancel(false));
+        flushMainThread();
+
+        assertTrue(sut.isCancelled());
+        assertTrue(sut.isDone());
+        assertTrue(callback.error instanceof CancellationException);
+        assertFalse(sut.complete("result"));
+    }
+
+    @Test
+    public void cancel_whenAlreadyDone_returnsFalse() {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        sut.complete("result");
+
+        assertFalse(sut.cancel(true));
+        assertFalse(sut.isCancelled());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void get_whenCancelled_throwsCancellationException() throws Exception {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        sut.cancel(false);
+        sut.get();
+    }
+
+    @Test
+    public void thenApply_transformsResultWithoutMainThreadHop() throws Exception {
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        BraintreeFuture<Integer> next = sut.thenApply(new BraintreeFuture.Transformation<String, Integer>() {
+            @Override
+            public Integer apply(String value) {
+                return value.length();
+            }
+        });
+
+        sut.complete("result");
+
+        assertTrue(next.isDone());
+        assertEquals(Integer.valueOf(6), next.get());
+        assertTrue(mainThreadRunnables.isEmpty());
+    }
+
+    @Test
+    public void thenApply_whenTransformationThrows_failsNextFuture() throws InterruptedException {
+        final Exception error = new Exception("error");
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        BraintreeFuture<Integer> next = sut.thenApply(new BraintreeFuture.Transformation<String, Integer>() {
+            @Override
+            public Integer apply(String value) throws Exception {
+                throw error;
+            }
+        });
+
+        sut.complete("result");
+
+        try {
+            next.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void thenApply_whenFailed_skipsTransformation() throws InterruptedException {
+        final List<String> appliedValues = new ArrayList<>();
+        Exception error = new Exception("error");
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        BraintreeFuture<String> next = sut.thenApply(new BraintreeFuture.Transformation<String, String>() {
+            @Override
+            public String apply(String value) {
+                appliedValues.add(value);
+                return value;
+            }
+        });
+
+        sut.fail(error);
+
+        assertTrue(appliedValues.isEmpty());
+        try {
+            next.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void thenCompose_completesWithResultOfNextStage() throws Exception {
+        final BraintreeFuture<String> stage = new BraintreeFuture<>(scheduler);
+        BraintreeFuture<String> sut = new BraintreeFuture<>(scheduler);
+        BraintreeFuture<String> next = sut.thenCompose(new BraintreeFuture.Transformation<String, BraintreeFuture<String>>() {
+            @Override
+            public BraintreeFuture<String> apply(String value) {
+                return stage;
+            }
+        });
+
+        sut.complete("authorization");
+        assertFalse(next.isDone());
+
+        stage.complete("configuration");
+        assertEquals("configuration", next.get());
+        assertTrue(mainThreadRunnables.isEmpty());
+    }
+
+    private void flushMainThread() {
+        List<Runnable> runnables = new ArrayList<>(mainThreadRunnables);
+        mainThreadRunnables.clear();
+        for (Runnable runnable : runnables) {
+            runnable.run();
+        }
+    }
+
+    private static class RecordingCallback<T> implements BraintreeFutureCallback<T> {
+
+        private int callCount;
+        private T result;
+        private Exception error;
+
+        @Override
+        public void onResult(T result, Exception error) {
+            callCount++;
+            this.result = result;
+            this.error = error;
+        }
+    }
+}
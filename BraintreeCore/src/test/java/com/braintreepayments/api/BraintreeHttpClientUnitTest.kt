@@ -3,7 +3,9 @@ package com.braintreepayments.api
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.slot
+import io.mockk.verify
 import org.json.JSONException
+import org.json.JSONObject
 import org.junit.Assert.*
 import org.junit.Before
 import org.junit.Test
@@ -132,6 +134,69 @@ class BraintreeHttpClientUnitTest {
         assertEquals("token invalid", exception.message)
     }
 
+    @Test
+    fun getConditional_withValidators_addsConditionalHeaders() {
+        val tokenizationKey: Authorization = TokenizationKey(Fixtures.TOKENIZATION_KEY)
+        val httpRequestSlot = slot<HttpRequest>()
+        every {
+            httpClient.sendRequest(capture(httpRequestSlot), HttpClient.RETRY_MAX_3_TIMES, any())
+        } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        val validators = CacheValidators("\"etag\"", "Wed, 21 Oct 2015 07:28:00 GMT")
+        sut.getConditional(
+            "https://example.com/config", tokenizationKey, HttpClient.RETRY_MAX_3_TIMES, validators
+        ) { _, _, _ -> }
+
+        val httpRequest = httpRequestSlot.captured
+        assertEquals("\"etag\"", httpRequest.headers["If-None-Match"])
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", httpRequest.headers["If-Modified-Since"])
+        assertArrayEquals(
+            arrayOf("ETag", "Last-Modified"), httpRequest.capturedResponseHeaderNames
+        )
+    }
+
+    @Test
+    fun getConditional_withoutValidators_sendsUnconditionalRequest() {
+        val tokenizationKey: Authorization = TokenizationKey(Fixtures.TOKENIZATION_KEY)
+        val httpRequestSlot = slot<HttpRequest>()
+        every {
+            httpClient.sendRequest(capture(httpRequestSlot), HttpClient.RETRY_MAX_3_TIMES, any())
+        } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.getConditional(
+            "https://example.com/config", tokenizationKey, HttpClient.RETRY_MAX_3_TIMES, null
+        ) { _, _, _ -> }
+
+        val headers = httpRequestSlot.captured.headers
+        assertNull(headers["If-None-Match"])
+        assertNull(headers["If-Modified-Since"])
+    }
+
+    @Test
+    fun getConditional_forwardsResponseValidatorsToCallback() {
+        val tokenizationKey: Authorization = TokenizationKey(Fixtures.TOKENIZATION_KEY)
+        val httpRequestSlot = slot<HttpRequest>()
+        val httpCallbackSlot = slot<HttpResponseCallback>()
+        every {
+            httpClient.sendRequest(
+                capture(httpRequestSlot), HttpClient.RETRY_MAX_3_TIMES, capture(httpCallbackSlot)
+            )
+        } returns Unit
+
+        var result: CacheValidators? = null
+        val sut = BraintreeHttpClient(httpClient)
+        sut.getConditional(
+            "https://example.com/config", tokenizationKey, HttpClient.RETRY_MAX_3_TIMES, null
+        ) { _, validators, _ -> result = validators }
+
+        httpRequestSlot.captured.setResponseHeaders(mapOf("ETag" to "\"etag\""))
+        httpCallbackSlot.captured.onResult("{}", null)
+
+        assertEquals(CacheValidators("\"etag\"", null), result)
+    }
+
     @Test
     @Throws(Exception::class)
     fun postSync_withTokenizationKey_forwardsHttpRequestToHttpClient() {
@@ -261,6 +326,40 @@ class BraintreeHttpClientUnitTest {
         assertEquals("{}", String(httpRequest.data, StandardCharsets.UTF_8))
     }
 
+    @Test
+    fun postAsync_schedulesRequestWithHighPriority() {
+        val tokenizationKey: Authorization = TokenizationKey(Fixtures.TOKENIZATION_KEY)
+        val configuration = mockk<Configuration>()
+        every { configuration.clientApiUrl } returns "https://example.com"
+
+        val callback = mockk<HttpResponseCallback>()
+        val httpRequestSlot = slot<HttpRequest>()
+        every { httpClient.sendRequest(capture(httpRequestSlot), callback) } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.post("sample/path", "{}", configuration, tokenizationKey, callback)
+
+        assertEquals(Scheduler.PRIORITY_HIGH, httpRequestSlot.captured.priority)
+    }
+
+    @Test
+    fun postAsync_withPriority_schedulesRequestWithPriority() {
+        val tokenizationKey: Authorization = TokenizationKey(Fixtures.TOKENIZATION_KEY)
+        val configuration = mockk<Configuration>()
+        every { configuration.clientApiUrl } returns "https://example.com"
+
+        val callback = mockk<HttpResponseCallback>()
+        val httpRequestSlot = slot<HttpRequest>()
+        every { httpClient.sendRequest(capture(httpRequestSlot), callback) } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.post(
+            "sample/path", "{}", configuration, tokenizationKey, Scheduler.PRIORITY_LOW, callback
+        )
+
+        assertEquals(Scheduler.PRIORITY_LOW, httpRequestSlot.captured.priority)
+    }
+
     @Test
     @Throws(MalformedURLException::class, URISyntaxException::class)
     fun postAsync_withClientToken_forwardsHttpRequestToHttpClient() {
@@ -289,6 +388,49 @@ class BraintreeHttpClientUnitTest {
         assertEquals(expectedData, String(httpRequest.data, StandardCharsets.UTF_8))
     }
 
+    @Test
+    fun postAsync_withClientToken_addsAuthorizationFingerprintToExistingFields() {
+        val clientToken = Authorization.fromString(
+            FixturesHelper.base64Encode(Fixtures.CLIENT_TOKEN)
+        ) as ClientToken
+
+        val configuration = mockk<Configuration>()
+        every { configuration.clientApiUrl } returns "https://example.com"
+
+        val callback = mockk<HttpResponseCallback>()
+        val httpRequestSlot = slot<HttpRequest>()
+        every { httpClient.sendRequest(capture(httpRequestSlot), callback) } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.post("sample/path", """{"nonce":"abc","amount":{"value":"1.00"}}""", configuration, clientToken, callback)
+
+        val data = JSONObject(String(httpRequestSlot.captured.data, StandardCharsets.UTF_8))
+        assertEquals(clientToken.authorizationFingerprint, data.getString("authorizationFingerprint"))
+        assertEquals("abc", data.getString("nonce"))
+        assertEquals("1.00", data.getJSONObject("amount").getString("value"))
+    }
+
+    @Test
+    fun postAsync_withClientToken_replacesExistingAuthorizationFingerprint() {
+        val clientToken = Authorization.fromString(
+            FixturesHelper.base64Encode(Fixtures.CLIENT_TOKEN)
+        ) as ClientToken
+
+        val configuration = mockk<Configuration>()
+        every { configuration.clientApiUrl } returns "https://example.com"
+
+        val callback = mockk<HttpResponseCallback>()
+        val httpRequestSlot = slot<HttpRequest>()
+        every { httpClient.sendRequest(capture(httpRequestSlot), callback) } returns Unit
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.post("sample/path", """{"authorizationFingerprint":"stale"}""", configuration, clientToken, callback)
+
+        val data = JSONObject(String(httpRequestSlot.captured.data, StandardCharsets.UTF_8))
+        assertEquals(clientToken.authorizationFingerprint, data.getString("authorizationFingerprint"))
+        assertEquals(1, data.length())
+    }
+
     @Test
     fun postAsync_withNullConfiguration_andRelativeUrl_postsCallbackError() {
         val clientToken = Authorization.fromString(
@@ -349,6 +491,36 @@ class BraintreeHttpClientUnitTest {
         )
     }
 
+    @Test
+    fun postAsync_whenClientTokenAuthAndMalformedJSONObjectPayload_postsCallbackErrorWithoutSending() {
+        val configuration = mockk<Configuration>()
+        every { configuration.clientApiUrl } returns "https://example.com"
+
+        val clientToken =
+            Authorization.fromString(FixturesHelper.base64Encode(Fixtures.CLIENT_TOKEN))
+
+        val sut = BraintreeHttpClient(httpClient)
+        for (payload in listOf("{invalid}", """{"a":}""")) {
+            val exceptionSlot = slot<Exception>()
+            val callback = mockk<HttpResponseCallback>()
+            every { callback.onResult(null, capture(exceptionSlot)) } returns Unit
+
+            sut.post("sample/path", payload, configuration, clientToken, callback)
+
+            assertTrue(exceptionSlot.captured is JSONException)
+        }
+        verify(exactly = 0) { httpClient.sendRequest(any(), any<HttpResponseCallback>()) }
+    }
+
+    @Test(expected = JSONException::class)
+    fun post_whenClientTokenAuthAndMalformedJSONObjectPayload_throwsJSONException() {
+        val clientToken =
+            Authorization.fromString(FixturesHelper.base64Encode(Fixtures.CLIENT_TOKEN))
+
+        val sut = BraintreeHttpClient(httpClient)
+        sut.post("https://example.com/sample/path", "{invalid}", null, clientToken)
+    }
+
     @Test
     fun postAsync_withInvalidToken_forwardsExceptionToCallback() {
         val configuration = mockk<Configuration>()
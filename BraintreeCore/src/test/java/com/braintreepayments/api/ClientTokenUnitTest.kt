@@ -1,6 +1,8 @@
 package com.braintreepayments.api
 
+import android.util.Base64
 import com.braintreepayments.api.Authorization.Companion.fromString
+import org.json.JSONObject
 import org.junit.Assert.*
 import org.robolectric.RobolectricTestRunner
 import org.junit.Test
@@ -49,4 +51,23 @@ class ClientTokenUnitTest {
             fromString(FixturesHelper.base64Encode(Fixtures.CLIENT_TOKEN_WITH_CUSTOMER_ID_IN_AUTHORIZATION_FINGERPRINT)) as ClientToken
         assertEquals("fake-customer-123", clientToken.customerId)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun getExpiresAt_returnsNull_whenAuthorizationFingerprintIsNotJwt() {
+        val clientToken = fromString(Fixtures.BASE64_CLIENT_TOKEN) as ClientToken
+        assertNull(clientToken.expiresAt)
+    }
+
+    @Test
+    fun getExpiresAt_returnsExpiryFromJwtAuthorizationFingerprint() {
+        val flags = Base64.URL_SAFE or Base64.NO_PADDING or Base64.NO_WRAP
+        val claims = Base64.encodeToString("{\"exp\":1700000000}".toByteArray(), flags)
+        val clientTokenJson = JSONObject()
+            .put("configUrl", "client_api_configuration_url")
+            .put("authorizationFingerprint", "header.$claims.signature")
+            .toString()
+
+        val clientToken = fromString(FixturesHelper.base64Encode(clientTokenJson)) as ClientToken
+        assertEquals(1_700_000_000_000L, clientToken.expiresAt)
+    }
+}
@@ -1,11 +1,17 @@
 package com.braintreepayments.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,47 +33,314 @@ import java.util.concurrent.TimeUnit;
 public class ConfigurationCacheUnitTest {
 
     BraintreeSharedPreferences braintreeSharedPreferences;
+    ConfigurationSnapshotStore snapshotStore;
     Context context;
 
     @Before
     public void beforeEach() throws GeneralSecurityException, IOException {
         context = ApplicationProvider.getApplicationContext();
         braintreeSharedPreferences = mock(BraintreeSharedPreferences.class);
+        snapshotStore = mock(ConfigurationSnapshotStore.class);
     }
 
     @Test
-    public void saveConfiguration_savesConfigurationInSharedPrefs() throws JSONException {
+    public void saveConfiguration_writesSnapshotInsteadOfSharedPrefs() throws JSONException {
         Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
 
-        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences);
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
         sut.saveConfiguration(configuration, "cacheKey", 123L);
 
-        verify(braintreeSharedPreferences).putStringAndLong("cacheKey", configuration.toJson(), "cacheKey_timestamp", 123L);
+        verify(snapshotStore).write("cacheKey", configuration.getMerchantId(), null, configuration.toJson(), 123L);
+        verify(braintreeSharedPreferences, never()).putStringAndLong(anyString(), anyString(), anyString(), anyLong());
     }
 
     @Test
-    public void getConfiguration_returnsConfigurationFromSharedPrefs() throws JSONException {
+    public void getCachedConfiguration_returnsConfigurationFromSnapshot() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        when(snapshotStore.read("cacheKey"))
+                .thenReturn(new ConfigurationSnapshotStore.Snapshot(configuration.toJson(), 0));
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        ConfigurationCache.CachedConfiguration result =
+                sut.getCachedConfiguration("cacheKey", false, TimeUnit.MINUTES.toMillis(5) - 1);
+
+        assertEquals(configuration.toJson(), result.getConfiguration().toJson());
+        assertEquals(1, sut.getPersistentHitCount());
+        verify(braintreeSharedPreferences, never()).containsKey(anyString());
+    }
+
+    @Test
+    public void getMemoryCachedConfiguration_doesNotReadPersistedConfiguration() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        when(snapshotStore.read("cacheKey"))
+                .thenReturn(new ConfigurationSnapshotStore.Snapshot(configuration.toJson(), 0));
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+
+        assertNull(sut.getMemoryCachedConfiguration("cacheKey", true, 0));
+        verify(snapshotStore, never()).read(anyString());
+        verify(braintreeSharedPreferences, never()).containsKey(anyString());
+        assertEquals(0, sut.getMissCount());
+    }
+
+    @Test
+    public void getMemoryCachedConfiguration_returnsSavedConfiguration() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        assertSame(configuration, sut.getMemoryCachedConfiguration("cacheKey", false, 1).getConfiguration());
+        assertEquals(1, sut.getMemoryHitCount());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenSharedPrefsEntryExpires_returnsNull() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        when(braintreeSharedPreferences.containsKey("cacheKey_timestamp")).thenReturn(true);
+        when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(TimeUnit.MINUTES.toMillis(5));
+        when(braintreeSharedPreferences.getString("cacheKey", "")).thenReturn(configuration.toJson());
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+
+        assertNull(sut.getCachedConfiguration("cacheKey", false, TimeUnit.MINUTES.toMillis(20)));
+    }
+
+    @Test
+    public void clear_clearsMemoryAndSnapshots() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+        sut.clear();
+
+        verify(snapshotStore).clear();
+        assertNull(sut.getCachedConfiguration("cacheKey", false, 1000));
+    }
+
+    @Test
+    public void getCachedConfiguration_afterSave_returnsParsedConfigurationFromMemory() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        ConfigurationCache.CachedConfiguration result = sut.getCachedConfiguration("cacheKey", false, 1000);
+        assertSame(configuration, result.getConfiguration());
+        assertFalse(result.isStale());
+        assertEquals(1, sut.getMemoryHitCount());
+        verify(braintreeSharedPreferences, never()).getString(anyString(), anyString());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenOnlyPersisted_parsesOnceAndKeepsItInMemory() throws JSONException {
         Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
         when(braintreeSharedPreferences.containsKey("cacheKey_timestamp")).thenReturn(true);
         when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(0L);
         when(braintreeSharedPreferences.getString("cacheKey", "")).thenReturn(configuration.toJson());
 
-        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences);
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        ConfigurationCache.CachedConfiguration first = sut.getCachedConfiguration("cacheKey", false, 1000);
+        ConfigurationCache.CachedConfiguration second = sut.getCachedConfiguration("cacheKey", false, 2000);
+
+        assertEquals(configuration.toJson(), first.getConfiguration().toJson());
+        assertSame(first.getConfiguration(), second.getConfiguration());
+        assertEquals(1, sut.getPersistentHitCount());
+        assertEquals(1, sut.getMemoryHitCount());
+        verify(braintreeSharedPreferences, times(1)).getString("cacheKey", "");
+    }
+
+    @Test
+    public void getCachedConfiguration_whenExpiredAndStaleAllowed_returnsStaleConfiguration() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
         sut.saveConfiguration(configuration, "cacheKey", 0);
 
-        assertEquals(configuration.toJson(), sut.getConfiguration("cacheKey", TimeUnit.MINUTES.toMillis(5) - 1));
+        ConfigurationCache.CachedConfiguration result =
+                sut.getCachedConfiguration("cacheKey", true, TimeUnit.MINUTES.toMillis(20));
+        assertSame(configuration, result.getConfiguration());
+        assertTrue(result.isStale());
+        assertEquals(1, sut.getStaleHitCount());
     }
 
     @Test
-    public void getConfiguration_whenCacheEntryExpires_returnsNull() throws JSONException {
+    public void getCachedConfiguration_whenExpiredAndStaleNotAllowed_returnsNull() throws JSONException {
         Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        assertNull(sut.getCachedConfiguration("cacheKey", false, TimeUnit.MINUTES.toMillis(20)));
+        assertEquals(1, sut.getMissCount());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenOlderThanMaxStaleness_returnsNull() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        assertNull(sut.getCachedConfiguration("cacheKey", true, ConfigurationCache.MAX_STALENESS));
+        assertEquals(1, sut.getMissCount());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenPersistedJsonIsInvalid_returnsNull() {
         when(braintreeSharedPreferences.containsKey("cacheKey_timestamp")).thenReturn(true);
-        when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(TimeUnit.MINUTES.toMillis(5));
+        when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(0L);
+        when(braintreeSharedPreferences.getString("cacheKey", "")).thenReturn("not json");
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+
+        assertNull(sut.getCachedConfiguration("cacheKey", true, 1000));
+        assertEquals(1, sut.getMissCount());
+    }
+
+    @Test
+    public void clearMemoryCache_readsFromPersistentStorageOnNextLookup() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        when(braintreeSharedPreferences.containsKey("cacheKey_timestamp")).thenReturn(true);
+        when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(0L);
         when(braintreeSharedPreferences.getString("cacheKey", "")).thenReturn(configuration.toJson());
 
-        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences);
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
         sut.saveConfiguration(configuration, "cacheKey", 0);
+        sut.clearMemoryCache();
+
+        assertNotNull(sut.getCachedConfiguration("cacheKey", false, 1000));
+        assertEquals(1, sut.getPersistentHitCount());
+        assertEquals(0, sut.getMemoryHitCount());
+    }
+
+    @Test
+    public void saveConfiguration_trimsSnapshots() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        verify(snapshotStore).trim(ConfigurationCache.MAX_ENTRIES,
+                ConfigurationCache.MAX_ENTRIES_PER_MERCHANT, ConfigurationCache.MAX_STALENESS);
+    }
+
+    @Test
+    public void saveConfiguration_evictsLeastRecentlyUsedEntryForSameMerchant() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "clientToken1", 0);
+        sut.saveConfiguration(configuration, "clientToken2", 0);
+        sut.getCachedConfiguration("clientToken1", false, 1000);
+        sut.saveConfiguration(configuration, "clientToken3", 0);
+
+        assertEquals(ConfigurationCache.MAX_ENTRIES_PER_MERCHANT, sut.getMemoryEntryCount());
+        assertNotNull(sut.getCachedConfiguration("clientToken1", false, 1000));
+        assertNull(sut.getCachedConfiguration("clientToken2", false, 1000));
+        assertNotNull(sut.getCachedConfiguration("clientToken3", false, 1000));
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void saveConfiguration_keepsAtMostMaxEntriesInMemory() throws JSONException {
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        for (int i = 0; i <= ConfigurationCache.MAX_ENTRIES; i++) {
+            Configuration configuration = new TestConfigurationBuilder()
+                    .merchantId("merchant" + i)
+                    .buildConfiguration();
+            sut.saveConfiguration(configuration, "cacheKey" + i, 0);
+        }
+
+        assertEquals(ConfigurationCache.MAX_ENTRIES, sut.getMemoryEntryCount());
+        assertNull(sut.getCachedConfiguration("cacheKey0", false, 1000));
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenOlderThanMaxStaleness_evictsFromMemory() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", 0);
+
+        assertNull(sut.getCachedConfiguration("cacheKey", true, ConfigurationCache.MAX_STALENESS));
+        assertEquals(0, sut.getMemoryEntryCount());
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void getCachedConfiguration_whenOnlyInSharedPrefs_movesEntryToSnapshot() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        when(braintreeSharedPreferences.containsKey("cacheKey_timestamp")).thenReturn(true);
+        when(braintreeSharedPreferences.getLong("cacheKey_timestamp")).thenReturn(100L);
+        when(braintreeSharedPreferences.getString("cacheKey", "")).thenReturn(configuration.toJson());
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.getCachedConfiguration("cacheKey", false, 1000);
+
+        verify(snapshotStore).write("cacheKey", configuration.getMerchantId(), null, configuration.toJson(), 100L);
+        verify(braintreeSharedPreferences).remove("cacheKey", "cacheKey_timestamp");
+    }
+
+    @Test
+    public void getPersistedEntryCountAndSize_forwardSnapshotStoreTotals() {
+        when(snapshotStore.getEntryCount()).thenReturn(3);
+        when(snapshotStore.getSizeInBytes()).thenReturn(4096L);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+
+        assertEquals(3, sut.getPersistedEntryCount());
+        assertEquals(4096L, sut.getPersistedSizeInBytes());
+    }
+
+    @Test
+    public void saveConfiguration_withValidators_keepsThemWithEntry() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        CacheValidators validators = new CacheValidators("\"etag\"", null);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", validators, 0);
+
+        verify(snapshotStore).write("cacheKey", configuration.getMerchantId(), validators, configuration.toJson(), 0L);
+        assertSame(validators, sut.getCachedConfiguration("cacheKey", true, TimeUnit.MINUTES.toMillis(20)).getValidators());
+    }
+
+    @Test
+    public void getCachedConfiguration_returnsValidatorsFromSnapshot() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        CacheValidators validators = new CacheValidators(null, "Wed, 21 Oct 2015 07:28:00 GMT");
+        when(snapshotStore.read("cacheKey"))
+                .thenReturn(new ConfigurationSnapshotStore.Snapshot(configuration.toJson(), 0, validators));
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+
+        assertSame(validators, sut.getCachedConfiguration("cacheKey", false, 1000).getValidators());
+    }
+
+    @Test
+    public void refreshConfiguration_makesStaleEntryFreshAgain() throws JSONException {
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN);
+        CacheValidators validators = new CacheValidators("\"etag\"", null);
+        long refreshedAt = TimeUnit.MINUTES.toMillis(20);
+
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
+        sut.saveConfiguration(configuration, "cacheKey", validators, 0);
+
+        ConfigurationCache.CachedConfiguration refreshed = sut.refreshConfiguration("cacheKey", refreshedAt);
+        assertSame(configuration, refreshed.getConfiguration());
+        assertFalse(refreshed.isStale());
+        verify(snapshotStore).write("cacheKey", configuration.getMerchantId(), validators, configuration.toJson(), refreshedAt);
+
+        ConfigurationCache.CachedConfiguration result = sut.getCachedConfiguration("cacheKey", false, refreshedAt + 1);
+        assertNotNull(result);
+        assertSame(validators, result.getValidators());
+    }
+
+    @Test
+    public void refreshConfiguration_whenEntryMissing_returnsNull() {
+        ConfigurationCache sut = new ConfigurationCache(braintreeSharedPreferences, snapshotStore);
 
-        assertNull(sut.getConfiguration("cacheKey", TimeUnit.MINUTES.toMillis(20)));
+        assertNull(sut.refreshConfiguration("cacheKey", 1000));
     }
-}
\ No newline at end of file
+}
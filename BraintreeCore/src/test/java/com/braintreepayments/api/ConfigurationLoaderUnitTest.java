@@ -1,13 +1,17 @@
 package com.braintreepayments.api;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -19,6 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.robolectric.RobolectricTestRunner;
 
@@ -27,6 +33,7 @@ import org.robolectric.RobolectricTestRunner;
 public class ConfigurationLoaderUnitTest {
 
     private ConfigurationCache configurationCache;
+    private Scheduler scheduler;
 
     private BraintreeHttpClient braintreeHttpClient;
     private ConfigurationLoaderCallback callback;
@@ -38,6 +45,17 @@ public class ConfigurationLoaderUnitTest {
         configurationCache = mock(ConfigurationCache.class);
         authorization = mock(Authorization.class);
 
+        scheduler = mock(Scheduler.class);
+        Answer<Void> runRunnable = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        };
+        doAnswer(runRunnable).when(scheduler).runOnBackground(any(Runnable.class), anyInt());
+        doAnswer(runRunnable).when(scheduler).runOnMain(any(Runnable.class));
+
         braintreeHttpClient = mock(BraintreeHttpClient.class);
         callback = mock(ConfigurationLoaderCallback.class);
     }
@@ -46,16 +64,16 @@ public class ConfigurationLoaderUnitTest {
     public void loadConfiguration_loadsConfigurationForTheCurrentEnvironment() {
         when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
         String expectedConfigUrl = "https://example.com/config?configVersion=3";
-        ArgumentCaptor<HttpResponseCallback> captor = ArgumentCaptor.forClass(HttpResponseCallback.class);
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
 
-        verify(braintreeHttpClient).get(eq(expectedConfigUrl), (Configuration) isNull(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), captor.capture());
+        verify(braintreeHttpClient).getConditional(eq(expectedConfigUrl), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
 
-        HttpResponseCallback httpResponseCallback = captor.getValue();
-        httpResponseCallback.onResult(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN, null);
+        ConditionalHttpResponseCallback httpResponseCallback = captor.getValue();
+        httpResponseCallback.onResult(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN, null, null);
 
         verify(callback).onResult(any(Configuration.class), (Exception) isNull());
     }
@@ -65,33 +83,33 @@ public class ConfigurationLoaderUnitTest {
         when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
         when(authorization.getBearer()).thenReturn("bearer");
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
         String expectedConfigUrl = "https://example.com/config?configVersion=3";
-        ArgumentCaptor<HttpResponseCallback> captor = ArgumentCaptor.forClass(HttpResponseCallback.class);
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
 
-        verify(braintreeHttpClient).get(eq(expectedConfigUrl), (Configuration) isNull(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), captor.capture());
+        verify(braintreeHttpClient).getConditional(eq(expectedConfigUrl), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
 
-        HttpResponseCallback httpResponseCallback = captor.getValue();
-        httpResponseCallback.onResult(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN, null);
+        ConditionalHttpResponseCallback httpResponseCallback = captor.getValue();
+        httpResponseCallback.onResult(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN, null, null);
 
         String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
-        verify(configurationCache).saveConfiguration(any(Configuration.class), eq(cacheKey));
+        verify(configurationCache).saveConfiguration(any(Configuration.class), eq(cacheKey), (CacheValidators) isNull());
     }
 
     @Test
     public void loadConfiguration_onJSONParsingError_forwardsExceptionToErrorResponseListener() {
         when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
-        ArgumentCaptor<HttpResponseCallback> captor = ArgumentCaptor.forClass(HttpResponseCallback.class);
-        verify(braintreeHttpClient).get(anyString(), (Configuration) isNull(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), captor.capture());
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
 
-        HttpResponseCallback httpResponseCallback = captor.getValue();
-        httpResponseCallback.onResult("not json", null);
+        ConditionalHttpResponseCallback httpResponseCallback = captor.getValue();
+        httpResponseCallback.onResult("not json", null, null);
 
         verify(callback).onResult((Configuration) isNull(), any(JSONException.class));
     }
@@ -100,15 +118,15 @@ public class ConfigurationLoaderUnitTest {
     public void loadConfiguration_onHttpError_forwardsExceptionToErrorResponseListener() {
         when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
-        ArgumentCaptor<HttpResponseCallback> httpResponseCaptor = ArgumentCaptor.forClass(HttpResponseCallback.class);
-        verify(braintreeHttpClient).get(anyString(), (Configuration) isNull(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), httpResponseCaptor.capture());
+        ArgumentCaptor<ConditionalHttpResponseCallback> httpResponseCaptor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), httpResponseCaptor.capture());
 
-        HttpResponseCallback httpResponseCallback = httpResponseCaptor.getValue();
+        ConditionalHttpResponseCallback httpResponseCallback = httpResponseCaptor.getValue();
         Exception httpError = new Exception("http error");
-        httpResponseCallback.onResult(null, httpError);
+        httpResponseCallback.onResult(null, null, httpError);
 
         ArgumentCaptor<Exception> errorCaptor = ArgumentCaptor.forClass(Exception.class);
         verify(callback).onResult((Configuration) isNull(), errorCaptor.capture());
@@ -122,7 +140,7 @@ public class ConfigurationLoaderUnitTest {
     public void loadConfiguration_whenInvalidToken_forwardsExceptionToCallback() {
         Authorization authorization = new InvalidAuthorization("invalid", "token invalid");
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
         ArgumentCaptor<BraintreeException> captor = ArgumentCaptor.forClass(BraintreeException.class);
@@ -133,17 +151,234 @@ public class ConfigurationLoaderUnitTest {
     }
 
     @Test
-    public void loadConfiguration_whenCachedConfigurationAvailable_loadsConfigurationFromCache() {
+    public void loadConfiguration_whenCachedConfigurationAvailable_loadsConfigurationFromCache() throws JSONException {
         String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
 
         when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
         when(authorization.getBearer()).thenReturn("bearer");
-        when(configurationCache.getConfiguration(cacheKey)).thenReturn(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        Configuration cachedConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(cachedConfiguration, 0, null, false));
 
-        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
         sut.loadConfiguration(authorization, callback);
 
-        verify(braintreeHttpClient, times(0)).get(anyString(), (Configuration) isNull(), same(authorization), anyInt(), any(HttpResponseCallback.class));
-        verify(callback).onResult(any(Configuration.class), (Exception) isNull());
+        verify(braintreeHttpClient, times(0)).getConditional(anyString(), same(authorization), anyInt(), (CacheValidators) any(), any(ConditionalHttpResponseCallback.class));
+        verify(callback).onResult(same(cachedConfiguration), (Exception) isNull());
+    }
+
+    @Test
+    public void loadConfiguration_whenConfigurationCachedInMemory_returnsItWithoutBackgroundWork() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration cachedConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.getMemoryCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(cachedConfiguration, 0, null, false));
+
+        Scheduler scheduler = mock(Scheduler.class);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        verify(callback).onResult(same(cachedConfiguration), (Exception) isNull());
+        verify(scheduler, never()).runOnBackground(any(Runnable.class), anyInt());
+        verify(configurationCache, never()).getCachedConfiguration(anyString(), eq(true));
+    }
+
+    @Test
+    public void loadConfiguration_whenNotCachedInMemory_readsPersistedConfigurationOnBackgroundThread() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration cachedConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(cachedConfiguration, 0, null, false));
+
+        Scheduler scheduler = mock(Scheduler.class);
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        verify(configurationCache, never()).getCachedConfiguration(anyString(), eq(true));
+        ArgumentCaptor<Runnable> backgroundCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).runOnBackground(backgroundCaptor.capture(), eq(Scheduler.PRIORITY_HIGH));
+
+        backgroundCaptor.getValue().run();
+        verify(callback, never()).onResult((Configuration) any(), (Exception) any());
+
+        ArgumentCaptor<Runnable> mainCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).runOnMain(mainCaptor.capture());
+        mainCaptor.getValue().run();
+        verify(callback).onResult(same(cachedConfiguration), (Exception) isNull());
+    }
+
+    @Test
+    public void loadConfiguration_whenCachedConfigurationIsStale_returnsItAndRefreshesCache() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration staleConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(staleConfiguration, 0, null, true));
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        verify(callback).onResult(same(staleConfiguration), (Exception) isNull());
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(eq("https://example.com/config?configVersion=3"), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+
+        captor.getValue().onResult(Fixtures.CONFIGURATION_WITHOUT_ACCESS_TOKEN, null, null);
+        verify(configurationCache).saveConfiguration(any(Configuration.class), eq(cacheKey), (CacheValidators) isNull());
+        verify(callback, times(1)).onResult(any(Configuration.class), (Exception) isNull());
+    }
+
+    @Test
+    public void loadConfiguration_whenStaleRefreshFails_doesNotNotifyCallbackAgain() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration staleConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(staleConfiguration, 0, null, true));
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+
+        captor.getValue().onResult(null, null, new Exception("http error"));
+        verify(callback, times(1)).onResult((Configuration) any(), (Exception) any());
+        verify(callback).onResult(same(staleConfiguration), (Exception) isNull());
+    }
+
+    @Test
+    public void loadConfiguration_whenCachedConfigurationIsStale_revalidatesWithItsValidators() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration staleConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        CacheValidators validators = new CacheValidators("\"etag\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(staleConfiguration, 0, validators, true));
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        verify(braintreeHttpClient).getConditional(eq("https://example.com/config?configVersion=3"), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), same(validators), any(ConditionalHttpResponseCallback.class));
+    }
+
+    @Test
+    public void loadConfiguration_savesResponseValidatorsToCache() {
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+
+        CacheValidators validators = new CacheValidators("\"etag\"", null);
+        captor.getValue().onResult(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN, validators, null);
+
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+        verify(configurationCache).saveConfiguration(any(Configuration.class), eq(cacheKey), same(validators));
+    }
+
+    @Test
+    public void loadConfiguration_whenStaleConfigurationNotModified_refreshesCacheWithoutSaving() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration staleConfiguration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        CacheValidators validators = new CacheValidators("\"etag\"", null);
+        when(configurationCache.getCachedConfiguration(cacheKey, true))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(staleConfiguration, 0, validators, true));
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), same(validators), captor.capture());
+
+        captor.getValue().onResult(null, null, new NotModifiedException());
+
+        verify(configurationCache).refreshConfiguration(cacheKey);
+        verify(configurationCache, times(0)).saveConfiguration(any(Configuration.class), anyString(), (CacheValidators) any());
+        verify(callback, times(1)).onResult((Configuration) any(), (Exception) any());
+    }
+
+    @Test
+    public void loadConfiguration_whenNotModified_returnsRefreshedConfiguration() throws JSONException {
+        String cacheKey = Base64.encodeToString(String.format("%s%s", "https://example.com/config?configVersion=3", "bearer").getBytes(), 0);
+
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+        Configuration configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+        when(configurationCache.refreshConfiguration(cacheKey))
+                .thenReturn(new ConfigurationCache.CachedConfiguration(configuration, 0, null, false));
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+
+        captor.getValue().onResult(null, null, new NotModifiedException());
+
+        verify(callback).onResult(same(configuration), (Exception) isNull());
+    }
+
+    @Test
+    public void loadConfiguration_whenNotModifiedAndNoLongerCached_forwardsConfigurationException() {
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+        when(authorization.getBearer()).thenReturn("bearer");
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+
+        captor.getValue().onResult(null, null, new NotModifiedException());
+
+        ArgumentCaptor<Exception> errorCaptor = ArgumentCaptor.forClass(Exception.class);
+        verify(callback).onResult((Configuration) isNull(), errorCaptor.capture());
+        assertTrue(errorCaptor.getValue() instanceof ConfigurationException);
+    }
+
+    @Test
+    public void loadConfiguration_withWorkerThreadCallback_fetchesWithWorkerThreadCallback() {
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, mock(WorkerThreadConfigurationLoaderCallback.class));
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+        assertTrue(captor.getValue() instanceof WorkerThreadCallback);
+    }
+
+    @Test
+    public void loadConfiguration_withMainThreadCallback_fetchesWithMainThreadCallback() {
+        when(authorization.getConfigUrl()).thenReturn("https://example.com/config");
+
+        ConfigurationLoader sut = new ConfigurationLoader(braintreeHttpClient, configurationCache, scheduler);
+        sut.loadConfiguration(authorization, callback);
+
+        ArgumentCaptor<ConditionalHttpResponseCallback> captor = ArgumentCaptor.forClass(ConditionalHttpResponseCallback.class);
+        verify(braintreeHttpClient).getConditional(anyString(), same(authorization), eq(HttpClient.RETRY_MAX_3_TIMES), (CacheValidators) isNull(), captor.capture());
+        assertFalse(captor.getValue() instanceof WorkerThreadCallback);
+    }
+
+    private interface WorkerThreadConfigurationLoaderCallback extends ConfigurationLoaderCallback, WorkerThreadCallback {
     }
 }
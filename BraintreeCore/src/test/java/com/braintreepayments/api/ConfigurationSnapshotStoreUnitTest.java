@@ -0,0 +1,260 @@
+package com.braintreepayments.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class ConfigurationSnapshotStoreUnitTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private ConfigurationSnapshotStore sut;
+
+    @Before
+    public void beforeEach() throws IOException {
+        directory = new File(temporaryFolder.getRoot(), "snapshots");
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+        sut = new ConfigurationSnapshotStore(directory, directExecutor);
+    }
+
+    @Test
+    public void write_thenRead_returnsConfigurationAndTimestamp() {
+        sut.write("cacheKey", "merchant", null, "{\"merchantId\":\"mérchant\"}", 123L);
+
+        ConfigurationSnapshotStore.Snapshot snapshot = sut.read("cacheKey");
+        assertNotNull(snapshot);
+        assertEquals("{\"merchantId\":\"mérchant\"}", snapshot.getConfigurationJson());
+        assertEquals(123L, snapshot.getTimestamp());
+    }
+
+    @Test
+    public void write_thenRead_returnsValidators() {
+        sut.write("cacheKey", "merchant", new CacheValidators("\"etag\"", "Wed, 21 Oct 2015 07:28:00 GMT"), "{}", 1L);
+
+        CacheValidators validators = sut.read("cacheKey").getValidators();
+        assertEquals("\"etag\"", validators.getETag());
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", validators.getLastModified());
+    }
+
+    @Test
+    public void write_withoutValidators_readsNullValidators() {
+        sut.write("cacheKey", "merchant", null, "{}", 1L);
+
+        assertNull(sut.read("cacheKey").getValidators());
+    }
+
+    @Test
+    public void write_replacesPreviousSnapshot() {
+        sut.write("cacheKey", "merchant", null, "{\"version\":1}", 1L);
+        sut.write("cacheKey", "merchant", null, "{\"version\":2}", 2L);
+
+        ConfigurationSnapshotStore.Snapshot snapshot = sut.read("cacheKey");
+        assertEquals("{\"version\":2}", snapshot.getConfigurationJson());
+        assertEquals(2L, snapshot.getTimestamp());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void read_whenNoSnapshot_returnsNull() {
+        assertNull(sut.read("cacheKey"));
+    }
+
+    @Test
+    public void read_whenCacheKeyDiffers_returnsNull() throws IOException {
+        byte[] snapshot = ConfigurationSnapshotStore.encode("otherKey", "merchant", null, "{}", 1L);
+        writeFile(sut.getFile("cacheKey"), snapshot);
+
+        assertNull(sut.read("cacheKey"));
+    }
+
+    @Test
+    public void write_whenCacheKeyHashCodesCollide_keepsBothSnapshots() {
+        // "Aa" and "BB" have the same String#hashCode
+        sut.write("Aa", "merchant1", null, "{\"version\":1}", 1L);
+        sut.write("BB", "merchant2", null, "{\"version\":2}", 1L);
+
+        assertEquals("{\"version\":1}", sut.read("Aa").getConfigurationJson());
+        assertEquals("{\"version\":2}", sut.read("BB").getConfigurationJson());
+        assertEquals(2, sut.getEntryCount());
+    }
+
+    @Test
+    public void read_whenBodyIsCorrupted_returnsNull() throws IOException {
+        sut.write("cacheKey", "merchant", null, "{\"merchantId\":\"merchant\"}", 1L);
+
+        RandomAccessFile file = new RandomAccessFile(sut.getFile("cacheKey"), "rw");
+        file.seek(file.length() - 2);
+        file.write('X');
+        file.close();
+
+        assertNull(sut.read("cacheKey"));
+    }
+
+    @Test
+    public void read_whenTruncated_returnsNull() throws IOException {
+        byte[] snapshot = ConfigurationSnapshotStore.encode("cacheKey", "merchant", null, "{\"merchantId\":\"merchant\"}", 1L);
+        byte[] truncated = new byte[snapshot.length - 4];
+        System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+        writeFile(sut.getFile("cacheKey"), truncated);
+
+        assertNull(sut.read("cacheKey"));
+    }
+
+    @Test
+    public void decode_whenSchemaVersionIsUnknown_returnsNull() throws IOException {
+        byte[] snapshot = ConfigurationSnapshotStore.encode("cacheKey", "merchant", null, "{}", 1L);
+        // schema version follows the 4 byte magic
+        snapshot[7] = (byte) (ConfigurationSnapshotStore.SCHEMA_VERSION + 1);
+
+        assertNull(ConfigurationSnapshotStore.decode(snapshot, "cacheKey"));
+    }
+
+    @Test
+    public void clear_deletesSnapshots() {
+        sut.write("cacheKey", "merchant", null, "{}", 1L);
+        sut.write("otherKey", "merchant", null, "{}", 1L);
+
+        sut.clear();
+
+        assertNull(sut.read("cacheKey"));
+        assertNull(sut.read("otherKey"));
+    }
+
+    @Test
+    public void clear_runsOnWriterThreadAfterPendingWrites() {
+        final List<Runnable> queuedTasks = new ArrayList<>();
+        Executor queueingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queuedTasks.add(runnable);
+            }
+        };
+        ConfigurationSnapshotStore sut = new ConfigurationSnapshotStore(directory, queueingExecutor);
+        sut.writeNow("cacheKey", "merchant", null, "{}", 1L);
+
+        sut.write("otherKey", "merchant", null, "{}", 1L);
+        sut.clear();
+        assertNotNull(sut.read("cacheKey"));
+
+        for (Runnable task : queuedTasks) {
+            task.run();
+        }
+        assertNull(sut.read("cacheKey"));
+        assertNull(sut.read("otherKey"));
+    }
+
+    @Test
+    public void writeNow_doesNotLeaveTemporaryFiles() {
+        assertTrue(sut.writeNow("cacheKey", "merchant", null, "{}", 1L));
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertFalse(files[0].getName().endsWith(".tmp"));
+    }
+
+    @Test
+    public void trimNow_deletesSnapshotsOlderThanMaxAge() {
+        sut.writeNow("oldKey", "merchant1", null, "{}", 0L);
+        sut.writeNow("newKey", "merchant2", null, "{}", 900L);
+
+        assertEquals(1, sut.trimNow(10, 10, 500L, 1000L));
+
+        assertNull(sut.read("oldKey"));
+        assertNotNull(sut.read("newKey"));
+    }
+
+    @Test
+    public void trimNow_keepsMostRecentlyUsedSnapshotsPerMerchant() {
+        sut.writeNow("key1", "merchant", null, "{}", 1L);
+        sut.writeNow("key2", "merchant", null, "{}", 1L);
+        sut.writeNow("key3", "merchant", null, "{}", 1L);
+        sut.writeNow("otherMerchantKey", "otherMerchant", null, "{}", 1L);
+        sut.getFile("key1").setLastModified(3000L);
+        sut.getFile("key2").setLastModified(1000L);
+        sut.getFile("key3").setLastModified(2000L);
+        sut.getFile("otherMerchantKey").setLastModified(1000L);
+
+        assertEquals(1, sut.trimNow(10, 2, Long.MAX_VALUE, 1L));
+
+        assertNotNull(sut.read("key1"));
+        assertNull(sut.read("key2"));
+        assertNotNull(sut.read("key3"));
+        assertNotNull(sut.read("otherMerchantKey"));
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void trimNow_doesNotGroupSnapshotsWithoutMerchantId() {
+        sut.writeNow("key1", null, null, "{}", 1L);
+        sut.writeNow("key2", null, null, "{}", 1L);
+        sut.writeNow("key3", "", null, "{}", 1L);
+
+        assertEquals(0, sut.trimNow(10, 1, Long.MAX_VALUE, 1L));
+        assertEquals(3, sut.getEntryCount());
+    }
+
+    @Test
+    public void trimNow_keepsAtMostMaxEntries() {
+        sut.writeNow("key1", "merchant1", null, "{}", 1L);
+        sut.writeNow("key2", "merchant2", null, "{}", 1L);
+        sut.writeNow("key3", "merchant3", null, "{}", 1L);
+        sut.getFile("key1").setLastModified(1000L);
+        sut.getFile("key2").setLastModified(3000L);
+        sut.getFile("key3").setLastModified(2000L);
+
+        assertEquals(1, sut.trimNow(2, 2, Long.MAX_VALUE, 1L));
+
+        assertNull(sut.read("key1"));
+        assertEquals(2, sut.getEntryCount());
+    }
+
+    @Test
+    public void trimNow_deletesSnapshotsWithUnknownSchemaVersion() throws IOException {
+        byte[] snapshot = ConfigurationSnapshotStore.encode("cacheKey", "merchant", null, "{}", 1L);
+        snapshot[7] = (byte) (ConfigurationSnapshotStore.SCHEMA_VERSION - 1);
+        writeFile(sut.getFile("cacheKey"), snapshot);
+
+        assertEquals(1, sut.trimNow(10, 10, Long.MAX_VALUE, 1L));
+        assertEquals(0, sut.getEntryCount());
+    }
+
+    @Test
+    public void getSizeInBytes_returnsTotalSnapshotSize() throws IOException {
+        sut.writeNow("key1", "merchant", null, "{}", 1L);
+        sut.writeNow("key2", "merchant", null, "{\"a\":1}", 1L);
+
+        long expectedSize = ConfigurationSnapshotStore.encode("key1", "merchant", null, "{}", 1L).length
+                + ConfigurationSnapshotStore.encode("key2", "merchant", null, "{\"a\":1}", 1L).length;
+        assertEquals(2, sut.getEntryCount());
+        assertEquals(expectedSize, sut.getSizeInBytes());
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -476,4 +476,46 @@ class ConfigurationUnitTest {
         val sut = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_GRAPHQL)
         assertEquals("https://example-graphql.com/graphql", sut.graphQLUrl)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun fromJson_doesNotParseSubConfigurationsUntilTheyAreUsed() {
+        val sut = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_LIVE_PAYPAL)
+        assertFalse(isSubConfigurationParsed(sut, "payPalConfiguration"))
+        assertFalse(isSubConfigurationParsed(sut, "venmoConfiguration"))
+
+        assertEquals("paypal_client_id", sut.payPalClientId)
+        assertTrue(isSubConfigurationParsed(sut, "payPalConfiguration"))
+        assertFalse(isSubConfigurationParsed(sut, "venmoConfiguration"))
+    }
+
+    @Test
+    fun cardValues_doNotParseNonCardSubConfigurations() {
+        val sut = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_LIVE_PAYPAL)
+
+        sut.supportedCardTypes
+        sut.isCvvChallengePresent
+        sut.isPostalCodeChallengePresent
+        sut.isFraudDataCollectionEnabled
+        sut.isGraphQLEnabled
+
+        assertTrue(isSubConfigurationParsed(sut, "cardConfiguration"))
+        assertTrue(isSubConfigurationParsed(sut, "graphQLConfiguration"))
+        listOf(
+            "analyticsConfiguration",
+            "braintreeApiConfiguration",
+            "googlePayConfiguration",
+            "kountConfiguration",
+            "payPalConfiguration",
+            "samsungPayConfiguration",
+            "unionPayConfiguration",
+            "venmoConfiguration",
+            "visaCheckoutConfiguration"
+        ).forEach { assertFalse(it, isSubConfigurationParsed(sut, it)) }
+    }
+
+    private fun isSubConfigurationParsed(configuration: Configuration, name: String): Boolean {
+        val delegateField = Configuration::class.java.getDeclaredField("$name\$delegate")
+        delegateField.isAccessible = true
+        return (delegateField.get(configuration) as Lazy<*>).isInitialized()
+    }
+}
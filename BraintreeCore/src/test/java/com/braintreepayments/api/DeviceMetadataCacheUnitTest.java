@@ -0,0 +1,179 @@
+package com.braintreepayments.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DeviceMetadataCacheUnitTest {
+
+    private Context context;
+    private DeviceInspector deviceInspector;
+
+    @Before
+    public void beforeEach() {
+        context = ApplicationProvider.getApplicationContext();
+        deviceInspector = mock(DeviceInspector.class);
+
+        DeviceMetadata processMetadata = new DeviceMetadata.Builder()
+                .platform("Android")
+                .merchantAppId("com.sample.app")
+                .appVersion("1.0")
+                .build();
+        when(deviceInspector.getProcessMetadata(context)).thenReturn(processMetadata);
+        when(deviceInspector.getNetworkType(context)).thenReturn("WIFI");
+        when(deviceInspector.getUserOrientation(context)).thenReturn("Portrait");
+        when(deviceInspector.isPayPalInstalled(context)).thenReturn(true);
+        when(deviceInspector.isVenmoInstalled(context)).thenReturn(false);
+    }
+
+    @Test
+    public void getDeviceMetadata_combinesProcessAndDeviceValues() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+
+        JSONObject json = sut.getDeviceMetadata(context, "session-id", "custom").toJSON();
+
+        assertEquals("Android", json.getString("platform"));
+        assertEquals("com.sample.app", json.getString("merchantAppId"));
+        assertEquals("1.0", json.getString("merchantAppVersion"));
+        assertEquals("session-id", json.getString("sessionId"));
+        assertEquals("custom", json.getString("integrationType"));
+        assertEquals("WIFI", json.getString("deviceNetworkType"));
+        assertEquals("Portrait", json.getString("userInterfaceOrientation"));
+        assertTrue(json.getBoolean("paypalInstalled"));
+        assertEquals(false, json.getBoolean("venmoInstalled"));
+    }
+
+    @Test
+    public void getDeviceMetadata_whenNothingChanged_returnsSameMetadataWithoutReadingDevice() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+
+        DeviceMetadata first = sut.getDeviceMetadata(context, "session-id", "custom");
+        DeviceMetadata second = sut.getDeviceMetadata(context, "session-id", "custom");
+
+        assertSame(first, second);
+        assertSame(first.toJSONString(), second.toJSONString());
+        verify(deviceInspector, times(1)).getProcessMetadata(context);
+        verify(deviceInspector, times(1)).getNetworkType(context);
+        verify(deviceInspector, times(1)).getUserOrientation(context);
+        verify(deviceInspector, times(1)).isPayPalInstalled(context);
+        verify(deviceInspector, times(1)).isVenmoInstalled(context);
+    }
+
+    @Test
+    public void getDeviceMetadata_whenSessionIdChanges_rebuildsMetadataFromCachedValues() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+
+        DeviceMetadata first = sut.getDeviceMetadata(context, "session-id", "custom");
+        DeviceMetadata second = sut.getDeviceMetadata(context, "other-session-id", "custom");
+
+        assertNotSame(first, second);
+        assertEquals("other-session-id", second.toJSON().getString("sessionId"));
+        verify(deviceInspector, times(1)).getProcessMetadata(context);
+        verify(deviceInspector, times(1)).getNetworkType(context);
+    }
+
+    @Test
+    public void getDeviceMetadata_afterNetworkTypeInvalidated_readsOnlyNetworkTypeAgain() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+        sut.getDeviceMetadata(context, "session-id", "custom");
+
+        when(deviceInspector.getNetworkType(context)).thenReturn("MOBILE");
+        sut.invalidateNetworkType();
+        DeviceMetadata metadata = sut.getDeviceMetadata(context, "session-id", "custom");
+
+        assertEquals("MOBILE", metadata.toJSON().getString("deviceNetworkType"));
+        verify(deviceInspector, times(2)).getNetworkType(context);
+        verify(deviceInspector, times(1)).getUserOrientation(context);
+        verify(deviceInspector, times(1)).isPayPalInstalled(context);
+    }
+
+    @Test
+    public void getDeviceMetadata_afterUserOrientationInvalidated_readsOrientationAgain() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+        sut.getDeviceMetadata(context, "session-id", "custom");
+
+        when(deviceInspector.getUserOrientation(context)).thenReturn("Landscape");
+        sut.invalidateUserOrientation();
+        DeviceMetadata metadata = sut.getDeviceMetadata(context, "session-id", "custom");
+
+        assertEquals("Landscape", metadata.toJSON().getString("userInterfaceOrientation"));
+        verify(deviceInspector, times(1)).getNetworkType(context);
+    }
+
+    @Test
+    public void getDeviceMetadata_afterInstalledWalletsInvalidated_readsInstalledWalletsAgain() throws JSONException {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+        sut.getDeviceMetadata(context, "session-id", "custom");
+
+        when(deviceInspector.isVenmoInstalled(context)).thenReturn(true);
+        sut.invalidateInstalledWallets();
+        DeviceMetadata metadata = sut.getDeviceMetadata(context, "session-id", "custom");
+
+        assertTrue(metadata.toJSON().getBoolean("venmoInstalled"));
+        verify(deviceInspector, times(2)).isPayPalInstalled(context);
+        verify(deviceInspector, times(2)).isVenmoInstalled(context);
+        verify(deviceInspector, times(1)).getNetworkType(context);
+    }
+
+    @Test
+    public void getDeviceMetadata_whenRegisteringOnFirstUse_registersOnlyOnce() {
+        Context applicationContext = spy(context);
+        Context callerContext = mock(Context.class);
+        when(callerContext.getApplicationContext()).thenReturn(applicationContext);
+        when(deviceInspector.getProcessMetadata(callerContext))
+                .thenReturn(new DeviceMetadata.Builder().platform("Android").build());
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector, true);
+
+        verify(applicationContext, never()).registerReceiver(any(BroadcastReceiver.class), any(IntentFilter.class));
+
+        sut.getDeviceMetadata(callerContext, "session-id", "custom");
+        sut.getDeviceMetadata(callerContext, "session-id", "custom");
+
+        verify(applicationContext, times(2)).registerReceiver(any(BroadcastReceiver.class), any(IntentFilter.class));
+        verify(applicationContext, times(1)).registerComponentCallbacks(any(ComponentCallbacks.class));
+    }
+
+    @Test
+    public void registerForChanges_invalidatesValuesOnSystemBroadcasts() {
+        DeviceMetadataCache sut = new DeviceMetadataCache(deviceInspector);
+        sut.registerForChanges(context);
+        sut.getDeviceMetadata(context, "session-id", "custom");
+
+        context.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        context.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED, Uri.parse("package:com.venmo")));
+        shadowOf(Looper.getMainLooper()).idle();
+        sut.getDeviceMetadata(context, "session-id", "custom");
+
+        verify(deviceInspector, times(2)).getNetworkType(context);
+        verify(deviceInspector, times(2)).isVenmoInstalled(context);
+        verify(deviceInspector, times(1)).getUserOrientation(context);
+    }
+}
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -122,7 +123,8 @@ public class PreferredPaymentMethodsClientUnitTest {
             public void onResult(@NonNull PreferredPaymentMethodsResult preferredPaymentMethodsResult) {
                 ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
 
-                verify(braintreeClient).sendGraphQLPOST(captor.capture(), any(HttpResponseCallback.class));
+                verify(braintreeClient).sendGraphQLPOST(captor.capture(),
+                        eq(PreferredPaymentMethodsClient.PREFERRED_PAYMENT_METHODS_TIMEOUT_MS), any(HttpResponseCallback.class));
                 String expectedQuery = "{ \"query\": \"query PreferredPaymentMethods { preferredPaymentMethods { paypalPreferred } }\" }";
                 assertEquals(expectedQuery, captor.getValue());
                 countDownLatch.countDown();
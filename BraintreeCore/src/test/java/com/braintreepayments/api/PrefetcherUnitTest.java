@@ -0,0 +1,148 @@
+package com.braintreepayments.api;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PrefetcherUnitTest {
+
+    private Scheduler scheduler;
+    private PrefetchCallback callback;
+
+    private Authorization authorization;
+    private Configuration configuration;
+
+    @Before
+    public void beforeEach() throws JSONException {
+        callback = mock(PrefetchCallback.class);
+        authorization = mock(Authorization.class);
+        configuration = Configuration.fromJson(Fixtures.CONFIGURATION_WITH_ACCESS_TOKEN);
+
+        // run everything inline so the callback fires before prefetch() returns
+        scheduler = mock(Scheduler.class);
+        Answer<Void> runImmediately = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        };
+        doAnswer(runImmediately).when(scheduler).runOnMain(any(Runnable.class));
+        doAnswer(runImmediately).when(scheduler).runOnBackground(any(Runnable.class), anyInt());
+    }
+
+    @Test
+    public void prefetch_loadsAuthorizationAndConfiguration() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        verify(configurationLoader).loadConfiguration(same(authorization), any(ConfigurationLoaderCallback.class));
+        verify(callback).onResult(any(PrefetchResult.class), (Exception) isNull());
+    }
+
+    @Test
+    public void prefetch_runsTLSStageInBackgroundWithLowPriority() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        verify(scheduler).runOnBackground(any(Runnable.class), eq(Scheduler.PRIORITY_LOW));
+    }
+
+    @Test
+    public void prefetch_reportsTimingsForEveryStage() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configuration(configuration)
+                .build();
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        ArgumentCaptor<PrefetchResult> captor = ArgumentCaptor.forClass(PrefetchResult.class);
+        verify(callback).onResult(captor.capture(), (Exception) isNull());
+
+        PrefetchResult result = captor.getValue();
+        assertTrue(result.getAuthorizationTimeMillis() >= 0);
+        assertTrue(result.getConfigurationTimeMillis() >= 0);
+        assertTrue(result.getTLSTimeMillis() >= 0);
+        assertTrue(result.getTotalTimeMillis() >= result.getConfigurationTimeMillis());
+    }
+
+    @Test
+    public void prefetch_whenAuthorizationFails_skipsConfigurationAndForwardsError() {
+        Exception authError = new Exception("auth error");
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorizationError(authError)
+                .build();
+        ConfigurationLoader configurationLoader = mock(ConfigurationLoader.class);
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        verify(configurationLoader, never()).loadConfiguration(any(Authorization.class), any(ConfigurationLoaderCallback.class));
+        verify(callback).onResult(any(PrefetchResult.class), same(authError));
+    }
+
+    @Test
+    public void prefetch_whenConfigurationFails_forwardsError() {
+        Exception configError = new Exception("config error");
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = new MockConfigurationLoaderBuilder()
+                .configurationError(configError)
+                .build();
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        verify(callback).onResult(any(PrefetchResult.class), same(configError));
+    }
+
+    @Test
+    public void prefetch_whenConfigurationIsPending_doesNotNotifyCallback() {
+        AuthorizationLoader authorizationLoader = new MockAuthorizationLoaderBuilder()
+                .authorization(authorization)
+                .build();
+        ConfigurationLoader configurationLoader = mock(ConfigurationLoader.class);
+
+        Prefetcher sut = new Prefetcher(authorizationLoader, configurationLoader, scheduler);
+        sut.prefetch(callback);
+
+        verify(callback, never()).onResult(any(PrefetchResult.class), any(Exception.class));
+        verify(scheduler, never()).runOnMain(any(Runnable.class));
+    }
+}
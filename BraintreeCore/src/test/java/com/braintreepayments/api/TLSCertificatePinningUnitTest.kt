@@ -0,0 +1,20 @@
+package com.braintreepayments.api
+
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TLSCertificatePinningUnitTest {
+
+    @Test
+    fun socketFactory_isBuiltOnceAndShared() {
+        val first = TLSCertificatePinning.socketFactory
+        val second = TLSCertificatePinning.socketFactory
+        assertSame(first, second)
+    }
+
+    @Test
+    fun warmUp_buildsSharedSocketFactory() {
+        assertTrue(TLSCertificatePinning.warmUp())
+    }
+}
@@ -268,49 +268,51 @@ public class GooglePayClient {
             return;
         }
 
-        braintreeClient.getAuthorization(new AuthorizationCallback() {
+        // build the payment data request on a background thread and only launch on the main thread
+        braintreeClient.getAuthorizationAsync().thenCompose(new BraintreeFuture.Transformation<Authorization, BraintreeFuture<GooglePayIntentData>>() {
             @Override
-            public void onAuthorizationResult(@Nullable final Authorization authorization, @Nullable Exception authError) {
-                if (authorization != null) {
-                    braintreeClient.getConfiguration(new ConfigurationCallback() {
-                        @Override
-                        public void onResult(@Nullable Configuration configuration, @Nullable Exception configError) {
-                            if (configuration == null) {
-                                callback.onResult(configError);
-                                return;
-                            }
-
-                            if (!configuration.isGooglePayEnabled()) {
-                                callback.onResult(new BraintreeException("Google Pay is not enabled for your Braintree account," +
-                                        " or Google Play Services are not configured correctly."));
-                                return;
-                            }
-
-                            setGooglePayRequestDefaults(configuration, authorization, request);
-                            braintreeClient.sendAnalyticsEvent("google-payment.started");
-
-                            PaymentDataRequest paymentDataRequest = PaymentDataRequest.fromJson(request.toJson());
-
-                            if (observer != null) {
-                                GooglePayIntentData intent = new GooglePayIntentData(getGooglePayEnvironment(configuration), paymentDataRequest);
-                                observer.launch(intent);
-                            } else {
-                                Intent intent = new Intent(activity, GooglePayActivity.class)
-                                        .putExtra(EXTRA_ENVIRONMENT, getGooglePayEnvironment(configuration))
-                                        .putExtra(EXTRA_PAYMENT_DATA_REQUEST, paymentDataRequest);
+            public BraintreeFuture<GooglePayIntentData> apply(final Authorization authorization) {
+                return braintreeClient.getConfigurationAsync(authorization).thenApply(new BraintreeFuture.Transformation<Configuration, GooglePayIntentData>() {
+                    @Override
+                    public GooglePayIntentData apply(Configuration configuration) throws BraintreeException {
+                        return createIntentData(configuration, authorization, request);
+                    }
+                });
+            }
+        }).addCallback(new BraintreeFutureCallback<GooglePayIntentData>() {
+            @Override
+            public void onResult(@Nullable GooglePayIntentData intentData, @Nullable Exception error) {
+                if (intentData == null) {
+                    callback.onResult(error);
+                    return;
+                }
 
-                                activity.startActivityForResult(intent, BraintreeRequestCodes.GOOGLE_PAY);
-                            }
-                        }
-                    });
+                braintreeClient.sendAnalyticsEvent("google-payment.started");
 
+                if (observer != null) {
+                    observer.launch(intentData);
                 } else {
-                    callback.onResult(authError);
+                    Intent intent = new Intent(activity, GooglePayActivity.class)
+                            .putExtra(EXTRA_ENVIRONMENT, intentData.getGooglePayEnvironment())
+                            .putExtra(EXTRA_PAYMENT_DATA_REQUEST, intentData.getPaymentDataRequest());
+
+                    activity.startActivityForResult(intent, BraintreeRequestCodes.GOOGLE_PAY);
                 }
             }
         });
     }
 
+    private GooglePayIntentData createIntentData(Configuration configuration, Authorization authorization, GooglePayRequest request) throws BraintreeException {
+        if (!configuration.isGooglePayEnabled()) {
+            throw new BraintreeException("Google Pay is not enabled for your Braintree account," +
+                    " or Google Play Services are not configured correctly.");
+        }
+
+        setGooglePayRequestDefaults(configuration, authorization, request);
+        PaymentDataRequest paymentDataRequest = PaymentDataRequest.fromJson(request.toJson());
+        return new GooglePayIntentData(getGooglePayEnvironment(configuration), paymentDataRequest);
+    }
+
     /**
      * This method is called when you've received a successful {@link PaymentData} response in
      * {@link GooglePayClient#onActivityResult(int, Intent, GooglePayOnActivityResultCallback)}
@@ -5,6 +5,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 import static java.net.HttpURLConnection.HTTP_ACCEPTED;
@@ -12,6 +18,7 @@ import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
@@ -25,6 +32,14 @@ class BaseHttpResponseParser implements HttpResponseParser {
     private static final int HTTP_UPGRADE_REQUIRED = 426;
     private static final int HTTP_TOO_MANY_REQUESTS = 429;
 
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_PRESIZED_BUFFER_SIZE = 1024 * 1024;
+
+    static final long NO_RETRY_AFTER = -1;
+
     /**
      * @param responseCode the response code returned when the http request was made.
      * @param connection the connection through which the http request was made.
@@ -35,6 +50,8 @@ class BaseHttpResponseParser implements HttpResponseParser {
         switch (responseCode) {
             case HTTP_OK: case HTTP_CREATED: case HTTP_ACCEPTED:
                 return responseBody;
+            case HTTP_NOT_MODIFIED:
+                throw new NotModifiedException();
             case HTTP_BAD_REQUEST: case HTTP_UNPROCESSABLE_ENTITY:
                 throw new UnprocessableEntityException(responseBody);
             case HTTP_UNAUTHORIZED:
@@ -44,11 +61,13 @@ class BaseHttpResponseParser implements HttpResponseParser {
             case HTTP_UPGRADE_REQUIRED:
                 throw new UpgradeRequiredException(responseBody);
             case HTTP_TOO_MANY_REQUESTS:
-                throw new RateLimitException("You are being rate-limited. Please try again in a few minutes.");
+                throw new RateLimitException("You are being rate-limited. Please try again in a few minutes.",
+                        parseRetryAfter(connection.getHeaderField(RETRY_AFTER_HEADER), System.currentTimeMillis()));
             case HTTP_INTERNAL_ERROR:
                 throw new ServerException(responseBody);
             case HTTP_UNAVAILABLE:
-                throw new ServiceUnavailableException(responseBody);
+                throw new ServiceUnavailableException(responseBody,
+                        parseRetryAfter(connection.getHeaderField(RETRY_AFTER_HEADER), System.currentTimeMillis()));
             default:
                 throw new UnexpectedException(responseBody);
         }
@@ -56,9 +75,11 @@ class BaseHttpResponseParser implements HttpResponseParser {
 
     private String parseBody(int responseCode, HttpURLConnection connection) throws IOException {
         boolean gzip = "gzip".equals(connection.getContentEncoding());
+        int contentLength = connection.getContentLength();
         switch (responseCode) {
             case HTTP_OK: case HTTP_CREATED: case HTTP_ACCEPTED:
-                return readStream(connection.getInputStream(), gzip);
+                return readStream(connection.getInputStream(), gzip, contentLength);
+            case HTTP_NOT_MODIFIED:
             case HTTP_TOO_MANY_REQUESTS:
                 return null;
             case HTTP_UNAUTHORIZED:
@@ -69,26 +90,30 @@ class BaseHttpResponseParser implements HttpResponseParser {
             case HTTP_INTERNAL_ERROR:
             case HTTP_UNAVAILABLE:
             default:
-                return readStream(connection.getErrorStream(), gzip);
+                return readStream(connection.getErrorStream(), gzip, contentLength);
         }
     }
 
-    private String readStream(InputStream in, boolean gzip) throws IOException {
+    private String readStream(InputStream in, boolean gzip, int contentLength) throws IOException {
         if (in == null) {
             return null;
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Content-Length describes the compressed body for gzip responses, so it is only used to
+        // size the buffer for plain responses; it is capped in case the header is wrong
+        int initialCapacity = DEFAULT_BUFFER_SIZE;
+        if (!gzip && contentLength > 0) {
+            initialCapacity = Math.min(contentLength, MAX_PRESIZED_BUFFER_SIZE);
+        }
+
         try {
             if (gzip) {
-                in = new GZIPInputStream(in);
+                in = new GZIPInputStream(in, DEFAULT_BUFFER_SIZE);
             }
 
-            byte[] buffer = new byte[1024];
-            for (int count; (count = in.read(buffer)) != -1; ) {
-                out.write(buffer, 0, count);
-            }
-            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            ResponseBodyBuffer body = new ResponseBodyBuffer(initialCapacity);
+            body.readFrom(in);
+            return body.toUTF8String();
 
         } finally {
             try {
@@ -96,4 +121,64 @@ class BaseHttpResponseParser implements HttpResponseParser {
             } catch (IOException ignored) {}
         }
     }
+
+    /**
+     * @param retryAfter the value of a Retry-After header, either delay-seconds or an HTTP-date.
+     * @param currentTimeMillis the current time, used to convert an HTTP-date into a delay.
+     * @return the requested delay in milliseconds, or {@link #NO_RETRY_AFTER} if the header is
+     * missing or malformed.
+     */
+    static long parseRetryAfter(String retryAfter, long currentTimeMillis) {
+        if (retryAfter == null) {
+            return NO_RETRY_AFTER;
+        }
+
+        String value = retryAfter.trim();
+        try {
+            long delaySeconds = Long.parseLong(value);
+            return (delaySeconds < 0) ? NO_RETRY_AFTER : TimeUnit.SECONDS.toMillis(delaySeconds);
+        } catch (NumberFormatException ignored) { /* not delay-seconds, try HTTP-date */ }
+
+        try {
+            Date date = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US).parse(value);
+            return Math.max(0, date.getTime() - currentTimeMillis);
+        } catch (ParseException e) {
+            return NO_RETRY_AFTER;
+        }
+    }
+
+    /**
+     * Buffer that reads a response body directly into its backing array and decodes it from
+     * there, instead of copying through an intermediate chunk buffer and {@link #toByteArray()}.
+     */
+    private static class ResponseBodyBuffer extends ByteArrayOutputStream {
+
+        ResponseBodyBuffer(int initialCapacity) {
+            super(Math.max(initialCapacity, 1));
+        }
+
+        void readFrom(InputStream in) throws IOException {
+            while (true) {
+                if (count == buf.length) {
+                    // probe before growing so an exactly presized buffer is never reallocated
+                    int next = in.read();
+                    if (next == -1) {
+                        return;
+                    }
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    buf[count++] = (byte) next;
+                }
+
+                int read = in.read(buf, count, buf.length - count);
+                if (read == -1) {
+                    return;
+                }
+                count += read;
+            }
+        }
+
+        String toUTF8String() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
+        }
+    }
 }
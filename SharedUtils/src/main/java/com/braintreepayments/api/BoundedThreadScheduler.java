@@ -0,0 +1,242 @@
+package com.braintreepayments.api;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Scheduler} backed by a bounded thread pool.
+ *
+ * Background runnables start on a new thread until {@code maxPoolSize} threads are busy. After
+ * that they wait in a priority queue, where higher priority runnables (e.g. tokenization) are
+ * run before lower priority runnables (e.g. analytics). Runnables with the same priority run in
+ * the order they were scheduled. Threads above {@code corePoolSize} are released after
+ * {@code keepAliveMillis} of inactivity.
+ */
+class BoundedThreadScheduler implements Scheduler {
+
+    static final int DEFAULT_CORE_POOL_SIZE = 2;
+    static final int DEFAULT_MAX_POOL_SIZE = 4;
+    static final long DEFAULT_KEEP_ALIVE_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private static volatile BoundedThreadScheduler INSTANCE;
+
+    static BoundedThreadScheduler getInstance() {
+        if (INSTANCE == null) {
+            synchronized (BoundedThreadScheduler.class) {
+                // double check that instance was not created in another thread
+                if (INSTANCE == null) {
+                    INSTANCE = new BoundedThreadScheduler(
+                            DEFAULT_CORE_POOL_SIZE, DEFAULT_MAX_POOL_SIZE, DEFAULT_KEEP_ALIVE_MS);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final Handler mainThreadHandler;
+    private final ThreadPoolExecutor executor;
+    private final TaskQueue taskQueue;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong startedTaskCount = new AtomicLong();
+    private final AtomicLong totalWaitTimeNanos = new AtomicLong();
+    private final AtomicLong maxWaitTimeNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    BoundedThreadScheduler(int corePoolSize, int maxPoolSize, long keepAliveMillis) {
+        this(new Handler(Looper.getMainLooper()), corePoolSize, maxPoolSize, keepAliveMillis);
+    }
+
+    @VisibleForTesting
+    BoundedThreadScheduler(Handler mainThreadHandler, int corePoolSize, int maxPoolSize, long keepAliveMillis) {
+        if (corePoolSize < 0 || maxPoolSize < 1 || maxPoolSize < corePoolSize) {
+            throw new IllegalArgumentException("Invalid pool size: core " + corePoolSize + ", max " + maxPoolSize);
+        }
+        this.mainThreadHandler = mainThreadHandler;
+        this.taskQueue = new TaskQueue();
+        this.executor = new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveMillis,
+                TimeUnit.MILLISECONDS, taskQueue, new BackgroundThreadFactory(), taskQueue);
+        taskQueue.setExecutor(executor);
+    }
+
+    @Override
+    public void runOnMain(Runnable runnable) {
+        mainThreadHandler.post(runnable);
+    }
+
+    @Override
+    public void runOnBackground(Runnable runnable) {
+        runOnBackground(runnable, PRIORITY_NORMAL);
+    }
+
+    @Override
+    public void runOnBackground(Runnable runnable, @Priority int priority) {
+        executor.execute(new PrioritizedTask(runnable, priority, sequence.getAndIncrement()));
+
+        int queueDepth = taskQueue.size();
+        int previousMax;
+        while (queueDepth > (previousMax = maxQueueDepth.get())) {
+            if (maxQueueDepth.compareAndSet(previousMax, queueDepth)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void runOnBackground(final Runnable runnable, @Priority final int priority, long delayMillis) {
+        // the main thread handler only keeps the timer; the runnable itself runs in the pool
+        mainThreadHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                runOnBackground(runnable, priority);
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * @return the number of runnables waiting for a background thread.
+     */
+    int getQueueDepth() {
+        return taskQueue.size();
+    }
+
+    /**
+     * @return the highest number of runnables that have waited for a background thread at once.
+     */
+    int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of background threads currently running runnables.
+     */
+    int getActiveThreadCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of runnables that have started on a background thread.
+     */
+    long getStartedTaskCount() {
+        return startedTaskCount.get();
+    }
+
+    /**
+     * @return the average time in milliseconds runnables have waited for a background thread.
+     */
+    long getAverageWaitTimeMillis() {
+        long count = startedTaskCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTimeNanos.get() / count);
+    }
+
+    /**
+     * @return the longest time in milliseconds a runnable has waited for a background thread.
+     */
+    long getMaxWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTimeNanos.get());
+    }
+
+    private void recordWaitTime(long waitTimeNanos) {
+        startedTaskCount.incrementAndGet();
+        totalWaitTimeNanos.addAndGet(waitTimeNanos);
+
+        long previousMax;
+        while (waitTimeNanos > (previousMax = maxWaitTimeNanos.get())) {
+            if (maxWaitTimeNanos.compareAndSet(previousMax, waitTimeNanos)) {
+                break;
+            }
+        }
+    }
+
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final Runnable runnable;
+        private final int priority;
+        private final long sequenceNumber;
+        private final long enqueuedAtNanos;
+
+        PrioritizedTask(Runnable runnable, int priority, long sequenceNumber) {
+            this.runnable = runnable;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            recordWaitTime(System.nanoTime() - enqueuedAtNanos);
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask other) {
+            if (priority != other.priority) {
+                // higher priority first
+                return (priority > other.priority) ? -1 : 1;
+            }
+            if (sequenceNumber == other.sequenceNumber) {
+                return 0;
+            }
+            return (sequenceNumber < other.sequenceNumber) ? -1 : 1;
+        }
+    }
+
+    /**
+     * {@link ThreadPoolExecutor} only starts threads above the core pool size when its queue
+     * rejects a runnable. This queue declines runnables while all threads are busy and the pool
+     * can still grow, and accepts them through {@link #rejectedExecution} once it is full.
+     */
+    private static class TaskQueue extends PriorityBlockingQueue<Runnable> implements RejectedExecutionHandler {
+
+        private ThreadPoolExecutor executor;
+
+        void setExecutor(ThreadPoolExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            if (executor != null
+                    && executor.getPoolSize() < executor.getMaximumPoolSize()
+                    && executor.getActiveCount() >= executor.getPoolSize()) {
+                return false;
+            }
+            return super.offer(runnable);
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Scheduler has been shut down");
+            }
+            super.offer(runnable);
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "braintree-background-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -2,13 +2,18 @@ package com.braintreepayments.api;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Build;
 
 import androidx.annotation.VisibleForTesting;
 
+import java.io.File;
+import java.util.Map;
+
 class BraintreeSharedPreferences {
 
     private static final String PREFERENCES_FILE_KEY =
         "com.braintreepayments.api.SHARED_PREFERENCES";
+    private static final String PREFERENCES_DIRECTORY = "braintree-preferences";
     private static volatile BraintreeSharedPreferences INSTANCE;
 
     static BraintreeSharedPreferences getInstance(Context context) {
@@ -25,7 +30,36 @@ class BraintreeSharedPreferences {
     }
 
     private static SharedPreferences createSharedPreferencesInstance(Context context) {
-        return context.getSharedPreferences(PREFERENCES_FILE_KEY, Context.MODE_PRIVATE);
+        File directory = new File(context.getFilesDir(), PREFERENCES_DIRECTORY);
+        return new FileBackedSharedPreferences(directory, createLegacyPreferences(context));
+    }
+
+    /**
+     * Values saved to the XML file by earlier versions are migrated the first time the preferences
+     * are loaded, after which the XML file is deleted. The XML file is only opened if it has not
+     * been migrated yet.
+     */
+    private static FileBackedSharedPreferences.LegacyPreferences createLegacyPreferences(Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        return new FileBackedSharedPreferences.LegacyPreferences() {
+            @Override
+            public Map<String, ?> getAll() {
+                return getXmlPreferences().getAll();
+            }
+
+            @Override
+            public void delete() {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                    applicationContext.deleteSharedPreferences(PREFERENCES_FILE_KEY);
+                } else {
+                    getXmlPreferences().edit().clear().commit();
+                }
+            }
+
+            private SharedPreferences getXmlPreferences() {
+                return applicationContext.getSharedPreferences(PREFERENCES_FILE_KEY, Context.MODE_PRIVATE);
+            }
+        };
     }
 
     private final SharedPreferences sharedPreferences;
@@ -67,6 +101,14 @@ class BraintreeSharedPreferences {
                 .apply();
     }
 
+    void remove(String... keys) {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (String key : keys) {
+            editor.remove(key);
+        }
+        editor.apply();
+    }
+
     void clearSharedPreferences() {
         sharedPreferences.edit().clear().apply();
     }
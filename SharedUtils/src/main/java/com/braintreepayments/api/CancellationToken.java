@@ -0,0 +1,126 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle used to cancel {@link HttpRequest}s and to bound them with a deadline.
+ *
+ * A token can be shared by all requests made on behalf of a single operation, e.g. a
+ * tokenization. Cancelling it disconnects any connection that is currently open and prevents
+ * further attempts and retries. Once the deadline has passed no new attempts are made, and the
+ * socket timeouts of a request never exceed the time that is left.
+ */
+class CancellationToken {
+
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long deadlineNanos;
+    private final Set<HttpURLConnection> openConnections;
+    private boolean cancelled;
+
+    CancellationToken() {
+        this.deadlineNanos = NO_DEADLINE;
+        this.openConnections = new HashSet<>();
+    }
+
+    /**
+     * @param timeoutMillis the time from now after which requests using this token fail. A
+     *                      timeout too long to represent, e.g. {@link Long#MAX_VALUE}, means no
+     *                      deadline.
+     */
+    CancellationToken(long timeoutMillis) {
+        this(timeoutMillis, System.nanoTime());
+    }
+
+    @VisibleForTesting
+    CancellationToken(long timeoutMillis, long currentTimeNanos) {
+        // toNanos saturates at Long.MAX_VALUE; the addition is checked for overflow below
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+        long deadline = currentTimeNanos + timeoutNanos;
+        boolean overflows = (timeoutNanos == Long.MAX_VALUE) || (deadline < currentTimeNanos);
+        this.deadlineNanos = overflows ? NO_DEADLINE : deadline;
+        this.openConnections = new HashSet<>();
+    }
+
+    /**
+     * Cancel all requests using this token. Open connections are disconnected, which aborts
+     * blocking reads and writes on the threads running those requests.
+     */
+    void cancel() {
+        List<HttpURLConnection> connections;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            connections = new ArrayList<>(openConnections);
+            openConnections.clear();
+        }
+
+        for (HttpURLConnection connection : connections) {
+            connection.disconnect();
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    boolean isExpired() {
+        return getRemainingMillis() <= 0;
+    }
+
+    /**
+     * @return the time left until the deadline in milliseconds, or {@link #NO_DEADLINE} if this
+     * token has no deadline.
+     */
+    long getRemainingMillis() {
+        return getRemainingMillis(System.nanoTime());
+    }
+
+    @VisibleForTesting
+    long getRemainingMillis(long currentTimeNanos) {
+        if (deadlineNanos == NO_DEADLINE) {
+            return NO_DEADLINE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - currentTimeNanos);
+    }
+
+    /**
+     * @throws RequestCancelledException if this token has been cancelled.
+     * @throws SocketTimeoutException if the deadline of this token has passed.
+     */
+    void throwIfDone() throws RequestCancelledException, SocketTimeoutException {
+        if (isCancelled()) {
+            throw new RequestCancelledException();
+        }
+        if (isExpired()) {
+            throw new SocketTimeoutException("Request deadline exceeded");
+        }
+    }
+
+    /**
+     * Track a connection so that it is disconnected on {@link #cancel()}.
+     *
+     * @return {@code false} if this token has already been cancelled.
+     */
+    synchronized boolean attach(HttpURLConnection connection) {
+        if (cancelled) {
+            return false;
+        }
+        openConnections.add(connection);
+        return true;
+    }
+
+    synchronized void detach(HttpURLConnection connection) {
+        openConnections.remove(connection);
+    }
+}
@@ -0,0 +1,99 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RetryPolicy} that waits exponentially longer between attempts, with full jitter so that
+ * clients that failed at the same time do not retry at the same time.
+ *
+ * A Retry-After delay sent with a 429 or 503 response takes precedence over the backoff. Retries
+ * are skipped when the requested delay exceeds {@code maxRetryAfterMillis}, when the error cannot
+ * be fixed by retrying (e.g. invalid authorization), or when the shared {@link RetryBudget} is
+ * spent.
+ */
+class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    static final long DEFAULT_BASE_DELAY_MS = 500;
+    static final long DEFAULT_MAX_DELAY_MS = TimeUnit.SECONDS.toMillis(10);
+    static final long DEFAULT_MAX_RETRY_AFTER_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxRetryAfterMillis;
+    private final RetryBudget retryBudget;
+    private final Random random;
+
+    ExponentialBackoffRetryPolicy(int maxAttempts) {
+        this(maxAttempts, RetryBudget.getInstance());
+    }
+
+    ExponentialBackoffRetryPolicy(int maxAttempts, RetryBudget retryBudget) {
+        this(maxAttempts, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_MAX_RETRY_AFTER_MS,
+                retryBudget, new Random());
+    }
+
+    @VisibleForTesting
+    ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                                  long maxRetryAfterMillis, RetryBudget retryBudget, Random random) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+        this.retryBudget = retryBudget;
+        this.random = random;
+    }
+
+    @Override
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public long getRetryDelayMillis(int attemptCount, Exception error) {
+        if (!isRetryable(error)) {
+            return NO_RETRY;
+        }
+
+        long retryAfterMillis = getRetryAfterMillis(error);
+        if (retryAfterMillis > maxRetryAfterMillis) {
+            return NO_RETRY;
+        }
+
+        if (!retryBudget.tryAcquire()) {
+            return NO_RETRY;
+        }
+
+        if (retryAfterMillis >= 0) {
+            return retryAfterMillis;
+        }
+        return getBackoffMillis(attemptCount);
+    }
+
+    private long getBackoffMillis(int attemptCount) {
+        // cap the exponent to avoid overflow; the delay is capped at maxDelayMillis anyway
+        int exponent = Math.min(Math.max(attemptCount - 1, 0), 30);
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis * (1L << exponent));
+        return (long) (random.nextDouble() * ceiling);
+    }
+
+    private static boolean isRetryable(Exception error) {
+        return !(error instanceof AuthenticationException
+                || error instanceof NotModifiedException
+                || error instanceof AuthorizationException
+                || error instanceof UnprocessableEntityException
+                || error instanceof UpgradeRequiredException);
+    }
+
+    private static long getRetryAfterMillis(Exception error) {
+        if (error instanceof RateLimitException) {
+            return ((RateLimitException) error).getRetryAfterMillis();
+        } else if (error instanceof ServiceUnavailableException) {
+            return ((ServiceUnavailableException) error).getRetryAfterMillis();
+        }
+        return BaseHttpResponseParser.NO_RETRY_AFTER;
+    }
+}
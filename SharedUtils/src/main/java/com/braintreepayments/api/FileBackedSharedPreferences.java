@@ -0,0 +1,691 @@
+package com.braintreepayments.api;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SharedPreferences} that stores each key in its own file.
+ *
+ * Unlike the XML backed implementation, an edit only rewrites the files of the keys it changes,
+ * and files are loaded on a background thread rather than all at once on the first read. A read
+ * of a key that has not been loaded yet reads only that key's file on the calling thread, and the
+ * legacy store if it has not been migrated yet, so a stored value is never reported as missing.
+ * Edits are applied to memory immediately and written to disk in order on the same background
+ * thread; {@link Editor#commit()} waits for its write to finish.
+ *
+ * Entries found in the {@link LegacyPreferences} are copied into files once, the first time an
+ * instance is loaded from a directory, after which the legacy store is deleted and never opened
+ * again.
+ */
+class FileBackedSharedPreferences implements SharedPreferences {
+
+    private static final String FILE_EXTENSION = ".value";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String MIGRATION_MARKER_FILE = "migrated";
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_STRING_SET = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+
+    // marks a key that was removed in memory before its file was loaded
+    private static final Object REMOVED = new Object();
+
+    private final File directory;
+    private final LegacyPreferences legacyPreferences;
+    private final Executor diskExecutor;
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final CountDownLatch loadedLatch = new CountDownLatch(1);
+    private final Object loadLock = new Object();
+    private final List<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong totalReadNanos = new AtomicLong();
+    private final AtomicLong maxReadNanos = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong totalWriteNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+
+    private volatile boolean loaded;
+
+    // set when the preferences are cleared before loading finishes; guarded by loadLock
+    private boolean clearedBeforeLoad;
+
+    /**
+     * The store that preferences were kept in by earlier versions.
+     */
+    interface LegacyPreferences {
+
+        /**
+         * Called on the background thread to migrate the legacy store, and on the calling thread
+         * when a key is read before the migration has finished.
+         */
+        Map<String, ?> getAll();
+
+        /**
+         * Called on the background thread once every entry has been copied.
+         */
+        void delete();
+    }
+
+    FileBackedSharedPreferences(File directory, @Nullable LegacyPreferences legacyPreferences) {
+        this(directory, legacyPreferences, createDiskExecutor());
+    }
+
+    @VisibleForTesting
+    FileBackedSharedPreferences(File directory, @Nullable LegacyPreferences legacyPreferences, Executor diskExecutor) {
+        this.directory = directory;
+        this.legacyPreferences = legacyPreferences;
+        this.diskExecutor = diskExecutor;
+
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadFromDisk();
+            }
+        });
+    }
+
+    private static ExecutorService createDiskExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "braintree-preferences");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Waits for loading to finish, since any key may still be on disk.
+     */
+    @Override
+    public Map<String, ?> getAll() {
+        if (!loaded) {
+            awaitLoaded();
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() != REMOVED) {
+                result.put(entry.getKey(), copyIfMutable(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        Object value = read(key);
+        return (value instanceof String) ? (String) value : defValue;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = read(key);
+        return (value instanceof Set) ? new HashSet<>((Set<String>) value) : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = read(key);
+        return (value instanceof Integer) ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = read(key);
+        return (value instanceof Long) ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = read(key);
+        return (value instanceof Float) ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = read(key);
+        return (value instanceof Boolean) ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return read(key) != null;
+    }
+
+    @Override
+    public Editor edit() {
+        return new FileEditor();
+    }
+
+    /**
+     * Listeners are notified on the thread that applied the edit.
+     */
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the number of values read.
+     */
+    long getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * @return the average time in microseconds it took to read a value.
+     */
+    long getAverageReadLatencyMicros() {
+        return averageMicros(totalReadNanos, readCount);
+    }
+
+    /**
+     * @return the longest time in microseconds it took to read a value.
+     */
+    long getMaxReadLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxReadNanos.get());
+    }
+
+    /**
+     * @return the number of edits written to disk.
+     */
+    long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return the average time in microseconds it took to write an edit to disk.
+     */
+    long getAverageWriteLatencyMicros() {
+        return averageMicros(totalWriteNanos, writeCount);
+    }
+
+    /**
+     * @return the longest time in microseconds it took to write an edit to disk.
+     */
+    long getMaxWriteLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxWriteNanos.get());
+    }
+
+    @VisibleForTesting
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    private Object read(String key) {
+        long startNanos = System.nanoTime();
+        Object value = values.get(key);
+        if (value == null && !loaded) {
+            // the key may still be on disk; read only its file instead of waiting for the loader
+            value = loadKey(key);
+        }
+        recordLatency(System.nanoTime() - startNanos, readCount, totalReadNanos, maxReadNanos);
+        return (value == REMOVED) ? null : value;
+    }
+
+    /**
+     * Load a single key on the calling thread, from its file or, if migration has not finished,
+     * from the legacy store.
+     *
+     * @return the value now held in memory for the key, or {@code null} if it is not stored.
+     */
+    private Object loadKey(String key) {
+        Object value = readKeyFile(key);
+        if (value == null && legacyPreferences != null
+                && !new File(directory, MIGRATION_MARKER_FILE).exists()) {
+            value = legacyPreferences.getAll().get(key);
+        }
+        if (value == null) {
+            return null;
+        }
+        synchronized (loadLock) {
+            if (clearedBeforeLoad) {
+                return values.get(key);
+            }
+            // a value edited in memory or loaded meanwhile wins, as it does for the loader
+            Object currentValue = values.putIfAbsent(key, value);
+            return (currentValue != null) ? currentValue : value;
+        }
+    }
+
+    private Object readKeyFile(String key) {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new ByteArrayInputStream(readFile(file)));
+            return key.equals(in.readUTF()) ? readValue(in) : null;
+        } catch (IOException e) {
+            // the loader deletes unreadable files
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void loadFromDisk() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(FILE_EXTENSION)) {
+                    loadValueFile(file);
+                } else if (name.endsWith(TEMP_FILE_EXTENSION)) {
+                    // left behind by a write that was interrupted before it was renamed
+                    file.delete();
+                }
+            }
+        }
+
+        if (legacyPreferences != null && !new File(directory, MIGRATION_MARKER_FILE).exists()) {
+            migrateLegacyPreferences();
+        }
+
+        loaded = true;
+        loadedLatch.countDown();
+    }
+
+    private void loadValueFile(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new ByteArrayInputStream(readFile(file)));
+            String key = in.readUTF();
+            Object value = readValue(in);
+            if (value != null) {
+                synchronized (loadLock) {
+                    // values edited in memory while loading win over what is on disk
+                    if (!clearedBeforeLoad) {
+                        values.putIfAbsent(key, value);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            file.delete();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void migrateLegacyPreferences() {
+        boolean copied = true;
+        for (Map.Entry<String, ?> entry : legacyPreferences.getAll().entrySet()) {
+            String key = entry.getKey();
+            Object legacyValue = entry.getValue();
+            Object currentValue;
+            synchronized (loadLock) {
+                if (clearedBeforeLoad) {
+                    break;
+                }
+                currentValue = values.putIfAbsent(key, legacyValue);
+            }
+            // a value edited in memory is written by its own edit, which is queued behind this
+            if (currentValue == null || currentValue.equals(legacyValue)) {
+                copied &= writeValueFile(key, legacyValue);
+            }
+        }
+
+        if (!copied) {
+            // migration runs again next time; values already in files are kept
+            return;
+        }
+        try {
+            if (directory.isDirectory() || directory.mkdirs()) {
+                new File(directory, MIGRATION_MARKER_FILE).createNewFile();
+                legacyPreferences.delete();
+            }
+        } catch (IOException ignored) {
+            // migration runs again next time; values already in files are kept
+        }
+    }
+
+    private void awaitLoaded() {
+        try {
+            loadedLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeToDisk(boolean clear, Map<String, Object> changes) {
+        long startNanos = System.nanoTime();
+        if (clear) {
+            deleteValueFiles();
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            if (change.getValue() == REMOVED) {
+                getFile(change.getKey()).delete();
+            } else {
+                writeValueFile(change.getKey(), change.getValue());
+            }
+        }
+        recordLatency(System.nanoTime() - startNanos, writeCount, totalWriteNanos, maxWriteNanos);
+    }
+
+    private void deleteValueFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(FILE_EXTENSION)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private boolean writeValueFile(String key, Object value) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return false;
+        }
+
+        File file = getFile(key);
+        File tempFile = new File(directory, file.getName() + TEMP_FILE_EXTENSION);
+        FileOutputStream out = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream dataOut = new DataOutputStream(bytes);
+            dataOut.writeUTF(key);
+            writeValue(dataOut, value);
+            dataOut.flush();
+
+            out = new FileOutputStream(tempFile);
+            bytes.writeTo(out);
+            out.getFD().sync();
+        } catch (IOException e) {
+            closeQuietly(out);
+            tempFile.delete();
+            return false;
+        }
+        closeQuietly(out);
+        return tempFile.renameTo(file);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            // writeUTF is limited to 64KB, so strings are written as length prefixed UTF-8
+            byte[] utf8 = ((String) value).getBytes("UTF-8");
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else if (value instanceof Set) {
+            Set<String> set = (Set<String>) value;
+            out.writeByte(TYPE_STRING_SET);
+            out.writeInt(set.size());
+            for (String item : set) {
+                out.writeUTF(item);
+            }
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("Unsupported value type: " + value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                byte[] utf8 = new byte[in.readInt()];
+                in.readFully(utf8);
+                return new String(utf8, "UTF-8");
+            case TYPE_STRING_SET:
+                int size = in.readInt();
+                Set<String> set = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    set.add(in.readUTF());
+                }
+                return set;
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    @VisibleForTesting
+    File getFile(String key) {
+        return new File(directory, hash(key) + FILE_EXTENSION);
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // SHA-1 and UTF-8 are always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static Object copyIfMutable(Object value) {
+        return (value instanceof Set) ? new HashSet<>((Set<?>) value) : value;
+    }
+
+    private static void recordLatency(long nanos, AtomicLong count, AtomicLong total, AtomicLong max) {
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long previousMax;
+        while (nanos > (previousMax = max.get())) {
+            if (max.compareAndSet(previousMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private static long averageMicros(AtomicLong totalNanos, AtomicLong count) {
+        long n = count.get();
+        return (n == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / n);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+
+    private class FileEditor implements Editor {
+
+        private final Map<String, Object> changes = new LinkedHashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            return put(key, (values != null) ? new HashSet<>(values) : null);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            final CountDownLatch written = new CountDownLatch(1);
+            applyChanges(new Runnable() {
+                @Override
+                public void run() {
+                    written.countDown();
+                }
+            });
+            try {
+                written.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            applyChanges(null);
+        }
+
+        private Editor put(String key, Object value) {
+            synchronized (this) {
+                changes.put(key, (value != null) ? value : REMOVED);
+            }
+            return this;
+        }
+
+        private void applyChanges(@Nullable final Runnable onWritten) {
+            final Map<String, Object> diskChanges = new LinkedHashMap<>();
+            final Set<String> changedKeys = new LinkedHashSet<>();
+            final boolean clearDisk;
+            synchronized (this) {
+                clearDisk = clear;
+                if (clear) {
+                    synchronized (loadLock) {
+                        // files that are not loaded yet are skipped by the loader and deleted by
+                        // the disk write below, which is queued behind loading
+                        if (!loaded) {
+                            clearedBeforeLoad = true;
+                        }
+                        for (String key : values.keySet()) {
+                            values.put(key, REMOVED);
+                            changedKeys.add(key);
+                        }
+                    }
+                    clear = false;
+                }
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    values.put(change.getKey(), change.getValue());
+                    diskChanges.put(change.getKey(), change.getValue());
+                    changedKeys.add(change.getKey());
+                }
+                changes.clear();
+            }
+
+            diskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeToDisk(clearDisk, diskChanges);
+                    if (onWritten != null) {
+                        onWritten.run();
+                    }
+                }
+            });
+
+            for (String key : changedKeys) {
+                for (OnSharedPreferenceChangeListener listener : listeners) {
+                    listener.onSharedPreferenceChanged(FileBackedSharedPreferences.this, key);
+                }
+            }
+        }
+    }
+}
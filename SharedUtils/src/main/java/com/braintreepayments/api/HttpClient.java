@@ -8,8 +8,12 @@ import java.lang.annotation.RetentionPolicy;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -28,17 +32,34 @@ class HttpClient {
     private final Scheduler scheduler;
     private final SynchronousHttpClient syncHttpClient;
 
-    private final Map<URL, Integer> retryCountMap;
+    private final RetryPolicy retryPolicy;
+
+    // callers waiting on an identical in-flight GET request, keyed by url, headers and retry policy
+    private final Map<RequestKey, InFlightRequest> inFlightGetRequests;
+    private long coalescedRequestCount;
 
     protected HttpClient(SSLSocketFactory socketFactory, HttpResponseParser httpResponseParser) {
-        this(new SynchronousHttpClient(socketFactory, httpResponseParser), new ThreadScheduler());
+        this(socketFactory, httpResponseParser, BoundedThreadScheduler.getInstance());
+    }
+
+    HttpClient(SSLSocketFactory socketFactory, HttpResponseParser httpResponseParser, Scheduler scheduler) {
+        this(new SynchronousHttpClient(socketFactory, httpResponseParser, HttpConnectionLimiter.getInstance()),
+                scheduler, new ExponentialBackoffRetryPolicy(MAX_RETRY_ATTEMPTS));
     }
 
     @VisibleForTesting
     HttpClient(SynchronousHttpClient syncHttpClient, Scheduler scheduler) {
+        // use a budget of its own so that tests do not spend the process-wide retry budget
+        this(syncHttpClient, scheduler, new ExponentialBackoffRetryPolicy(MAX_RETRY_ATTEMPTS,
+                new RetryBudget(RetryBudget.DEFAULT_CAPACITY, RetryBudget.DEFAULT_REFILL_INTERVAL_MS)));
+    }
+
+    @VisibleForTesting
+    HttpClient(SynchronousHttpClient syncHttpClient, Scheduler scheduler, RetryPolicy retryPolicy) {
         this.syncHttpClient = syncHttpClient;
         this.scheduler = scheduler;
-        this.retryCountMap = new HashMap<>();
+        this.retryPolicy = retryPolicy;
+        this.inFlightGetRequests = new HashMap<>();
     }
 
     String sendRequest(HttpRequest request) throws Exception {
@@ -50,73 +71,225 @@ class HttpClient {
     }
 
     void sendRequest(HttpRequest request, @RetryStrategy int retryStrategy, HttpResponseCallback callback) {
-        scheduleRequest(request, retryStrategy, callback);
+        sendRequest(request, getRetryPolicy(retryStrategy), callback);
+    }
+
+    /**
+     * Send a request on a background thread, retrying failed attempts according to the given
+     * {@link RetryPolicy}. Attempts are counted per call, so concurrent requests to the same
+     * url do not affect each other's retries. An identical GET request already in flight with the
+     * same retry policy is shared rather than sent again.
+     *
+     * @param request the request to send
+     * @param retryPolicy the policy for retrying failed attempts, or {@code null} to not retry
+     * @param callback notified on the main thread with the response or the final error, or on the
+     *                 worker thread if it is a {@link WorkerThreadCallback}
+     */
+    void sendRequest(HttpRequest request, RetryPolicy retryPolicy, HttpResponseCallback callback) {
+        RequestKey requestKey = createCoalescingKey(request, retryPolicy);
+        if (requestKey == null) {
+            scheduleAttempt(request, retryPolicy, 1, 0, callback);
+            return;
+        }
+
+        synchronized (inFlightGetRequests) {
+            InFlightRequest inFlightRequest = inFlightGetRequests.get(requestKey);
+            if (inFlightRequest != null) {
+                // an identical request is already in flight; share its response
+                inFlightRequest.addWaiter(request, callback);
+                coalescedRequestCount++;
+                return;
+            }
+
+            inFlightRequest = new InFlightRequest(request);
+            inFlightRequest.addWaiter(request, callback);
+            inFlightGetRequests.put(requestKey, inFlightRequest);
+        }
+        scheduleAttempt(request, retryPolicy, 1, 0, new CoalescedResponseCallback(requestKey));
     }
 
-    private void scheduleRequest(final HttpRequest request, @RetryStrategy final int retryStrategy, final HttpResponseCallback callback) {
-        resetRetryCount(request);
+    /**
+     * @return the number of GET requests that were not sent because an identical request was
+     * already in flight.
+     */
+    long getCoalescedRequestCount() {
+        synchronized (inFlightGetRequests) {
+            return coalescedRequestCount;
+        }
+    }
 
-        scheduler.runOnBackground(new Runnable() {
+    private static RequestKey createCoalescingKey(HttpRequest request, RetryPolicy retryPolicy) {
+        if (!"GET".equals(request.getMethod()) || request.getPath() == null) {
+            return null;
+        }
+        if (request.getCancellationToken() != null) {
+            // cancelling one caller must not cancel the request for everyone sharing it
+            return null;
+        }
+
+        URL url;
+        try {
+            url = request.getURL();
+        } catch (MalformedURLException | URISyntaxException e) {
+            return null;
+        }
+        // sort headers so that the key does not depend on insertion order
+        String requestDescription = url.toString() + new TreeMap<>(request.getHeaders())
+                + Arrays.toString(request.getCapturedResponseHeaderNames());
+        return new RequestKey(requestDescription, retryPolicy);
+    }
+
+    private void scheduleAttempt(final HttpRequest request, final RetryPolicy retryPolicy,
+                                 final int attemptCount, long delayMillis, final HttpResponseCallback callback) {
+        Runnable attempt = new Runnable() {
             @Override
             public void run() {
                 try {
                     String responseBody = syncHttpClient.request(request);
                     notifySuccessOnMainThread(callback, responseBody);
                 } catch (Exception e) {
-                    switch (retryStrategy) {
-                        case HttpClient.NO_RETRY:
-                            notifyErrorOnMainThread(callback, e);
-                            break;
-                        case HttpClient.RETRY_MAX_3_TIMES:
-                            retryGet(request, retryStrategy, callback);
-                            break;
-                    }
+                    retryOrNotifyError(request, retryPolicy, attemptCount, e, callback);
                 }
             }
-        });
+        };
+
+        if (delayMillis > 0) {
+            scheduler.runOnBackground(attempt, request.getPriority(), delayMillis);
+        } else {
+            scheduler.runOnBackground(attempt, request.getPriority());
+        }
     }
 
-    private void retryGet(final HttpRequest request, @RetryStrategy final int retryStrategy, final HttpResponseCallback callback) {
-        URL url = null;
-        try {
-            url = request.getURL();
-        } catch (MalformedURLException | URISyntaxException ignore) {}
-
-        if (url != null) {
-            int retryCount = getNumRetriesSoFar(url);
-            boolean shouldRetry = ((retryCount + 1) < MAX_RETRY_ATTEMPTS);
-            if (shouldRetry) {
-                scheduleRequest(request, retryStrategy, callback);
-                retryCountMap.put(url, retryCount + 1);
+    private void retryOrNotifyError(HttpRequest request, RetryPolicy retryPolicy, int attemptCount,
+                                    Exception error, HttpResponseCallback callback) {
+        CancellationToken cancellationToken = request.getCancellationToken();
+        if (retryPolicy == null || isDone(cancellationToken)) {
+            notifyErrorOnMainThread(callback, error);
+        } else if (attemptCount >= retryPolicy.getMaxAttempts()) {
+            String message = "Retry limit has been exceeded. Try again later.";
+            HttpClientException retryLimitException = new HttpClientException(message);
+            notifyErrorOnMainThread(callback, retryLimitException);
+        } else {
+            long delayMillis = retryPolicy.getRetryDelayMillis(attemptCount, error);
+            boolean pastDeadline = (cancellationToken != null)
+                    && (delayMillis >= cancellationToken.getRemainingMillis());
+            if (delayMillis == RetryPolicy.NO_RETRY || pastDeadline) {
+                notifyErrorOnMainThread(callback, error);
             } else {
-                String message = "Retry limit has been exceeded. Try again later.";
-                HttpClientException retryLimitException = new HttpClientException(message);
-                notifyErrorOnMainThread(callback, retryLimitException);
+                scheduleAttempt(request, retryPolicy, attemptCount + 1, delayMillis, callback);
             }
         }
     }
 
-    private int getNumRetriesSoFar(URL url) {
-        Integer retryCount = retryCountMap.get(url);
-        if (retryCount == null) {
-            return 0;
+    private static boolean isDone(CancellationToken cancellationToken) {
+        return cancellationToken != null
+                && (cancellationToken.isCancelled() || cancellationToken.isExpired());
+    }
+
+    private RetryPolicy getRetryPolicy(@RetryStrategy int retryStrategy) {
+        switch (retryStrategy) {
+            case HttpClient.RETRY_MAX_3_TIMES:
+                return retryPolicy;
+            case HttpClient.NO_RETRY:
+            default:
+                return null;
         }
-        return retryCount;
     }
 
-    private void resetRetryCount(HttpRequest request) {
-        URL url = null;
-        try {
-            url = request.getURL();
-        } catch (MalformedURLException | URISyntaxException ignore) {}
+    private class CoalescedResponseCallback implements HttpResponseCallback, WorkerThreadCallback {
 
-        if (url != null) {
-            retryCountMap.remove(url);
+        private final RequestKey requestKey;
+
+        CoalescedResponseCallback(RequestKey requestKey) {
+            this.requestKey = requestKey;
+        }
+
+        @Override
+        public void onResult(String responseBody, Exception httpError) {
+            InFlightRequest inFlightRequest;
+            synchronized (inFlightGetRequests) {
+                inFlightRequest = inFlightGetRequests.remove(requestKey);
+            }
+
+            if (inFlightRequest != null) {
+                // waiters may want their result on different threads, so notify each on its own
+                inFlightRequest.notifyWaiters(responseBody, httpError);
+            }
+        }
+    }
+
+    /**
+     * Identifies GET requests that can share a response. Waiters follow the retry policy of the
+     * request that is sent, so requests are only shared between callers with the same policy.
+     */
+    private static final class RequestKey {
+
+        private final String requestDescription;
+        private final RetryPolicy retryPolicy;
+
+        RequestKey(String requestDescription, RetryPolicy retryPolicy) {
+            this.requestDescription = requestDescription;
+            this.retryPolicy = retryPolicy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RequestKey)) {
+                return false;
+            }
+            RequestKey other = (RequestKey) o;
+            return requestDescription.equals(other.requestDescription)
+                    && retryPolicy == other.retryPolicy;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * requestDescription.hashCode() + System.identityHashCode(retryPolicy);
+        }
+    }
+
+    /**
+     * A GET request that is being sent, and the callers sharing its response.
+     */
+    private class InFlightRequest {
+
+        private final HttpRequest request;
+        private final List<HttpRequest> waitingRequests = new ArrayList<>();
+        private final List<HttpResponseCallback> waitingCallbacks = new ArrayList<>();
+
+        InFlightRequest(HttpRequest request) {
+            this.request = request;
+        }
+
+        void addWaiter(HttpRequest waitingRequest, HttpResponseCallback callback) {
+            waitingRequests.add(waitingRequest);
+            waitingCallbacks.add(callback);
+        }
+
+        void notifyWaiters(String responseBody, Exception httpError) {
+            for (int i = 0; i < waitingCallbacks.size(); i++) {
+                HttpRequest waitingRequest = waitingRequests.get(i);
+                if (waitingRequest != request) {
+                    // callers read captured response headers from their own request
+                    waitingRequest.setResponseHeaders(request.getResponseHeaders());
+                }
+                HttpResponseCallback callback = waitingCallbacks.get(i);
+                if (httpError == null) {
+                    notifySuccessOnMainThread(callback, responseBody);
+                } else {
+                    notifyErrorOnMainThread(callback, httpError);
+                }
+            }
         }
     }
 
     private void notifySuccessOnMainThread(final HttpResponseCallback callback, final String responseBody) {
-        if (callback != null) {
+        if (callback instanceof WorkerThreadCallback) {
+            callback.onResult(responseBody, null);
+        } else if (callback != null) {
             scheduler.runOnMain(new Runnable() {
                 @Override
                 public void run() {
@@ -127,7 +300,9 @@ class HttpClient {
     }
 
     private void notifyErrorOnMainThread(final HttpResponseCallback callback, final Exception e) {
-        if (callback != null) {
+        if (callback instanceof WorkerThreadCallback) {
+            callback.onResult(null, e);
+        } else if (callback != null) {
             scheduler.runOnMain(new Runnable() {
                 @Override
                 public void run() {
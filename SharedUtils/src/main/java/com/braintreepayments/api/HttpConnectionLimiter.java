@@ -0,0 +1,104 @@
+package com.braintreepayments.api;
+
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many requests {@link SynchronousHttpClient} sends to the same origin (scheme, host and
+ * port) at once. Each origin has a fair {@link Semaphore} with {@code maxConnectionsPerHost}
+ * permits, and a request that cannot get a permit within its timeout fails instead of blocking the
+ * calling thread indefinitely.
+ *
+ * This class does not own any sockets. Keeping connections alive and reusing them is left to the
+ * platform {@link java.net.HttpURLConnection} keep-alive cache.
+ */
+class HttpConnectionLimiter {
+
+    // fewer than the scheduler's threads, so requests to one slow origin cannot occupy every thread
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = BoundedThreadScheduler.DEFAULT_MAX_POOL_SIZE - 1;
+    static final long DEFAULT_ACQUIRE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static volatile HttpConnectionLimiter INSTANCE;
+
+    static HttpConnectionLimiter getInstance() {
+        if (INSTANCE == null) {
+            synchronized (HttpConnectionLimiter.class) {
+                // double check that instance was not created in another thread
+                if (INSTANCE == null) {
+                    INSTANCE = new HttpConnectionLimiter(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final int maxConnectionsPerHost;
+    private final ConcurrentMap<String, Semaphore> hostPermits;
+
+    HttpConnectionLimiter(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must be at least 1");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.hostPermits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get a permit to connect to the origin of the given url, waiting at most
+     * {@link #DEFAULT_ACQUIRE_TIMEOUT_MS}.
+     *
+     * @see #acquire(URL, long)
+     */
+    void acquire(URL url) throws InterruptedException, SocketTimeoutException {
+        acquire(url, DEFAULT_ACQUIRE_TIMEOUT_MS);
+    }
+
+    /**
+     * Get a permit to connect to the origin of the given url. Waits while
+     * {@code maxConnectionsPerHost} requests to the same origin are in flight.
+     *
+     * @param url the url that is about to be requested
+     * @param timeoutMillis the longest time to wait for a permit
+     * @throws SocketTimeoutException if no permit became available within {@code timeoutMillis}
+     */
+    void acquire(URL url, long timeoutMillis) throws InterruptedException, SocketTimeoutException {
+        String origin = getOrigin(url);
+        if (!getPermits(origin).tryAcquire(Math.max(timeoutMillis, 0), TimeUnit.MILLISECONDS)) {
+            throw new SocketTimeoutException("Timed out waiting for a connection to " + origin);
+        }
+    }
+
+    /**
+     * Return a permit obtained with {@link #acquire(URL, long)}.
+     *
+     * @param url the url that was requested
+     */
+    void release(URL url) {
+        getPermits(getOrigin(url)).release();
+    }
+
+    int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    private Semaphore getPermits(String origin) {
+        Semaphore permits = hostPermits.get(origin);
+        if (permits == null) {
+            Semaphore newPermits = new Semaphore(maxConnectionsPerHost, true);
+            permits = hostPermits.putIfAbsent(origin, newPermits);
+            if (permits == null) {
+                permits = newPermits;
+            }
+        }
+        return permits;
+    }
+
+    private static String getOrigin(URL url) {
+        int port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
+        return String.format("%s://%s:%d", url.getProtocol(), url.getHost(), port);
+    }
+}
@@ -16,17 +16,25 @@ class HttpRequest {
 
     private static final int THIRTY_SECONDS_MS = 30000;
 
+    static final int NO_COMPRESSION = -1;
+
     private String path;
     private String baseUrl;
     private byte[] data;
     private String method;
+    private int priority;
+    private CancellationToken cancellationToken;
+    private int compressionThreshold;
 
-    private final int readTimeout;
-    private final int connectTimeout;
+    private int readTimeout;
+    private int connectTimeout;
 
     private Map<String, String> headers;
     private final Map<String, String> additionalHeaders;
 
+    private String[] capturedResponseHeaderNames;
+    private volatile Map<String, String> responseHeaders;
+
     static HttpRequest newInstance() {
         return new HttpRequest();
     }
@@ -35,6 +43,10 @@ class HttpRequest {
         headers = null;
         additionalHeaders = new HashMap<>();
         baseUrl = "";
+        priority = Scheduler.PRIORITY_NORMAL;
+        compressionThreshold = NO_COMPRESSION;
+        capturedResponseHeaderNames = new String[0];
+        responseHeaders = Collections.emptyMap();
 
         readTimeout = THIRTY_SECONDS_MS;
         connectTimeout = THIRTY_SECONDS_MS;
@@ -60,11 +72,72 @@ class HttpRequest {
         return this;
     }
 
+    HttpRequest priority(@Scheduler.Priority int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    HttpRequest readTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    HttpRequest connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    HttpRequest cancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
+    /**
+     * Send the body with {@code Content-Encoding: gzip} when it is larger than the given size.
+     * Only enable this for endpoints that accept compressed request bodies.
+     *
+     * @param compressionThreshold size in bytes above which the body is compressed, or
+     *                             {@link #NO_COMPRESSION} to always send it uncompressed.
+     */
+    HttpRequest compressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
     HttpRequest addHeader(String name, String value) {
         additionalHeaders.put(name, value);
         return this;
     }
 
+    /**
+     * Keep the values of the given response headers, e.g. cache validators, so that they can be
+     * read with {@link #getResponseHeader(String)} once the response has been received.
+     */
+    HttpRequest captureResponseHeaders(String... names) {
+        this.capturedResponseHeaderNames = names.clone();
+        return this;
+    }
+
+    String[] getCapturedResponseHeaderNames() {
+        return capturedResponseHeaderNames.clone();
+    }
+
+    /**
+     * @return the value of a response header passed to {@link #captureResponseHeaders(String...)},
+     * or {@code null} if the response did not contain it or has not been received.
+     */
+    String getResponseHeader(String name) {
+        return responseHeaders.get(name);
+    }
+
+    void setResponseHeaders(Map<String, String> responseHeaders) {
+        this.responseHeaders = Collections.unmodifiableMap(new HashMap<>(responseHeaders));
+    }
+
+    Map<String, String> getResponseHeaders() {
+        return responseHeaders;
+    }
+
     String getPath() {
         return path;
     }
@@ -94,6 +167,11 @@ class HttpRequest {
         return Collections.unmodifiableMap(headers);
     }
 
+    @Scheduler.Priority
+    int getPriority() {
+        return priority;
+    }
+
     int getReadTimeout() {
         return readTimeout;
     }
@@ -102,6 +180,14 @@ class HttpRequest {
         return connectTimeout;
     }
 
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
     URL getURL() throws MalformedURLException, URISyntaxException {
         URL url;
         if (path.startsWith("http")) {
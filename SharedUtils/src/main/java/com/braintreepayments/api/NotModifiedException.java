@@ -0,0 +1,12 @@
+package com.braintreepayments.api;
+
+/**
+ * Exception thrown when a 304 HTTP_NOT_MODIFIED response is encountered. Indicates that the
+ * resource has not changed since the version identified by the conditional request headers.
+ */
+public class NotModifiedException extends Exception {
+
+    NotModifiedException() {
+        super("Not modified");
+    }
+}
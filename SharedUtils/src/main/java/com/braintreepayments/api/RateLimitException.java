@@ -6,7 +6,22 @@ package com.braintreepayments.api;
  */
 public class RateLimitException extends Exception {
 
+    private final long retryAfterMillis;
+
     RateLimitException(String message) {
+        this(message, BaseHttpResponseParser.NO_RETRY_AFTER);
+    }
+
+    RateLimitException(String message, long retryAfterMillis) {
         super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return the delay in milliseconds requested by the server's Retry-After header, or a negative
+     * value if the server did not specify one.
+     */
+    long getRetryAfterMillis() {
+        return retryAfterMillis;
     }
 }
@@ -0,0 +1,11 @@
+package com.braintreepayments.api;
+
+/**
+ * Exception returned when an HTTP request is cancelled before it completes.
+ */
+public class RequestCancelledException extends HttpClientException {
+
+    RequestCancelledException() {
+        super("Request was cancelled");
+    }
+}
@@ -0,0 +1,83 @@
+package com.braintreepayments.api;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits how many retries can be made over time, regardless of how many
+ * requests are failing. Each retry spends one token, and tokens are refilled at a fixed rate up
+ * to the bucket capacity. Once the budget is spent, failures are returned to the caller
+ * immediately instead of adding load to a struggling server.
+ *
+ * Every {@link HttpClient} in the process spends from the instance returned by
+ * {@link #getInstance()}, so creating more clients does not allow more retries.
+ */
+class RetryBudget {
+
+    static final int DEFAULT_CAPACITY = 10;
+    static final long DEFAULT_REFILL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(6);
+
+    private static volatile RetryBudget INSTANCE;
+
+    private final int capacity;
+    private final long refillIntervalMillis;
+
+    private double tokens;
+    private long lastRefillTimeMillis;
+
+    static RetryBudget getInstance() {
+        if (INSTANCE == null) {
+            synchronized (RetryBudget.class) {
+                // double check that instance was not created in another thread
+                if (INSTANCE == null) {
+                    INSTANCE = new RetryBudget(DEFAULT_CAPACITY, DEFAULT_REFILL_INTERVAL_MS);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @param capacity the maximum number of retries that can be made in a burst.
+     * @param refillIntervalMillis the time it takes to earn back a single retry.
+     */
+    RetryBudget(int capacity, long refillIntervalMillis) {
+        if (capacity < 0 || refillIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid retry budget");
+        }
+        this.capacity = capacity;
+        this.refillIntervalMillis = refillIntervalMillis;
+        this.tokens = capacity;
+        this.lastRefillTimeMillis = -1;
+    }
+
+    /**
+     * @return {@code true} if a retry may be made, in which case it is deducted from the budget.
+     */
+    boolean tryAcquire() {
+        return tryAcquire(System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    synchronized boolean tryAcquire(long currentTimeMillis) {
+        refill(currentTimeMillis);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized int getRemainingRetries() {
+        return (int) tokens;
+    }
+
+    private void refill(long currentTimeMillis) {
+        if (lastRefillTimeMillis >= 0 && currentTimeMillis > lastRefillTimeMillis) {
+            double earned = (double) (currentTimeMillis - lastRefillTimeMillis) / refillIntervalMillis;
+            tokens = Math.min(capacity, tokens + earned);
+        }
+        lastRefillTimeMillis = currentTimeMillis;
+    }
+}
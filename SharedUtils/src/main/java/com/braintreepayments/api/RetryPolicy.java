@@ -0,0 +1,26 @@
+package com.braintreepayments.api;
+
+/**
+ * Decides whether and when {@link HttpClient} retries a failed request.
+ */
+interface RetryPolicy {
+
+    /**
+     * Returned by {@link #getRetryDelayMillis(int, Exception)} when the request should not be
+     * retried.
+     */
+    long NO_RETRY = -1;
+
+    /**
+     * @return the maximum number of times a request is sent, including the first attempt.
+     */
+    int getMaxAttempts();
+
+    /**
+     * @param attemptCount the number of attempts made so far, starting at 1.
+     * @param error the error returned by the most recent attempt.
+     * @return the delay in milliseconds before the next attempt, or {@link #NO_RETRY} if the
+     * error should be returned to the caller.
+     */
+    long getRetryDelayMillis(int attemptCount, Exception error);
+}
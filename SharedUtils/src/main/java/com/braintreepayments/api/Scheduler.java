@@ -1,6 +1,39 @@
 package com.braintreepayments.api;
 
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
 interface Scheduler {
+
+    @IntDef({ PRIORITY_LOW, PRIORITY_NORMAL, PRIORITY_HIGH })
+    @Retention(RetentionPolicy.SOURCE)
+    @interface Priority {
+    }
+
+    int PRIORITY_LOW = 0;
+    int PRIORITY_NORMAL = 1;
+    int PRIORITY_HIGH = 2;
+
     void runOnMain(Runnable runnable);
     void runOnBackground(Runnable runnable);
+
+    /**
+     * Run a runnable on a background thread. Schedulers that queue background work should run
+     * runnables with a higher priority first.
+     *
+     * @param runnable the runnable to run
+     * @param priority the priority of the runnable
+     */
+    void runOnBackground(Runnable runnable, @Priority int priority);
+
+    /**
+     * Run a runnable on a background thread after a delay.
+     *
+     * @param runnable the runnable to run
+     * @param priority the priority of the runnable
+     * @param delayMillis the time to wait in milliseconds before scheduling the runnable
+     */
+    void runOnBackground(Runnable runnable, @Priority int priority, long delayMillis);
 }
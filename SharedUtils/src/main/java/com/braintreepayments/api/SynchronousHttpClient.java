@@ -1,10 +1,16 @@
 package com.braintreepayments.api;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLException;
@@ -18,9 +24,26 @@ class SynchronousHttpClient {
 
     private SSLSocketFactory socketFactory;
     private final HttpResponseParser parser;
+    private final HttpConnectionLimiter connectionLimiter;
+
+    private final AtomicLong compressedRequestCount = new AtomicLong();
+    private final AtomicLong compressionBytesSaved = new AtomicLong();
 
     SynchronousHttpClient(SSLSocketFactory socketFactory, HttpResponseParser parser) {
+        this(socketFactory, parser, null);
+    }
+
+    /**
+     * @param socketFactory the socket factory to use for https connections.
+     * @param parser the parser used to process http responses.
+     * @param connectionLimiter limits concurrent requests to the same host. Connections whose
+     *                          response was fully read are left to the platform keep-alive cache
+     *                          instead of being disconnected. Pass {@code null} to disconnect
+     *                          after every request.
+     */
+    SynchronousHttpClient(SSLSocketFactory socketFactory, HttpResponseParser parser, HttpConnectionLimiter connectionLimiter) {
         this.parser = parser;
+        this.connectionLimiter = connectionLimiter;
         if (socketFactory != null) {
             this.socketFactory = socketFactory;
         } else {
@@ -42,19 +65,84 @@ class SynchronousHttpClient {
         }
         URL url = httpRequest.getURL();
 
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        if (connection instanceof HttpsURLConnection) {
-            if (socketFactory == null) {
-                throw new SSLException("SSLSocketFactory was not set or failed to initialize");
+        CancellationToken cancellationToken = httpRequest.getCancellationToken();
+        if (cancellationToken != null) {
+            cancellationToken.throwIfDone();
+        }
+
+        if (connectionLimiter != null) {
+            connectionLimiter.acquire(url, getAcquireTimeout(cancellationToken));
+        }
+
+        boolean reusable = false;
+        HttpURLConnection connection = null;
+        try {
+            if (cancellationToken != null) {
+                // the request may have been cancelled while waiting for a connection permit
+                cancellationToken.throwIfDone();
+            }
+            connection = (HttpURLConnection) url.openConnection();
+            if (connection instanceof HttpsURLConnection) {
+                if (socketFactory == null) {
+                    throw new SSLException("SSLSocketFactory was not set or failed to initialize");
+                }
+                ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+            }
+            if (cancellationToken != null && !cancellationToken.attach(connection)) {
+                throw new RequestCancelledException();
+            }
+
+            writeRequest(httpRequest, connection);
+            int responseCode = connection.getResponseCode();
+            captureResponseHeaders(httpRequest, connection);
+            String responseBody = parser.parse(responseCode, connection);
+
+            // the parser has consumed and closed the response stream, so the underlying
+            // socket can be handed back to the platform keep-alive pool
+            reusable = true;
+            return responseBody;
+        } catch (IOException e) {
+            // disconnecting a cancelled request surfaces as an arbitrary IOException
+            if (cancellationToken != null && cancellationToken.isCancelled()) {
+                throw new RequestCancelledException();
+            }
+            throw e;
+        } finally {
+            if (cancellationToken != null && connection != null) {
+                cancellationToken.detach(connection);
+            }
+            if (connectionLimiter != null) {
+                connectionLimiter.release(url);
+            }
+            boolean keepAlive = (connectionLimiter != null) && reusable;
+            if (connection != null && !keepAlive) {
+                connection.disconnect();
             }
-            ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
         }
+    }
 
+    private static void captureResponseHeaders(HttpRequest httpRequest, HttpURLConnection connection) {
+        String[] names = httpRequest.getCapturedResponseHeaderNames();
+        if (names.length == 0) {
+            return;
+        }
+        Map<String, String> responseHeaders = new HashMap<>();
+        for (String name : names) {
+            String value = connection.getHeaderField(name);
+            if (value != null) {
+                responseHeaders.put(name, value);
+            }
+        }
+        httpRequest.setResponseHeaders(responseHeaders);
+    }
+
+    private void writeRequest(HttpRequest httpRequest, HttpURLConnection connection) throws Exception {
         String requestMethod = httpRequest.getMethod();
         connection.setRequestMethod(requestMethod);
 
-        connection.setReadTimeout(httpRequest.getReadTimeout());
-        connection.setConnectTimeout(httpRequest.getConnectTimeout());
+        CancellationToken cancellationToken = httpRequest.getCancellationToken();
+        connection.setReadTimeout(getTimeout(httpRequest.getReadTimeout(), cancellationToken));
+        connection.setConnectTimeout(getTimeout(httpRequest.getConnectTimeout(), cancellationToken));
 
         // apply request headers
         Map<String, String> headers = httpRequest.getHeaders();
@@ -66,19 +154,120 @@ class SynchronousHttpClient {
             connection.setRequestProperty("Content-Type", "application/json");
             connection.setDoOutput(true);
 
-            OutputStream outputStream = connection.getOutputStream();
-            outputStream.write(httpRequest.getData());
-            outputStream.flush();
-            outputStream.close();
+            byte[] data = httpRequest.getData();
+            byte[] compressedData = compress(data, httpRequest.getCompressionThreshold());
+            byte[] body = data;
+            if (compressedData != null) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+                body = compressedData;
+            }
+
+            try {
+                if (body != null) {
+                    // stream the body straight to the socket instead of letting the connection
+                    // buffer a second copy of it to compute the Content-Length
+                    connection.setFixedLengthStreamingMode(body.length);
+                }
+
+                OutputStream outputStream = connection.getOutputStream();
+                outputStream.write(body);
+                outputStream.flush();
+                outputStream.close();
+            } finally {
+                if (compressedData != null) {
+                    Arrays.fill(compressedData, (byte) 0);
+                }
+            }
 
             httpRequest.dispose();
         }
+    }
 
-        int responseCode = connection.getResponseCode();
-        try {
-            return parser.parse(responseCode, connection);
-        } finally {
-            connection.disconnect();
+    /**
+     * @return the gzip compressed data, or {@code null} if the data is not larger than the
+     * threshold or does not get smaller when compressed.
+     */
+    private byte[] compress(byte[] data, int compressionThreshold) throws IOException {
+        if (data == null || compressionThreshold == HttpRequest.NO_COMPRESSION
+                || data.length <= compressionThreshold) {
+            return null;
+        }
+
+        ZeroingByteArrayOutputStream out = new ZeroingByteArrayOutputStream(data.length / 2);
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
+        gzipOutputStream.write(data);
+        gzipOutputStream.close();
+
+        byte[] compressedData = out.toByteArrayAndClear();
+        if (compressedData.length >= data.length) {
+            Arrays.fill(compressedData, (byte) 0);
+            return null;
+        }
+
+        compressedRequestCount.incrementAndGet();
+        compressionBytesSaved.addAndGet(data.length - compressedData.length);
+        return compressedData;
+    }
+
+    /**
+     * @return the number of request bodies sent gzip compressed.
+     */
+    long getCompressedRequestCount() {
+        return compressedRequestCount.get();
+    }
+
+    /**
+     * @return the total number of bytes not sent thanks to request body compression.
+     */
+    long getCompressionBytesSaved() {
+        return compressionBytesSaved.get();
+    }
+
+    /**
+     * @return the longest time to wait for a connection permit, shortened to the time left until the
+     * deadline of the cancellation token, if any.
+     */
+    private static long getAcquireTimeout(CancellationToken cancellationToken) {
+        long timeout = HttpConnectionLimiter.DEFAULT_ACQUIRE_TIMEOUT_MS;
+        if (cancellationToken == null) {
+            return timeout;
+        }
+        return Math.min(timeout, cancellationToken.getRemainingMillis());
+    }
+
+    /**
+     * @return the given socket timeout, shortened to the time left until the deadline of the
+     * cancellation token, if any. A timeout of zero means no timeout.
+     */
+    private static int getTimeout(int timeout, CancellationToken cancellationToken) {
+        if (cancellationToken == null) {
+            return timeout;
+        }
+        long remainingMillis = cancellationToken.getRemainingMillis();
+        if (remainingMillis == CancellationToken.NO_DEADLINE) {
+            return timeout;
+        }
+
+        long boundedTimeout = (timeout == 0) ? remainingMillis : Math.min(timeout, remainingMillis);
+        // a timeout of zero would disable the timeout, so wait at least one millisecond
+        return (int) Math.max(1, Math.min(boundedTimeout, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Request bodies may contain payment data, so the working buffer is zeroed once the
+     * compressed bytes have been copied out.
+     */
+    private static class ZeroingByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ZeroingByteArrayOutputStream(int initialCapacity) {
+            super(Math.max(initialCapacity, 32));
+        }
+
+        byte[] toByteArrayAndClear() {
+            byte[] result = toByteArray();
+            Arrays.fill(buf, (byte) 0);
+            reset();
+            return result;
         }
     }
 }
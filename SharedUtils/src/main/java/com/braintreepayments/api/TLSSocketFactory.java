@@ -14,16 +14,24 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 
 class TLSSocketFactory extends SSLSocketFactory {
 
+    // bounded client session cache so repeat connections can resume a TLS session
+    // instead of performing a full handshake
+    static final int SESSION_CACHE_SIZE = 16;
+    static final int SESSION_TIMEOUT_SECONDS = (int) TimeUnit.HOURS.toSeconds(1);
+
     private final SSLSocketFactory internalSSLSocketFactory;
+    private final SSLSessionContext sessionContext;
 
     static TLSSocketFactory newInstance() throws SSLException {
         return new TLSSocketFactory();
@@ -33,6 +41,7 @@ class TLSSocketFactory extends SSLSocketFactory {
         try {
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(null, null, null); // use system security providers
+            sessionContext = configureSessionCache(sslContext);
             internalSSLSocketFactory = sslContext.getSocketFactory();
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             throw new SSLException(e.getMessage());
@@ -64,6 +73,7 @@ class TLSSocketFactory extends SSLSocketFactory {
 
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(null, tmf.getTrustManagers(), null);
+            sessionContext = configureSessionCache(sslContext);
             internalSSLSocketFactory = sslContext.getSocketFactory();
         } catch (Exception e) {
             throw new SSLException(e.getMessage());
@@ -74,6 +84,23 @@ class TLSSocketFactory extends SSLSocketFactory {
         }
     }
 
+    private static SSLSessionContext configureSessionCache(SSLContext sslContext) {
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        }
+        return sessionContext;
+    }
+
+    /**
+     * @return the client session cache used to resume TLS sessions, or {@code null} if the
+     * security provider does not support one.
+     */
+    SSLSessionContext getSessionContext() {
+        return sessionContext;
+    }
+
     @Override
     public String[] getDefaultCipherSuites() {
         return internalSSLSocketFactory.getDefaultCipherSuites();
@@ -0,0 +1,11 @@
+package com.braintreepayments.api;
+
+/**
+ * Marker for callbacks that are notified on the worker thread that produced the result instead of
+ * being posted to the main thread.
+ *
+ * Used to chain asynchronous stages, e.g. authorization, configuration and a request, without a
+ * main thread hop between each of them. Only the final result needs to reach the main thread.
+ */
+interface WorkerThreadCallback {
+}
@@ -21,12 +21,14 @@ import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -152,6 +154,104 @@ public class BaseHttpResponseParserUnitTest {
         }
     }
 
+    public static class ContentLengthTest {
+
+        @Test
+        public void parse_whenContentLengthMatchesBody_returnsBody() throws Exception {
+            assertEquals("content_length_exact", parseWithContentLength("content_length_exact", 20));
+        }
+
+        @Test
+        public void parse_whenContentLengthIsSmallerThanBody_returnsWholeBody() throws Exception {
+            assertEquals("content_length_too_small", parseWithContentLength("content_length_too_small", 4));
+        }
+
+        @Test
+        public void parse_whenContentLengthIsLargerThanBody_returnsBody() throws Exception {
+            assertEquals("content_length_too_large", parseWithContentLength("content_length_too_large", 4096));
+        }
+
+        @Test
+        public void parse_whenBodyIsLargerThanDefaultBuffer_returnsWholeBody() throws Exception {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                body.append("\u00e9");
+            }
+            assertEquals(body.toString(), parseWithContentLength(body.toString(), -1));
+        }
+
+        private static String parseWithContentLength(String body, int contentLength) throws Exception {
+            HttpURLConnection connection = mock(HttpURLConnection.class);
+            when(connection.getContentLength()).thenReturn(contentLength);
+            when(connection.getInputStream()).thenReturn(createPlainTextInputStream(body));
+
+            return new BaseHttpResponseParser().parse(HTTP_OK, connection);
+        }
+    }
+
+    public static class NotModifiedTest {
+
+        @Test
+        public void parse_whenNotModified_throwsNotModifiedExceptionWithoutReadingBody() throws IOException {
+            final HttpURLConnection connection = mock(HttpURLConnection.class);
+
+            final BaseHttpResponseParser sut = new BaseHttpResponseParser();
+            assertThrows(NotModifiedException.class, new ThrowingRunnable() {
+                @Override
+                public void run() throws Throwable {
+                    sut.parse(HTTP_NOT_MODIFIED, connection);
+                }
+            });
+
+            verify(connection, never()).getInputStream();
+            verify(connection, never()).getErrorStream();
+        }
+    }
+
+    public static class RetryAfterTest {
+
+        @Test
+        public void parse_whenTooManyRequests_includesRetryAfterDelay() {
+            final HttpURLConnection connection = mock(HttpURLConnection.class);
+            when(connection.getHeaderField("Retry-After")).thenReturn("120");
+
+            final BaseHttpResponseParser sut = new BaseHttpResponseParser();
+            RateLimitException exception = assertThrows(RateLimitException.class, new ThrowingRunnable() {
+                @Override
+                public void run() throws Throwable {
+                    sut.parse(429, connection);
+                }
+            });
+
+            assertEquals(120000, exception.getRetryAfterMillis());
+        }
+
+        @Test
+        public void parseRetryAfter_withDelaySeconds_returnsMillis() {
+            assertEquals(5000, BaseHttpResponseParser.parseRetryAfter(" 5 ", 0));
+        }
+
+        @Test
+        public void parseRetryAfter_withHttpDate_returnsMillisUntilDate() {
+            // Wed, 21 Oct 2015 07:28:00 GMT
+            long date = 1445412480000L;
+            assertEquals(3000, BaseHttpResponseParser.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", date - 3000));
+        }
+
+        @Test
+        public void parseRetryAfter_withHttpDateInPast_returnsZero() {
+            long date = 1445412480000L;
+            assertEquals(0, BaseHttpResponseParser.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", date + 3000));
+        }
+
+        @Test
+        public void parseRetryAfter_whenMissingOrMalformed_returnsNoRetryAfter() {
+            assertEquals(BaseHttpResponseParser.NO_RETRY_AFTER, BaseHttpResponseParser.parseRetryAfter(null, 0));
+            assertEquals(BaseHttpResponseParser.NO_RETRY_AFTER, BaseHttpResponseParser.parseRetryAfter("-1", 0));
+            assertEquals(BaseHttpResponseParser.NO_RETRY_AFTER, BaseHttpResponseParser.parseRetryAfter("soon", 0));
+        }
+    }
+
     private static InputStream createPlainTextInputStream(String input) {
         return spy(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
     }
@@ -0,0 +1,140 @@
+package com.braintreepayments.api;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class BoundedThreadSchedulerUnitTest {
+
+    private Handler mainThreadHandler;
+
+    @Before
+    public void beforeEach() {
+        mainThreadHandler = mock(Handler.class);
+    }
+
+    @Test
+    public void runOnMain_postsRunnableToHandler() {
+        BoundedThreadScheduler sut = new BoundedThreadScheduler(mainThreadHandler, 1, 2, 1000);
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {}
+        };
+
+        sut.runOnMain(runnable);
+
+        verify(mainThreadHandler).post(runnable);
+    }
+
+    @Test(timeout = 5000)
+    public void runOnBackground_whenPoolIsBusy_runsHigherPriorityRunnablesFirst() throws InterruptedException {
+        BoundedThreadScheduler sut = new BoundedThreadScheduler(mainThreadHandler, 1, 1, 1000);
+
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        final CountDownLatch completionLatch = new CountDownLatch(4);
+        final List<String> executionOrder = Collections.synchronizedList(new ArrayList<String>());
+
+        sut.runOnBackground(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockingLatch.await();
+                } catch (InterruptedException ignored) {
+                }
+                completionLatch.countDown();
+            }
+        });
+
+        sut.runOnBackground(createRecordingRunnable("analytics", executionOrder, completionLatch), Scheduler.PRIORITY_LOW);
+        sut.runOnBackground(createRecordingRunnable("config", executionOrder, completionLatch), Scheduler.PRIORITY_NORMAL);
+        sut.runOnBackground(createRecordingRunnable("tokenize", executionOrder, completionLatch), Scheduler.PRIORITY_HIGH);
+
+        assertEquals(3, sut.getQueueDepth());
+
+        blockingLatch.countDown();
+        completionLatch.await();
+
+        assertEquals(Arrays.asList("tokenize", "config", "analytics"), executionOrder);
+        assertEquals(3, sut.getMaxQueueDepth());
+        assertEquals(0, sut.getQueueDepth());
+    }
+
+    @Test(timeout = 5000)
+    public void runOnBackground_growsPoolUpToMaxPoolSizeBeforeQueueing() throws InterruptedException {
+        BoundedThreadScheduler sut = new BoundedThreadScheduler(mainThreadHandler, 1, 2, 1000);
+
+        final CountDownLatch startedLatch = new CountDownLatch(2);
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        Runnable blockingRunnable = new Runnable() {
+            @Override
+            public void run() {
+                startedLatch.countDown();
+                try {
+                    blockingLatch.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+
+        sut.runOnBackground(blockingRunnable);
+        sut.runOnBackground(blockingRunnable);
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS));
+
+        sut.runOnBackground(blockingRunnable);
+
+        assertEquals(2, sut.getActiveThreadCount());
+        assertEquals(1, sut.getQueueDepth());
+        blockingLatch.countDown();
+    }
+
+    @Test(timeout = 5000)
+    public void getAverageWaitTimeMillis_reportsTimeRunnablesSpentInQueue() throws InterruptedException {
+        BoundedThreadScheduler sut = new BoundedThreadScheduler(mainThreadHandler, 1, 1, 1000);
+
+        final CountDownLatch completionLatch = new CountDownLatch(2);
+        sut.runOnBackground(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                completionLatch.countDown();
+            }
+        });
+        sut.runOnBackground(new Runnable() {
+            @Override
+            public void run() {
+                completionLatch.countDown();
+            }
+        });
+        completionLatch.await();
+
+        assertEquals(2, sut.getStartedTaskCount());
+        assertTrue(sut.getMaxWaitTimeMillis() >= 90);
+        assertTrue(sut.getAverageWaitTimeMillis() >= 45);
+    }
+
+    private static Runnable createRecordingRunnable(final String name, final List<String> executionOrder, final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executionOrder.add(name);
+                latch.countDown();
+            }
+        };
+    }
+}
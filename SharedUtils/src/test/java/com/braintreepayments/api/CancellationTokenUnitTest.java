@@ -0,0 +1,95 @@
+package com.braintreepayments.api;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CancellationTokenUnitTest {
+
+    @Test
+    public void getRemainingMillis_returnsTimeLeftUntilDeadline() {
+        CancellationToken sut = new CancellationToken(1000, 0);
+
+        assertEquals(1000, sut.getRemainingMillis(0));
+        assertEquals(250, sut.getRemainingMillis(750000000L));
+        assertEquals(-500, sut.getRemainingMillis(1500000000L));
+    }
+
+    @Test
+    public void getRemainingMillis_withoutDeadline_returnsNoDeadline() {
+        CancellationToken sut = new CancellationToken();
+
+        assertEquals(CancellationToken.NO_DEADLINE, sut.getRemainingMillis());
+        assertFalse(sut.isExpired());
+    }
+
+    @Test
+    public void constructor_whenDeadlineOverflows_hasNoDeadline() {
+        CancellationToken maxTimeout = new CancellationToken(Long.MAX_VALUE, 1000);
+        CancellationToken lateClock = new CancellationToken(Long.MAX_VALUE / 1000000, Long.MAX_VALUE - 1000);
+
+        assertEquals(CancellationToken.NO_DEADLINE, maxTimeout.getRemainingMillis(1000));
+        assertEquals(CancellationToken.NO_DEADLINE, lateClock.getRemainingMillis(Long.MAX_VALUE - 1000));
+        assertFalse(maxTimeout.isExpired());
+    }
+
+    @Test
+    public void cancel_disconnectsAttachedConnections() {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        HttpURLConnection detachedConnection = mock(HttpURLConnection.class);
+
+        CancellationToken sut = new CancellationToken();
+        sut.attach(connection);
+        sut.attach(detachedConnection);
+        sut.detach(detachedConnection);
+        sut.cancel();
+
+        assertTrue(sut.isCancelled());
+        verify(connection).disconnect();
+        verify(detachedConnection, never()).disconnect();
+    }
+
+    @Test
+    public void attach_whenCancelled_returnsFalse() {
+        CancellationToken sut = new CancellationToken();
+        sut.cancel();
+
+        assertFalse(sut.attach(mock(HttpURLConnection.class)));
+    }
+
+    @Test
+    public void throwIfDone_whenCancelled_throwsRequestCancelledException() {
+        final CancellationToken sut = new CancellationToken();
+        sut.cancel();
+
+        RequestCancelledException exception = assertThrows(RequestCancelledException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                sut.throwIfDone();
+            }
+        });
+        assertEquals("Request was cancelled", exception.getMessage());
+    }
+
+    @Test
+    public void throwIfDone_whenDeadlineHasPassed_throwsSocketTimeoutException() {
+        final CancellationToken sut = new CancellationToken(0);
+
+        assertThrows(SocketTimeoutException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                sut.throwIfDone();
+            }
+        });
+    }
+}
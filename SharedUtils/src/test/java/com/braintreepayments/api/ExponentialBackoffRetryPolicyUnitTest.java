@@ -0,0 +1,77 @@
+package com.braintreepayments.api;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExponentialBackoffRetryPolicyUnitTest {
+
+    private Random random;
+
+    @Before
+    public void beforeEach() {
+        random = mock(Random.class);
+        when(random.nextDouble()).thenReturn(0.5);
+    }
+
+    @Test
+    public void getRetryDelayMillis_growsExponentiallyWithJitter() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(10, 1000));
+        Exception error = new ServerException("error");
+
+        assertEquals(50, sut.getRetryDelayMillis(1, error));
+        assertEquals(100, sut.getRetryDelayMillis(2, error));
+        assertEquals(200, sut.getRetryDelayMillis(3, error));
+    }
+
+    @Test
+    public void getRetryDelayMillis_isCappedAtMaxDelay() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(10, 1000));
+
+        assertEquals(250, sut.getRetryDelayMillis(20, new ServerException("error")));
+    }
+
+    @Test
+    public void getRetryDelayMillis_whenRetryAfterIsSent_returnsRetryAfterDelay() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(10, 1000));
+
+        assertEquals(2000, sut.getRetryDelayMillis(1, new RateLimitException("error", 2000)));
+        assertEquals(3000, sut.getRetryDelayMillis(1, new ServiceUnavailableException("error", 3000)));
+    }
+
+    @Test
+    public void getRetryDelayMillis_whenRetryAfterExceedsMax_returnsNoRetry() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(10, 1000));
+
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new RateLimitException("error", 60000)));
+    }
+
+    @Test
+    public void getRetryDelayMillis_whenErrorIsNotRetryable_returnsNoRetry() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(10, 1000));
+
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new AuthorizationException("error")));
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new AuthenticationException("error")));
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new UnprocessableEntityException("error")));
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new UpgradeRequiredException("error")));
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, new NotModifiedException()));
+    }
+
+    @Test
+    public void getRetryDelayMillis_whenRetryBudgetIsSpent_returnsNoRetry() {
+        ExponentialBackoffRetryPolicy sut = createPolicy(new RetryBudget(1, 60000));
+        Exception error = new ServerException("error");
+
+        assertEquals(50, sut.getRetryDelayMillis(1, error));
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelayMillis(1, error));
+    }
+
+    private ExponentialBackoffRetryPolicy createPolicy(RetryBudget retryBudget) {
+        return new ExponentialBackoffRetryPolicy(3, 100, 500, 30000, retryBudget, random);
+    }
+}
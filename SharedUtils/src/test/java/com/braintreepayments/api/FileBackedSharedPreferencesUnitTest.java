@@ -0,0 +1,307 @@
+package com.braintreepayments.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+public class FileBackedSharedPreferencesUnitTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private Executor directExecutor;
+
+    @Before
+    public void beforeEach() {
+        directory = new File(temporaryFolder.getRoot(), "preferences");
+        directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+    }
+
+    @Test
+    public void edit_storesEverySupportedType() {
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit()
+                .putString("string", "value")
+                .putStringSet("set", new HashSet<>(Arrays.asList("a", "b")))
+                .putInt("int", 1)
+                .putLong("long", 2L)
+                .putFloat("float", 3.5f)
+                .putBoolean("boolean", true)
+                .apply();
+
+        SharedPreferences reloaded = new FileBackedSharedPreferences(directory, null, directExecutor);
+        assertEquals("value", reloaded.getString("string", null));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), reloaded.getStringSet("set", null));
+        assertEquals(1, reloaded.getInt("int", 0));
+        assertEquals(2L, reloaded.getLong("long", 0));
+        assertEquals(3.5f, reloaded.getFloat("float", 0), 0);
+        assertTrue(reloaded.getBoolean("boolean", false));
+        assertEquals(6, reloaded.getAll().size());
+    }
+
+    @Test
+    public void edit_writesOneFilePerKey() {
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit().putString("first", "1").putString("second", "2").commit();
+
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void getString_whenMissingOrDifferentType_returnsDefault() {
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit().putLong("long", 1L).apply();
+
+        assertEquals("default", sut.getString("missing", "default"));
+        assertEquals("default", sut.getString("long", "default"));
+        assertFalse(sut.contains("missing"));
+        assertTrue(sut.contains("long"));
+    }
+
+    @Test
+    public void remove_deletesKey() {
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit().putString("key", "value").apply();
+        sut.edit().remove("key").apply();
+
+        assertNull(sut.getString("key", null));
+        assertNull(new FileBackedSharedPreferences(directory, null, directExecutor).getString("key", null));
+    }
+
+    @Test
+    public void clear_removesAllKeys() {
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit().putString("first", "1").putString("second", "2").apply();
+        sut.edit().clear().putString("third", "3").apply();
+
+        SharedPreferences reloaded = new FileBackedSharedPreferences(directory, null, directExecutor);
+        assertFalse(reloaded.contains("first"));
+        assertFalse(reloaded.contains("second"));
+        assertEquals("3", reloaded.getString("third", null));
+    }
+
+    @Test
+    public void getString_onMainThreadBeforeLoadingFinishes_returnsStoredValue() {
+        new FileBackedSharedPreferences(directory, null, directExecutor)
+                .edit().putString("key", "value").putBoolean("flag", true).apply();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, queuedExecutor);
+
+        assertFalse(sut.isLoaded());
+        assertEquals("value", sut.getString("key", "default"));
+        assertTrue(sut.getBoolean("flag", false));
+        assertFalse(sut.contains("missing"));
+
+        queuedExecutor.runAll();
+        assertTrue(sut.isLoaded());
+        assertEquals("value", sut.getString("key", null));
+    }
+
+    @Test
+    public void getString_offMainThreadBeforeLoadingFinishes_waitsForLoader() throws InterruptedException {
+        new FileBackedSharedPreferences(directory, null, directExecutor)
+                .edit().putString("key", "value").apply();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        final FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, queuedExecutor);
+        final AtomicReference<String> result = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(sut.getString("key", null));
+            }
+        });
+        reader.start();
+
+        queuedExecutor.runAll();
+        reader.join();
+        assertEquals("value", result.get());
+    }
+
+    @Test
+    public void edit_beforeLoadingFinishes_winsOverValueOnDisk() {
+        new FileBackedSharedPreferences(directory, null, directExecutor)
+                .edit().putString("key", "old").apply();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, queuedExecutor);
+        sut.edit().putString("key", "new").apply();
+        queuedExecutor.runAll();
+
+        assertEquals("new", sut.getString("key", null));
+        assertEquals("new", new FileBackedSharedPreferences(directory, null, directExecutor).getString("key", null));
+    }
+
+    @Test
+    public void clear_beforeLoadingFinishes_removesValuesOnDisk() {
+        new FileBackedSharedPreferences(directory, null, directExecutor)
+                .edit().putString("first", "1").putString("second", "2").apply();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, queuedExecutor);
+        sut.edit().clear().putString("third", "3").apply();
+        queuedExecutor.runAll();
+
+        assertFalse(sut.contains("first"));
+        assertFalse(sut.contains("second"));
+        assertEquals("3", sut.getString("third", null));
+
+        SharedPreferences reloaded = new FileBackedSharedPreferences(directory, null, directExecutor);
+        assertFalse(reloaded.contains("first"));
+        assertEquals("3", reloaded.getString("third", null));
+    }
+
+    @Test
+    public void constructor_deletesOrphanedTemporaryFiles() throws IOException {
+        assertTrue(directory.mkdirs());
+        File tempFile = new File(directory, "orphan.value.tmp");
+        assertTrue(tempFile.createNewFile());
+
+        new FileBackedSharedPreferences(directory, null, directExecutor);
+
+        assertFalse(tempFile.exists());
+    }
+
+    @Test
+    public void constructor_migratesLegacyPreferencesOnceAndDeletesThem() {
+        Map<String, Object> legacyValues = new HashMap<>();
+        legacyValues.put("uuid", "legacy-uuid");
+        legacyValues.put("timestamp", 5L);
+        FileBackedSharedPreferences.LegacyPreferences legacyPreferences =
+                mock(FileBackedSharedPreferences.LegacyPreferences.class);
+        doReturn(legacyValues).when(legacyPreferences).getAll();
+
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, legacyPreferences, directExecutor);
+        assertEquals("legacy-uuid", sut.getString("uuid", null));
+        assertEquals(5L, sut.getLong("timestamp", 0));
+        verify(legacyPreferences).delete();
+
+        FileBackedSharedPreferences.LegacyPreferences unusedLegacyPreferences =
+                mock(FileBackedSharedPreferences.LegacyPreferences.class);
+        SharedPreferences reloaded = new FileBackedSharedPreferences(directory, unusedLegacyPreferences, directExecutor);
+        assertEquals("legacy-uuid", reloaded.getString("uuid", null));
+        verify(unusedLegacyPreferences, never()).getAll();
+        verify(unusedLegacyPreferences, never()).delete();
+    }
+
+    @Test
+    public void getString_beforeMigrationFinishes_returnsLegacyValueAndKeepsIt() {
+        Map<String, Object> legacyValues = new HashMap<>();
+        legacyValues.put("uuid", "legacy-uuid");
+        FileBackedSharedPreferences.LegacyPreferences legacyPreferences =
+                mock(FileBackedSharedPreferences.LegacyPreferences.class);
+        doReturn(legacyValues).when(legacyPreferences).getAll();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, legacyPreferences, queuedExecutor);
+
+        // callers such as UUIDHelper create and save a new value when none is found
+        assertEquals("legacy-uuid", sut.getString("uuid", null));
+
+        queuedExecutor.runAll();
+        assertEquals("legacy-uuid", sut.getString("uuid", null));
+        verify(legacyPreferences).delete();
+
+        SharedPreferences reloaded = new FileBackedSharedPreferences(directory, null, directExecutor);
+        assertEquals("legacy-uuid", reloaded.getString("uuid", null));
+    }
+
+    @Test
+    public void getAll_beforeLoadingFinishes_waitsForLoader() throws InterruptedException {
+        new FileBackedSharedPreferences(directory, null, directExecutor)
+                .edit().putString("first", "1").putString("second", "2").apply();
+
+        QueuedExecutor queuedExecutor = new QueuedExecutor();
+        final FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, queuedExecutor);
+        final AtomicReference<Map<String, ?>> result = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(sut.getAll());
+            }
+        });
+        reader.start();
+
+        queuedExecutor.runAll();
+        reader.join();
+        assertEquals(2, result.get().size());
+    }
+
+    @Test
+    public void listeners_areNotifiedOfChangedKeys() {
+        final List<String> changedKeys = new ArrayList<>();
+        SharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.registerOnSharedPreferenceChangeListener(new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                changedKeys.add(key);
+            }
+        });
+
+        sut.edit().putString("key", "value").apply();
+
+        assertEquals(Arrays.asList("key"), changedKeys);
+    }
+
+    @Test
+    public void metrics_countReadsAndWrites() {
+        FileBackedSharedPreferences sut = new FileBackedSharedPreferences(directory, null, directExecutor);
+        sut.edit().putString("key", "value").apply();
+        sut.edit().putString("other", "value").apply();
+        sut.getString("key", null);
+
+        assertEquals(1, sut.getReadCount());
+        assertEquals(2, sut.getWriteCount());
+        assertTrue(sut.getMaxReadLatencyMicros() >= sut.getAverageReadLatencyMicros());
+        assertTrue(sut.getMaxWriteLatencyMicros() >= sut.getAverageWriteLatencyMicros());
+    }
+
+    private static class QueuedExecutor implements Executor {
+
+        private final List<Runnable> runnables = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            runnables.add(runnable);
+        }
+
+        void runAll() {
+            while (!runnables.isEmpty()) {
+                runnables.remove(0).run();
+            }
+        }
+    }
+}
@@ -3,6 +3,11 @@ package com.braintreepayments.api;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -77,6 +82,35 @@ public class HttpClientUnitTest {
         verify(callback).onResult("response body", null);
     }
 
+    @Test
+    public void sendRequest_whenCallbackIsWorkerThreadCallback_notifiesSuccessOnBackgroundThread() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        when(syncHttpClient.request(httpRequest)).thenReturn("response body");
+
+        HttpResponseCallback callback = mock(WorkerThreadHttpResponseCallback.class);
+        sut.sendRequest(httpRequest, callback);
+
+        threadScheduler.flushBackgroundThread();
+        verify(callback).onResult("response body", null);
+        verify(threadScheduler, never()).runOnMain(any(Runnable.class));
+    }
+
+    @Test
+    public void sendRequest_whenCallbackIsWorkerThreadCallback_notifiesErrorOnBackgroundThread() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        Exception exception = new Exception("error");
+        when(syncHttpClient.request(httpRequest)).thenThrow(exception);
+
+        HttpResponseCallback callback = mock(WorkerThreadHttpResponseCallback.class);
+        sut.sendRequest(httpRequest, callback);
+
+        threadScheduler.flushBackgroundThread();
+        verify(callback).onResult(null, exception);
+        verify(threadScheduler, never()).runOnMain(any(Runnable.class));
+    }
+
     @Test
     public void sendRequest_whenCallbackIsNull_doesNotNotifySuccess() throws Exception {
         HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
@@ -162,6 +196,273 @@ public class HttpClientUnitTest {
         verify(callback).onResult("response body", null);
     }
 
+    @Test
+    public void sendRequest_whenRetryMax3TimesEnabled_tracksAttemptsPerRequest() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest firstRequest = new HttpRequest().path("https://example.com");
+        HttpRequest secondRequest = new HttpRequest().path("https://example.com");
+        Exception exception = new Exception("error");
+        when(syncHttpClient.request(firstRequest)).thenThrow(exception);
+        when(syncHttpClient.request(secondRequest)).thenThrow(exception);
+
+        sut.sendRequest(firstRequest, HttpClient.RETRY_MAX_3_TIMES, mock(HttpResponseCallback.class));
+        sut.sendRequest(secondRequest, HttpClient.RETRY_MAX_3_TIMES, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient, times(3)).request(firstRequest);
+        verify(syncHttpClient, times(3)).request(secondRequest);
+    }
+
+    @Test
+    public void sendRequest_withRetryPolicy_schedulesRetryWithPolicyDelay() throws Exception {
+        RetryPolicy retryPolicy = mock(RetryPolicy.class);
+        when(retryPolicy.getMaxAttempts()).thenReturn(3);
+        Exception exception = new Exception("error");
+        when(retryPolicy.getRetryDelayMillis(1, exception)).thenReturn(250L);
+        when(retryPolicy.getRetryDelayMillis(2, exception)).thenReturn(750L);
+
+        when(syncHttpClient.request(httpRequest)).thenThrow(exception);
+
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler, retryPolicy);
+        sut.sendRequest(httpRequest, HttpClient.RETRY_MAX_3_TIMES, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient, times(3)).request(httpRequest);
+        assertEquals(Arrays.asList(250L, 750L), threadScheduler.getBackgroundThreadDelays());
+    }
+
+    @Test
+    public void sendRequest_whenRetryPolicyDeclinesRetry_notifiesOriginalError() throws Exception {
+        RetryPolicy retryPolicy = mock(RetryPolicy.class);
+        when(retryPolicy.getMaxAttempts()).thenReturn(3);
+        Exception exception = new Exception("error");
+        when(retryPolicy.getRetryDelayMillis(1, exception)).thenReturn(RetryPolicy.NO_RETRY);
+
+        when(syncHttpClient.request(httpRequest)).thenThrow(exception);
+
+        HttpResponseCallback callback = mock(HttpResponseCallback.class);
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler, retryPolicy);
+        sut.sendRequest(httpRequest, HttpClient.RETRY_MAX_3_TIMES, callback);
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(syncHttpClient, times(1)).request(httpRequest);
+        verify(callback).onResult(null, exception);
+    }
+
+    @Test
+    public void sendRequest_whenCancellationTokenIsCancelled_doesNotRetry() throws Exception {
+        CancellationToken cancellationToken = new CancellationToken();
+        httpRequest.cancellationToken(cancellationToken);
+
+        Exception exception = new Exception("error");
+        when(syncHttpClient.request(httpRequest)).thenThrow(exception);
+
+        HttpResponseCallback callback = mock(HttpResponseCallback.class);
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+        sut.sendRequest(httpRequest, HttpClient.RETRY_MAX_3_TIMES, callback);
+        cancellationToken.cancel();
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(syncHttpClient, times(1)).request(httpRequest);
+        verify(callback).onResult(null, exception);
+    }
+
+    @Test
+    public void sendRequest_whenRetryDelayExceedsDeadline_doesNotRetry() throws Exception {
+        RetryPolicy retryPolicy = mock(RetryPolicy.class);
+        when(retryPolicy.getMaxAttempts()).thenReturn(3);
+        Exception exception = new Exception("error");
+        when(retryPolicy.getRetryDelayMillis(1, exception)).thenReturn(60000L);
+
+        httpRequest.cancellationToken(new CancellationToken(1000));
+        when(syncHttpClient.request(httpRequest)).thenThrow(exception);
+
+        HttpResponseCallback callback = mock(HttpResponseCallback.class);
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler, retryPolicy);
+        sut.sendRequest(httpRequest, HttpClient.RETRY_MAX_3_TIMES, callback);
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(syncHttpClient, times(1)).request(httpRequest);
+        verify(callback).onResult(null, exception);
+    }
+
+    @Test
+    public void sendRequest_whenIdenticalGetRequestIsInFlight_sendsSingleRequestAndNotifiesAllCallbacks() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest firstRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .addHeader("Client-Key", "tokenization-key");
+        HttpRequest secondRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .addHeader("Client-Key", "tokenization-key");
+        when(syncHttpClient.request(firstRequest)).thenReturn("response body");
+
+        HttpResponseCallback firstCallback = mock(HttpResponseCallback.class);
+        HttpResponseCallback secondCallback = mock(HttpResponseCallback.class);
+        sut.sendRequest(firstRequest, firstCallback);
+        sut.sendRequest(secondRequest, secondCallback);
+
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(syncHttpClient, times(1)).request(any(HttpRequest.class));
+        verify(firstCallback).onResult("response body", null);
+        verify(secondCallback).onResult("response body", null);
+        assertEquals(1, sut.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void sendRequest_whenGetRequestIsCoalesced_notifiesEachCallbackOnItsOwnThread() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest request = new HttpRequest().method("GET").path("https://example.com/config");
+        when(syncHttpClient.request(request)).thenReturn("response body");
+
+        HttpResponseCallback mainThreadCallback = mock(HttpResponseCallback.class);
+        HttpResponseCallback workerThreadCallback = mock(WorkerThreadHttpResponseCallback.class);
+        sut.sendRequest(request, mainThreadCallback);
+        sut.sendRequest(request, workerThreadCallback);
+
+        threadScheduler.flushBackgroundThread();
+        verify(workerThreadCallback).onResult("response body", null);
+        verify(mainThreadCallback, never()).onResult("response body", null);
+
+        threadScheduler.flushMainThread();
+        verify(mainThreadCallback).onResult("response body", null);
+        assertEquals(1, sut.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void sendRequest_whenGetRequestsHaveDifferentAuthHeaders_sendsEachRequest() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest firstRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .addHeader("Client-Key", "tokenization-key");
+        HttpRequest secondRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .addHeader("Client-Key", "other-tokenization-key");
+
+        sut.sendRequest(firstRequest, mock(HttpResponseCallback.class));
+        sut.sendRequest(secondRequest, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient).request(firstRequest);
+        verify(syncHttpClient).request(secondRequest);
+        assertEquals(0, sut.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void sendRequest_whenGetRequestsHaveDifferentRetryStrategies_sendsEachRequest() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest request = new HttpRequest().method("GET").path("https://example.com/config");
+        Exception exception = new Exception("error");
+        when(syncHttpClient.request(request)).thenThrow(exception);
+
+        HttpResponseCallback noRetryCallback = mock(HttpResponseCallback.class);
+        sut.sendRequest(request, HttpClient.NO_RETRY, noRetryCallback);
+        sut.sendRequest(request, HttpClient.RETRY_MAX_3_TIMES, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(syncHttpClient, times(4)).request(request);
+        verify(noRetryCallback).onResult(null, exception);
+        assertEquals(0, sut.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void sendRequest_whenIdenticalGetRequestFails_notifiesAllCallbacksOfError() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest request = new HttpRequest().method("GET").path("https://example.com/config");
+        Exception exception = new Exception("error");
+        when(syncHttpClient.request(request)).thenThrow(exception);
+
+        HttpResponseCallback firstCallback = mock(HttpResponseCallback.class);
+        HttpResponseCallback secondCallback = mock(HttpResponseCallback.class);
+        sut.sendRequest(request, firstCallback);
+        sut.sendRequest(request, secondCallback);
+
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        verify(firstCallback).onResult(null, exception);
+        verify(secondCallback).onResult(null, exception);
+    }
+
+    @Test
+    public void sendRequest_whenGetRequestIsCoalesced_sharesCapturedResponseHeaders() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        final HttpRequest firstRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .captureResponseHeaders("ETag");
+        HttpRequest secondRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .captureResponseHeaders("ETag");
+        when(syncHttpClient.request(firstRequest)).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                firstRequest.setResponseHeaders(Collections.singletonMap("ETag", "\"v1\""));
+                return "response body";
+            }
+        });
+
+        sut.sendRequest(firstRequest, mock(HttpResponseCallback.class));
+        sut.sendRequest(secondRequest, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        assertEquals(1, sut.getCoalescedRequestCount());
+        assertEquals("\"v1\"", secondRequest.getResponseHeader("ETag"));
+    }
+
+    @Test
+    public void sendRequest_whenGetRequestsCaptureDifferentResponseHeaders_sendsEachRequest() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest firstRequest = new HttpRequest().method("GET").path("https://example.com/config")
+                .captureResponseHeaders("ETag");
+        HttpRequest secondRequest = new HttpRequest().method("GET").path("https://example.com/config");
+
+        sut.sendRequest(firstRequest, mock(HttpResponseCallback.class));
+        sut.sendRequest(secondRequest, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient).request(firstRequest);
+        verify(syncHttpClient).request(secondRequest);
+    }
+
+    @Test
+    public void sendRequest_afterCoalescedGetRequestCompletes_sendsNewRequest() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest request = new HttpRequest().method("GET").path("https://example.com/config");
+        when(syncHttpClient.request(request)).thenReturn("response body");
+
+        sut.sendRequest(request, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+        threadScheduler.flushMainThread();
+
+        sut.sendRequest(request, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient, times(2)).request(request);
+    }
+
+    @Test
+    public void sendRequest_doesNotCoalescePostRequests() throws Exception {
+        HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
+
+        HttpRequest request = new HttpRequest().method("POST").path("https://example.com/tokenize").data("{}");
+
+        sut.sendRequest(request, mock(HttpResponseCallback.class));
+        sut.sendRequest(request, mock(HttpResponseCallback.class));
+        threadScheduler.flushBackgroundThread();
+
+        verify(syncHttpClient, times(2)).request(request);
+    }
+
     @Test
     public void sendRequestSynchronous_sendsHttpRequest() throws Exception {
         HttpClient sut = new HttpClient(syncHttpClient, threadScheduler);
@@ -171,4 +472,7 @@ public class HttpClientUnitTest {
         String result = sut.sendRequest(httpRequest);
         assertEquals("response body", result);
     }
+
+    private interface WorkerThreadHttpResponseCallback extends HttpResponseCallback, WorkerThreadCallback {
+    }
 }
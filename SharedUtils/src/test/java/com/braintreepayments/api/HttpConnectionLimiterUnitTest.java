@@ -0,0 +1,79 @@
+package com.braintreepayments.api;
+
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import static org.junit.Assert.assertTrue;
+
+public class HttpConnectionLimiterUnitTest {
+
+    @Test(timeout = 1000)
+    public void acquire_whenMaxConnectionsPerHostAcquired_blocksUntilReleased() throws Exception {
+        final HttpConnectionLimiter sut = new HttpConnectionLimiter(1);
+        final URL url = new URL("https://api.braintreegateway.com/config");
+        sut.acquire(url);
+
+        Thread waitingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sut.acquire(url);
+                } catch (InterruptedException | SocketTimeoutException ignored) {
+                }
+            }
+        });
+        waitingThread.start();
+
+        waitingThread.join(100);
+        assertTrue(waitingThread.isAlive());
+
+        sut.release(url);
+        waitingThread.join();
+    }
+
+    @Test(timeout = 1000)
+    public void acquire_whenMaxConnectionsToDifferentOriginAcquired_doesNotBlock() throws Exception {
+        HttpConnectionLimiter sut = new HttpConnectionLimiter(1);
+        sut.acquire(new URL("https://api.braintreegateway.com/config"));
+
+        sut.acquire(new URL("https://payments.braintree-api.com/graphql"), 0);
+    }
+
+    @Test(timeout = 1000, expected = SocketTimeoutException.class)
+    public void acquire_treatsDefaultPortAsSameOrigin() throws Exception {
+        HttpConnectionLimiter sut = new HttpConnectionLimiter(1);
+        sut.acquire(new URL("https://api.braintreegateway.com:443/config"));
+
+        sut.acquire(new URL("https://api.braintreegateway.com/v1/payment_methods"), 0);
+    }
+
+    @Test(timeout = 1000, expected = SocketTimeoutException.class)
+    public void acquire_whenNoConnectionIsReleasedWithinTimeout_throwsSocketTimeoutException() throws Exception {
+        HttpConnectionLimiter sut = new HttpConnectionLimiter(1);
+        URL url = new URL("https://api.braintreegateway.com/config");
+        sut.acquire(url);
+
+        sut.acquire(url, 50);
+    }
+
+    @Test
+    public void acquire_whenTimedOut_doesNotTakePermit() throws Exception {
+        HttpConnectionLimiter sut = new HttpConnectionLimiter(1);
+        URL url = new URL("https://api.braintreegateway.com/config");
+        sut.acquire(url);
+        try {
+            sut.acquire(url, 0);
+        } catch (SocketTimeoutException ignored) {
+        }
+
+        sut.release(url);
+        sut.acquire(url, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_whenMaxConnectionsPerHostIsLessThanOne_throwsIllegalArgumentException() {
+        new HttpConnectionLimiter(0);
+    }
+}
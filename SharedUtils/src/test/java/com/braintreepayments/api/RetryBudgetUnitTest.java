@@ -0,0 +1,47 @@
+package com.braintreepayments.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetUnitTest {
+
+    @Test
+    public void tryAcquire_whenBudgetIsSpent_returnsFalse() {
+        RetryBudget sut = new RetryBudget(2, 1000);
+
+        assertTrue(sut.tryAcquire(0));
+        assertTrue(sut.tryAcquire(0));
+        assertFalse(sut.tryAcquire(0));
+        assertEquals(0, sut.getRemainingRetries());
+    }
+
+    @Test
+    public void tryAcquire_refillsOneRetryPerRefillInterval() {
+        RetryBudget sut = new RetryBudget(2, 1000);
+        sut.tryAcquire(0);
+        sut.tryAcquire(0);
+
+        assertFalse(sut.tryAcquire(500));
+        assertTrue(sut.tryAcquire(1000));
+        assertFalse(sut.tryAcquire(1000));
+    }
+
+    @Test
+    public void tryAcquire_doesNotRefillAboveCapacity() {
+        RetryBudget sut = new RetryBudget(2, 1000);
+        sut.tryAcquire(0);
+
+        sut.tryAcquire(60000);
+
+        assertEquals(1, sut.getRemainingRetries());
+    }
+
+    @Test
+    public void getInstance_returnsBudgetSharedByAllClients() {
+        assertSame(RetryBudget.getInstance(), RetryBudget.getInstance());
+    }
+}
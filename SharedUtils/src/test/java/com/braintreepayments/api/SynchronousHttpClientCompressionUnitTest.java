@@ -0,0 +1,145 @@
+package com.braintreepayments.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends requests to a local server that echoes the decoded request body, to verify that
+ * compressed request bodies round-trip unchanged.
+ */
+public class SynchronousHttpClientCompressionUnitTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private volatile String lastContentEncoding;
+    private volatile int lastContentLength;
+
+    @Before
+    public void beforeEach() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                lastContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                byte[] requestBody = readFully(exchange.getRequestBody());
+                lastContentLength = requestBody.length;
+
+                byte[] responseBody = requestBody;
+                if ("gzip".equals(lastContentEncoding)) {
+                    responseBody = readFully(new GZIPInputStream(new ByteArrayInputStream(requestBody)));
+                }
+
+                exchange.sendResponseHeaders(200, responseBody.length);
+                OutputStream responseStream = exchange.getResponseBody();
+                responseStream.write(responseBody);
+                responseStream.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void afterEach() {
+        server.stop(0);
+    }
+
+    @Test
+    public void request_whenBodyIsAboveCompressionThreshold_sendsGzipBodyThatRoundTrips() throws Exception {
+        String data = createJSONPayload(200);
+        HttpRequest httpRequest = new HttpRequest()
+                .method("POST")
+                .baseUrl(baseUrl)
+                .path("echo")
+                .data(data)
+                .compressionThreshold(1024);
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(null, new BaseHttpResponseParser());
+        String response = sut.request(httpRequest);
+
+        assertEquals(data, response);
+        assertEquals("gzip", lastContentEncoding);
+        int uncompressedLength = data.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(lastContentLength < uncompressedLength);
+        assertEquals(1, sut.getCompressedRequestCount());
+        assertEquals(uncompressedLength - lastContentLength, sut.getCompressionBytesSaved());
+    }
+
+    @Test
+    public void request_whenBodyIsBelowCompressionThreshold_sendsPlainBody() throws Exception {
+        String data = createJSONPayload(2);
+        HttpRequest httpRequest = new HttpRequest()
+                .method("POST")
+                .baseUrl(baseUrl)
+                .path("echo")
+                .data(data)
+                .compressionThreshold(1024);
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(null, new BaseHttpResponseParser());
+        String response = sut.request(httpRequest);
+
+        assertEquals(data, response);
+        assertNull(lastContentEncoding);
+        assertEquals(0, sut.getCompressedRequestCount());
+        assertEquals(0, sut.getCompressionBytesSaved());
+    }
+
+    @Test
+    public void request_whenCompressionIsNotEnabled_sendsPlainBody() throws Exception {
+        String data = createJSONPayload(200);
+        HttpRequest httpRequest = new HttpRequest()
+                .method("POST")
+                .baseUrl(baseUrl)
+                .path("echo")
+                .data(data);
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(null, new BaseHttpResponseParser());
+        String response = sut.request(httpRequest);
+
+        assertEquals(data, response);
+        assertNull(lastContentEncoding);
+        assertEquals(data.getBytes(StandardCharsets.UTF_8).length, lastContentLength);
+    }
+
+    private static String createJSONPayload(int eventCount) {
+        StringBuilder builder = new StringBuilder("{\"analytics\":[");
+        for (int i = 0; i < eventCount; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"kind\":\"android.card.tokenize.started\",\"timestamp\":")
+                    .append(1650000000000L + i)
+                    .append(",\"note\":\"Bjärne Stroustrüp\"}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int count; (count = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
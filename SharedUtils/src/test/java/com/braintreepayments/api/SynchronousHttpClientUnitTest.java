@@ -1,8 +1,12 @@
 package com.braintreepayments.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,12 +16,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 
@@ -214,6 +222,88 @@ public class SynchronousHttpClientUnitTest {
         verify(connection).setConnectTimeout(456);
     }
 
+    @Test
+    public void request_withCancellationToken_boundsTimeoutsByDeadline() throws Exception {
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com")
+                .cancellationToken(new CancellationToken(5000)));
+
+        URL url = mock(URL.class);
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+
+        when(connection.getResponseCode()).thenReturn(200);
+        when(httpResponseParser.parse(200, connection)).thenReturn("http_ok");
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser);
+        sut.request(httpRequest);
+
+        ArgumentCaptor<Integer> readTimeoutCaptor = ArgumentCaptor.forClass(Integer.class);
+        verify(connection).setReadTimeout(readTimeoutCaptor.capture());
+        assertTrue(readTimeoutCaptor.getValue() <= 5000);
+        assertTrue(readTimeoutCaptor.getValue() > 0);
+    }
+
+    @Test
+    public void request_whenCancellationTokenIsCancelled_throwsWithoutOpeningConnection() throws Exception {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com")
+                .cancellationToken(cancellationToken));
+
+        final URL url = mock(URL.class);
+        when(httpRequest.getURL()).thenReturn(url);
+
+        final SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser);
+        assertThrows(RequestCancelledException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                sut.request(httpRequest);
+            }
+        });
+        verify(url, never()).openConnection();
+    }
+
+    @Test
+    public void request_whenCancelledWhileReadingResponse_throwsRequestCancelledException() throws Exception {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com")
+                .cancellationToken(cancellationToken));
+
+        URL url = mock(URL.class);
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+        when(connection.getResponseCode()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                cancellationToken.cancel();
+                throw new SocketException("Socket closed");
+            }
+        });
+
+        final SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser);
+        assertThrows(RequestCancelledException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                sut.request(httpRequest);
+            }
+        });
+        verify(connection, atLeastOnce()).disconnect();
+    }
+
     @Test
     public void request_setsHttpHeaders() throws Exception {
         final HttpRequest httpRequest = spy(new HttpRequest()
@@ -278,6 +368,60 @@ public class SynchronousHttpClientUnitTest {
         verify(connection).disconnect();
     }
 
+    @Test
+    public void request_withConnectionLimiter_onSuccess_keepsUrlConnectionAlive() throws Exception {
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com"));
+
+        URL url = spy(new URL("https://www.sample.com/sample/path"));
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpsURLConnection connection = mock(HttpsURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+
+        when(connection.getResponseCode()).thenReturn(200);
+        when(httpResponseParser.parse(200, connection)).thenReturn("http_ok");
+
+        HttpConnectionLimiter connectionLimiter = new HttpConnectionLimiter(1);
+        SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser, connectionLimiter);
+        sut.request(httpRequest);
+        sut.request(httpRequest);
+
+        verify(connection, never()).disconnect();
+        // the permit was returned, so another request to the same host does not wait
+        connectionLimiter.acquire(url, 0);
+    }
+
+    @Test
+    public void request_withConnectionLimiter_onHttpResponseParserException_closesUrlConnection() throws Exception {
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com"));
+
+        URL url = spy(new URL("https://www.sample.com/sample/path"));
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpsURLConnection connection = mock(HttpsURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+
+        when(connection.getResponseCode()).thenReturn(200);
+        when(httpResponseParser.parse(200, connection)).thenThrow(new Exception("error"));
+
+        final HttpConnectionLimiter connectionLimiter = new HttpConnectionLimiter(1);
+        final SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser, connectionLimiter);
+        assertThrows(Exception.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                sut.request(httpRequest);
+            }
+        });
+        verify(connection).disconnect();
+        connectionLimiter.acquire(url, 0);
+    }
+
     @Test
     public void request_onHttpResponseParserException_propagatesExceptionAndClosesUrlConnection() throws Exception {
         final HttpRequest httpRequest = spy(new HttpRequest()
@@ -358,6 +502,30 @@ public class SynchronousHttpClientUnitTest {
         verify(httpRequest).dispose();
     }
 
+    @Test
+    public void request_whenPost_streamsBodyWithFixedContentLength() throws Exception {
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("POST")
+                .data("Bjärne Stroustrüp")
+                .baseUrl("https://www.sample.com"));
+
+        URL url = mock(URL.class);
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+
+        when(connection.getResponseCode()).thenReturn(200);
+        when(httpResponseParser.parse(200, connection)).thenReturn("http_ok");
+        when(connection.getOutputStream()).thenReturn(mock(OutputStream.class));
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser);
+        sut.request(httpRequest);
+
+        verify(connection).setFixedLengthStreamingMode(toByteArray("Bjärne Stroustrüp").length);
+    }
+
     @Test
     public void request_whenPost_writesUTF8CharactersToOutputStream() throws Exception {
         final HttpRequest httpRequest = spy(new HttpRequest()
@@ -388,8 +556,31 @@ public class SynchronousHttpClientUnitTest {
         verify(httpRequest).dispose();
     }
 
+    @Test
+    public void request_capturesRequestedResponseHeaders() throws Exception {
+        final HttpRequest httpRequest = spy(new HttpRequest()
+                .path("sample/path")
+                .method("GET")
+                .baseUrl("https://www.sample.com")
+                .captureResponseHeaders("ETag", "Last-Modified"));
+
+        URL url = mock(URL.class);
+        when(httpRequest.getURL()).thenReturn(url);
+
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(url.openConnection()).thenReturn(connection);
+        when(connection.getResponseCode()).thenReturn(200);
+        when(connection.getHeaderField("ETag")).thenReturn("\"v1\"");
+        when(httpResponseParser.parse(200, connection)).thenReturn("http_ok");
+
+        SynchronousHttpClient sut = new SynchronousHttpClient(sslSocketFactory, httpResponseParser);
+        sut.request(httpRequest);
+
+        assertEquals("\"v1\"", httpRequest.getResponseHeader("ETag"));
+        assertNull(httpRequest.getResponseHeader("Last-Modified"));
+    }
+
     private static byte[] toByteArray(String data) {
         return data.getBytes(StandardCharsets.UTF_8);
     }
 }
-
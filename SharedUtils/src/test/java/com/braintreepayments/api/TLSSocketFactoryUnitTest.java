@@ -0,0 +1,19 @@
+package com.braintreepayments.api;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLSessionContext;
+
+import static org.junit.Assert.assertEquals;
+
+public class TLSSocketFactoryUnitTest {
+
+    @Test
+    public void constructor_configuresBoundedSessionCache() throws Exception {
+        TLSSocketFactory sut = new TLSSocketFactory();
+
+        SSLSessionContext sessionContext = sut.getSessionContext();
+        assertEquals(TLSSocketFactory.SESSION_CACHE_SIZE, sessionContext.getSessionCacheSize());
+        assertEquals(TLSSocketFactory.SESSION_TIMEOUT_SECONDS, sessionContext.getSessionTimeout());
+    }
+}
@@ -9,6 +9,7 @@ import org.mockito.stubbing.Answer;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
@@ -174,6 +175,32 @@ public class MockBraintreeClientBuilder {
             }
         }).when(braintreeClient).getConfiguration(any(ConfigurationCallback.class));
 
+        doAnswer(new Answer<BraintreeFuture<Authorization>>() {
+            @Override
+            public BraintreeFuture<Authorization> answer(InvocationOnMock invocation) {
+                BraintreeFuture<Authorization> future = new BraintreeFuture<>(createImmediateScheduler());
+                if (authorization != null) {
+                    future.complete(authorization);
+                } else if (authorizationError != null) {
+                    future.fail(authorizationError);
+                }
+                return future;
+            }
+        }).when(braintreeClient).getAuthorizationAsync();
+
+        doAnswer(new Answer<BraintreeFuture<Configuration>>() {
+            @Override
+            public BraintreeFuture<Configuration> answer(InvocationOnMock invocation) {
+                BraintreeFuture<Configuration> future = new BraintreeFuture<>(createImmediateScheduler());
+                if (configuration != null) {
+                    future.complete(configuration);
+                } else if (configurationError != null) {
+                    future.fail(configurationError);
+                }
+                return future;
+            }
+        }).when(braintreeClient).getConfigurationAsync(any(Authorization.class));
+
         doAnswer(new Answer<Void>() {
             @Override
             public Void answer(InvocationOnMock invocation) {
@@ -213,6 +240,32 @@ public class MockBraintreeClientBuilder {
             }
         }).when(braintreeClient).sendGraphQLPOST(anyString(), any(HttpResponseCallback.class));
 
+        doAnswer(new Answer<CancellationToken>() {
+            @Override
+            public CancellationToken answer(InvocationOnMock invocation) {
+                HttpResponseCallback callback = (HttpResponseCallback) invocation.getArguments()[2];
+                if (sendGraphQLPOSTSuccess != null) {
+                    callback.onResult(sendGraphQLPOSTSuccess, null);
+                } else if (sendGraphQLPOSTError != null) {
+                    callback.onResult(null, sendGraphQLPOSTError);
+                }
+                return new CancellationToken();
+            }
+        }).when(braintreeClient).sendGraphQLPOST(anyString(), anyLong(), any(HttpResponseCallback.class));
+
         return braintreeClient;
     }
+
+    private static Scheduler createImmediateScheduler() {
+        Scheduler scheduler = mock(Scheduler.class);
+        Answer<Void> runImmediately = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        };
+        doAnswer(runImmediately).when(scheduler).runOnMain(any(Runnable.class));
+        return scheduler;
+    }
 }
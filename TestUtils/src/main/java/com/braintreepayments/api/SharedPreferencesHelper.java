@@ -23,13 +23,12 @@ public class SharedPreferencesHelper {
                 .toString();
 
         String cacheKey = Base64.encodeToString(String.format("%s%s", configUrl, authorization.getBearer()).getBytes(), 0);
-        String timestampKey = String.format("%s_timestamp", cacheKey);
-        BraintreeSharedPreferences
-                .getInstance(context)
-                .putStringAndLong(cacheKey, configuration.toJson(), timestampKey, System.currentTimeMillis());
+        // go through the cache so that its in-memory tier also sees the override
+        ConfigurationCache.getInstance(context).saveConfiguration(configuration, cacheKey);
     }
 
     public static void clearConfigurationCacheOverride(Context context) {
+        ConfigurationCache.getInstance(context).clear();
         BraintreeSharedPreferences.getInstance(context).clearSharedPreferences();
     }
 }